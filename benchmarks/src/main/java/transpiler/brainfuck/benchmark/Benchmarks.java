@@ -0,0 +1,55 @@
+package transpiler.brainfuck.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, taking the same arguments as JMH itself (e.g. a pattern
+ * of the benchmarks to run or '-p program=mandelbrot').
+ *
+ * Unless told otherwise, the allocation rate is measured as well (by the GC profiler)
+ * and the results are written as JSON ('jmh-result.json'), so that they can be compared over time.
+ */
+public class Benchmarks {
+
+    public static void main( String ... arguments ) throws Exception {
+
+        CommandLineOptions options = new CommandLineOptions( arguments );
+
+        if ( options.shouldHelp() ) {
+
+            options.showHelp();
+            return;
+
+        }
+
+        if ( options.shouldList() ) {
+
+            new Runner( options ).list();
+            return;
+
+        }
+
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent( options );
+
+        if ( options.getProfilers().isEmpty() ) {
+
+            builder.addProfiler( GCProfiler.class );
+
+        }
+
+        if ( !options.getResultFormat().hasValue() ) {
+
+            builder.resultFormat( ResultFormatType.JSON );
+
+        }
+
+        new Runner( builder.build() ).run();
+
+    }
+
+}
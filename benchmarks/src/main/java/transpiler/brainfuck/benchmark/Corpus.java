@@ -0,0 +1,145 @@
+package transpiler.brainfuck.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * The corpus provides the programs the benchmarks are run with:
+ *
+ *      -> synthetic programs, which are generated on demand and named after their size (in bytes)
+ *         and the depth their loops are nested up to, e.g. 'synthetic-65536-8'
+ *      -> well-known programs (e.g. 'mandelbrot', 'hanoi' or 'dbfi', a self-interpreter),
+ *         which are read from '<name>.b' within the corpus directory
+ *
+ * The corpus directory defaults to 'benchmarks/corpus' and can be changed by the
+ * system property 'corpus'. Only 'hello.b' ships with the repository;
+ * any other well-known program has to be put there before it can be benchmarked.
+ */
+public class Corpus {
+
+    public static final String SYNTHETIC = "synthetic-";
+
+    /*
+    Fragments synthetic programs are made of, besides loops: the idioms the optimizer recognizes,
+    sequences of the very same operator and comments (including line breaks).
+     */
+    private static final String[] IDIOMS = { "[-]", "[->+<]", "[->>+++<<]", "[-<+>>--<]", "[>]", "[<<]" };
+    private static final String[] COMMENTS = { "\n", "\n", " ", " loop ", " cell ", "\n\t" };
+
+    /**
+     * Writes synthetic programs into the given directory, which is what the benchmarks run with
+     * (see program), so that they can be inspected or handed to other tools:
+     *
+     *      -> arguments[0x0]       = directory
+     *      -> arguments[0x1 ...]   = names of synthetic programs
+     */
+    public static void main( String ... arguments ) throws IOException {
+
+        if ( arguments.length < 0x2 ) {
+
+            throw new IllegalArgumentException( "Illegal argument count.\nArguments: <directory> <synthetic-<size>-<depth>> ..." );
+
+        }
+
+        Path directory = Paths.get( arguments[ 0x0 ] );
+        Files.createDirectories( directory );
+
+        for ( int i = 0x1; i < arguments.length; i++ ) {
+
+            Files.write( directory.resolve( arguments[ i ] + ".b" ), Corpus.program( arguments[ i ] ) );
+
+        }
+
+    }
+
+    /**
+     * Returns the program with the given name, either generated or read from the corpus directory.
+     */
+    public static byte[] program( String name ) throws IOException {
+
+        if ( name.startsWith( SYNTHETIC ) ) {
+
+            String[] parameters = name.substring( SYNTHETIC.length() ).split( "-" );
+
+            if ( parameters.length != 0x2 ) {
+
+                throw new IllegalArgumentException( String.format( "Synthetic program '%s' is not named '%s<size>-<depth>'.", name, SYNTHETIC ) );
+
+            }
+
+            return Corpus.synthetic( Integer.parseInt( parameters[ 0x0 ] ), Integer.parseInt( parameters[ 0x1 ] ), name.hashCode() );
+
+        }
+
+        return Files.readAllBytes( Paths.get( System.getProperty( "corpus", "benchmarks/corpus" ) ).resolve( name + ".b" ) );
+
+    }
+
+    /**
+     * Generates a valid program of (about) the given size whose loops are nested up to the given depth.
+     * The same seed always yields the same program, hence measurements stay comparable over time.
+     *
+     * Loops are opened and closed at random, though closing becomes likelier the deeper
+     * the loops are nested, so that the nesting depth wanders around half of the given one.
+     */
+    public static byte[] synthetic( int size, int depth, long seed ) {
+
+        Random random = new Random( seed );
+        ByteArrayOutputStream program = new ByteArrayOutputStream( size + depth );
+        int open = 0x0;
+
+        while ( program.size() + open < size ) {
+
+            double choice = random.nextDouble();
+
+            if ( open < depth && choice < 0.1 ) {
+
+                program.write( '[' );
+                open++;
+
+            } else if ( open > 0x0 && choice < 0.15 + 0.1 * open / Math.max( depth, 0x1 ) ) {
+
+                program.write( ']' );
+                open--;
+
+            } else if ( choice < 0.6 ) {
+
+                Corpus.repeat( program, "+-><".charAt( random.nextInt( 0x4 ) ), 0x1 + random.nextInt( 0x10 ) );
+
+            } else if ( choice < 0.75 ) {
+
+                program.writeBytes( IDIOMS[ random.nextInt( IDIOMS.length ) ].getBytes() );
+
+            } else if ( choice < 0.85 ) {
+
+                program.write( '.' );
+
+            } else {
+
+                program.writeBytes( COMMENTS[ random.nextInt( COMMENTS.length ) ].getBytes() );
+
+            }
+
+        }
+
+        Corpus.repeat( program, ']', open );
+
+        return program.toByteArray();
+
+    }
+
+    private static void repeat( ByteArrayOutputStream program, char operator, int count ) {
+
+        for ( int i = 0x0; i < count; i++ ) {
+
+            program.write( operator );
+
+        }
+
+    }
+
+}
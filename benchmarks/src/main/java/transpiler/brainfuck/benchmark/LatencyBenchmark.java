@@ -0,0 +1,59 @@
+package transpiler.brainfuck.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import transpiler.brainfuck.core.Transpiler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of transpiling small programs as a whole (which is what
+ * the daemon serves), sampling each single transpilation, so that JMH reports
+ * its distribution (e.g. the 99th percentile) instead of just its average.
+ */
+@BenchmarkMode( Mode.SampleTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 0x3, time = 0x1 )
+@Measurement( iterations = 0x5, time = 0x1 )
+@Fork( 0x1 )
+@State( Scope.Benchmark )
+public class LatencyBenchmark {
+
+    private static final WritableByteChannel SINK = Channels.newChannel( OutputStream.nullOutputStream() );
+
+    @Param( { "hello", "synthetic-256-2", "synthetic-2048-4" } )
+    public String program;
+
+    private byte[] source;
+    private Transpiler transpiler;
+
+    @Setup( Level.Trial )
+    public void setUp() throws IOException {
+
+        this.source = Corpus.program( this.program );
+        this.transpiler = new Transpiler();
+
+    }
+
+    @Benchmark
+    public void transpile() throws Exception {
+
+        this.transpiler.emit( this.transpiler.compile( this.source ), SINK );
+
+    }
+
+}
@@ -0,0 +1,43 @@
+package transpiler.brainfuck.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import transpiler.brainfuck.core.Transpiler;
+import transpiler.brainfuck.emitter.Format;
+import transpiler.brainfuck.ir.Program;
+import transpiler.brainfuck.parser.Parser;
+
+/**
+ * The program a stage is benchmarked with (see Corpus), together with what the preceding
+ * stages have made of it, so that each stage can be measured on its own.
+ *
+ * The synthetic programs range from small to large and from flat to deeply nested;
+ * well-known programs can be chosen instead (e.g. '-p program=mandelbrot').
+ */
+@State( Scope.Benchmark )
+public class Sources {
+
+    @Param( { "synthetic-4096-4", "synthetic-262144-8", "synthetic-4194304-2", "synthetic-4194304-64" } )
+    public String program;
+
+    public byte[] source;
+    public Program parsed;
+    public Program optimized;
+    public Transpiler nasm;
+    public Transpiler elf;
+
+    @Setup( Level.Trial )
+    public void setUp() throws Exception {
+
+        this.source = Corpus.program( this.program );
+        this.nasm = Transpiler.builder().format( Format.NASM ).build();
+        this.elf = Transpiler.builder().format( Format.ELF ).build();
+        this.parsed = Parser.parseValid( this.source );
+        this.optimized = this.nasm.passes().run( this.parsed );
+
+    }
+
+}
@@ -0,0 +1,82 @@
+package transpiler.brainfuck.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import transpiler.brainfuck.ir.Program;
+import transpiler.brainfuck.parser.Parser;
+import transpiler.brainfuck.validation.Validation;
+import transpiler.brainfuck.validation.Validator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of each stage of the transpiler on its own:
+ *
+ *      -> validating the source
+ *      -> parsing the (valid) source, which includes validating it
+ *      -> optimizing the parsed program by the standard passes
+ *      -> emitting the optimized program, as 'NASM assembly' and as executable
+ *
+ * Besides the operations per second, each benchmark reports the bytes of source
+ * it has processed per second (see Throughput).
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 0x3, time = 0x1 )
+@Measurement( iterations = 0x5, time = 0x1 )
+@Fork( 0x1 )
+public class StageBenchmark {
+
+    private static final WritableByteChannel SINK = Channels.newChannel( OutputStream.nullOutputStream() );
+
+    @Benchmark
+    public Validation validate( Sources sources, Throughput throughput ) {
+
+        throughput.bytes += sources.source.length;
+        return Validator.validate( ByteBuffer.wrap( sources.source ), false );
+
+    }
+
+    @Benchmark
+    public Program parse( Sources sources, Throughput throughput ) throws Exception {
+
+        throughput.bytes += sources.source.length;
+        return Parser.parseValid( sources.source );
+
+    }
+
+    @Benchmark
+    public Program optimize( Sources sources, Throughput throughput ) {
+
+        throughput.bytes += sources.source.length;
+        return sources.nasm.passes().run( sources.parsed );
+
+    }
+
+    @Benchmark
+    public void emitNasm( Sources sources, Throughput throughput ) throws IOException {
+
+        throughput.bytes += sources.source.length;
+        sources.nasm.emit( sources.optimized, SINK );
+
+    }
+
+    @Benchmark
+    public void emitElf( Sources sources, Throughput throughput ) throws IOException {
+
+        throughput.bytes += sources.source.length;
+        sources.elf.emit( sources.optimized, SINK );
+
+    }
+
+}
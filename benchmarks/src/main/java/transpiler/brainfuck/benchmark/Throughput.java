@@ -0,0 +1,26 @@
+package transpiler.brainfuck.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the bytes of source each benchmark has processed, which JMH reports
+ * as secondary result 'bytes' (per second, that is, the throughput in bytes of source).
+ */
+@State( Scope.Thread )
+@AuxCounters( AuxCounters.Type.OPERATIONS )
+public class Throughput {
+
+    public long bytes;
+
+    @Setup( Level.Iteration )
+    public void reset() {
+
+        this.bytes = 0x0;
+
+    }
+
+}
@@ -0,0 +1,62 @@
+package transpiler.brainfuck.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void manifestWithDuplicateDestination() throws Exception {
+
+        Files.writeString( this.directory.resolve( "a.bf" ), "+." );
+        Files.writeString( this.directory.resolve( "b.bf" ), "-." );
+        Path manifest = Files.writeString( this.directory.resolve( "manifest" ), "# programs\na.bf out.asm\n\nb.bf ./out.asm\n" );
+
+        Batch batch = new Batch( new Transpiler(), new Cache( this.directory.resolve( "cache" ) ) );
+        IllegalArgumentException exception = assertThrows( IllegalArgumentException.class, () -> batch.addManifest( manifest ) );
+
+        assertTrue( exception.getMessage().startsWith( "Line '4' of manifest" ), exception.getMessage() );
+        assertTrue( exception.getMessage().contains( "'./out.asm'" ), exception.getMessage() );
+
+    }
+
+    @Test
+    void sourceWithSeveralDestinations() throws Exception {
+
+        Files.writeString( this.directory.resolve( "a.bf" ), "+++[>++<-]>." );
+        Path manifest = Files.writeString( this.directory.resolve( "manifest" ), "a.bf first.asm\na.bf second.asm\n" );
+
+        Batch batch = new Batch( new Transpiler(), new Cache( this.directory.resolve( "cache" ) ) ).addManifest( manifest );
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+        assertEquals( 0x2, batch.size() );
+        assertEquals( 0x0, batch.run( 0x2, new PrintStream( errors, true, StandardCharsets.UTF_8 ) ), errors::toString );
+        assertEquals( Files.readString( this.directory.resolve( "first.asm" ) ), Files.readString( this.directory.resolve( "second.asm" ) ) );
+
+    }
+
+    @Test
+    void addDuplicateDestination() {
+
+        Batch batch = new Batch( new Transpiler(), new Cache( this.directory.resolve( "cache" ) ) );
+        batch.add( this.directory.resolve( "a.bf" ), this.directory.resolve( "out.asm" ) );
+
+        assertThrows( IllegalArgumentException.class, () -> batch.add( this.directory.resolve( "b.bf" ), this.directory.resolve( "sub/../out.asm" ) ) );
+        assertEquals( 0x1, batch.size() );
+
+    }
+
+}
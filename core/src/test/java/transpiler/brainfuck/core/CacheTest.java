@@ -0,0 +1,110 @@
+package transpiler.brainfuck.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheTest {
+
+    private static final int LENGTH = 0x12C;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void entriesAreNamedByKey() throws Exception {
+
+        Cache cache = new Cache( this.directory.resolve( "cache" ) );
+        String key = Cache.key( "+.".getBytes(), "nasm" );
+        cache.store( key, this.file( "program" ) );
+
+        try ( Stream< Path > entries = Files.list( cache.directory() ) ) {
+
+            assertEquals( List.of( cache.directory().resolve( key ) ), entries.toList() );
+
+        }
+
+        Path destination = this.directory.resolve( "loaded" );
+        assertTrue( cache.load( key, destination ) );
+        assertEquals( LENGTH, Files.size( destination ) );
+        assertFalse( cache.load( Cache.key( "-.".getBytes(), "nasm" ), destination ) );
+
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws Exception {
+
+        // Three entries fit, the fourth one evicts down to 7/8 of the size, which leaves two of them
+        Cache cache = new Cache( this.directory.resolve( "cache" ), LENGTH * 0x3 + 0x64 );
+        Path file = this.file( "program" );
+        Instant now = Instant.now();
+
+        for ( String key : new String[]{ "a", "b", "c" } ) {
+
+            cache.store( key, file );
+
+        }
+
+        Files.setLastModifiedTime( cache.directory().resolve( "a" ), FileTime.from( now.minus( Duration.ofHours( 0x3 ) ) ) );
+        Files.setLastModifiedTime( cache.directory().resolve( "b" ), FileTime.from( now.minus( Duration.ofHours( 0x2 ) ) ) );
+        Files.setLastModifiedTime( cache.directory().resolve( "c" ), FileTime.from( now.minus( Duration.ofHours( 0x1 ) ) ) );
+
+        // Loading touches the entry, hence 'a' is the one that has been used most recently
+        assertTrue( cache.load( "a", this.directory.resolve( "loaded" ) ) );
+        cache.store( "d", file );
+
+        assertTrue( Files.exists( cache.directory().resolve( "a" ) ) );
+        assertFalse( Files.exists( cache.directory().resolve( "b" ) ) );
+        assertFalse( Files.exists( cache.directory().resolve( "c" ) ) );
+        assertTrue( Files.exists( cache.directory().resolve( "d" ) ) );
+
+    }
+
+    @Test
+    void countsEntriesStoredBefore() throws Exception {
+
+        // Entries of an earlier run (and temporary files that have been left over) are found by the first store
+        Path file = this.file( "program" );
+        new Cache( this.directory.resolve( "cache" ), Long.MAX_VALUE ).store( "a", file );
+        Files.copy( file, this.directory.resolve( "cache" ).resolve( "x.tmp" ) );
+
+        Cache cache = new Cache( this.directory.resolve( "cache" ), LENGTH + 0x64 );
+        cache.store( "b", file );
+
+        assertEquals( 0x1, CacheTest.count( cache.directory(), "a", "b" ) );
+        assertTrue( Files.exists( cache.directory().resolve( "x.tmp" ) ) );
+
+    }
+
+    private Path file( String name ) throws Exception {
+
+        return Files.write( this.directory.resolve( name ), new byte[ LENGTH ] );
+
+    }
+
+    private static int count( Path directory, String ... keys ) {
+
+        int count = 0x0;
+
+        for ( String key : keys ) {
+
+            count += ( Files.exists( directory.resolve( key ) ) ? 0x1 : 0x0 );
+
+        }
+
+        return count;
+
+    }
+
+}
@@ -0,0 +1,130 @@
+package transpiler.brainfuck.core;
+
+import org.junit.jupiter.api.Test;
+import transpiler.brainfuck.ir.PassManager;
+import transpiler.brainfuck.ir.Program;
+import transpiler.brainfuck.parser.Parser;
+import transpiler.brainfuck.validation.exception.UnopenedBracketException;
+import transpiler.brainfuck.validation.exception.ValidationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sources that are at least as large as the threshold are split into chunks, which have to yield
+ * a program that behaves just like the whole source optimized at once, no matter how many threads there are.
+ */
+class ChunksTest {
+
+    // Each block returns to the cell it has started at, hence random sequences of them never leave the tape
+    private static final String[] BLOCKS = { "++++[>+++<-]>.[-]<", "[-]", ">,[<+>-]<.", "+[>++[>+<-]<-]>>.[-]<<", "; a comment\n", "[-]>[-]<+[>]<-" };
+
+    @Test
+    void behavesLikeWhole() throws Exception {
+
+        String source = ChunksTest.source( 0x5EED );
+        Transpiler transpiler = new Transpiler();
+
+        Program chunked = Chunks.compile( ChunksTest.buffer( source ), false, PassManager.standard() );
+        Program whole = PassManager.standard().run( Parser.parseValid( ChunksTest.buffer( source ), false ) );
+
+        // The transpiler compiles huge sources in chunks as well
+        assertEquals( transpiler.transpile( source ), ChunksTest.emit( transpiler, chunked ) );
+
+        for ( String text : new String[]{ "chunks", "" } ) {
+
+            byte[] input = text.getBytes( StandardCharsets.US_ASCII );
+            byte[] expected = Reference.run( source, input, ( int ) transpiler.tape(), Long.MAX_VALUE );
+            assertNotNull( expected );
+
+            assertArrayEquals( expected, ChunksTest.run( transpiler, chunked, input ) );
+            assertArrayEquals( expected, ChunksTest.run( transpiler, whole, input ) );
+
+        }
+
+    }
+
+    @Test
+    void independentOfThreads() throws Exception {
+
+        String source = ChunksTest.source( 0xC0DE );
+        Transpiler transpiler = new Transpiler();
+
+        String single = new ForkJoinPool( 0x1 ).submit( () -> transpiler.transpile( source ) ).get();
+        String several = new ForkJoinPool( 0x4 ).submit( () -> transpiler.transpile( source ) ).get();
+
+        assertEquals( single, several );
+
+    }
+
+    @Test
+    void errorsReferToWholeSource() {
+
+        String source = ChunksTest.source( 0xBAD );
+        String invalid = source + "\n]+";
+
+        ValidationException exception = assertThrows( ValidationException.class, () -> Chunks.compile( ChunksTest.buffer( invalid ), false, PassManager.standard() ) );
+
+        assertInstanceOf( UnopenedBracketException.class, exception );
+        assertEquals( source.length() + 0x1, exception.index() );
+        assertEquals( invalid.lines().count(), exception.line() );
+        assertEquals( 0x1, exception.column() );
+
+    }
+
+    /*
+    A random sequence of (top-level) blocks that exceeds the threshold.
+     */
+    private static String source( long seed ) {
+
+        Random random = new Random( seed );
+        StringBuilder source = new StringBuilder();
+
+        while ( source.length() < Chunks.THRESHOLD + 0x1000 ) {
+
+            source.append( BLOCKS[ random.nextInt( BLOCKS.length ) ] );
+
+        }
+
+        assertTrue( source.length() >= Chunks.THRESHOLD );
+        return source.toString();
+
+    }
+
+    private static ByteBuffer buffer( String source ) {
+
+        return ByteBuffer.wrap( source.getBytes( StandardCharsets.US_ASCII ) );
+
+    }
+
+    private static String emit( Transpiler transpiler, Program program ) throws Exception {
+
+        StringBuilder assembly = new StringBuilder();
+        transpiler.emit( program, assembly );
+
+        return assembly.toString();
+
+    }
+
+    private static byte[] run( Transpiler transpiler, Program program, byte[] input ) throws Exception {
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transpiler.run( program, Channels.newChannel( new ByteArrayInputStream( input ) ), Channels.newChannel( output ) );
+
+        return output.toByteArray();
+
+    }
+
+}
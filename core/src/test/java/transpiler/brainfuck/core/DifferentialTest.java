@@ -0,0 +1,426 @@
+package transpiler.brainfuck.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import transpiler.brainfuck.emitter.EndOfInput;
+import transpiler.brainfuck.emitter.Format;
+import transpiler.brainfuck.emitter.NasmEmitter;
+import transpiler.brainfuck.ir.PassManager;
+import transpiler.brainfuck.ir.Program;
+import transpiler.brainfuck.profile.Profile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs programs transpiled by several configurations and compares their output with the one
+ * of the reference interpreter (see Reference), by the JVM engine, as executables (see ElfEmitter)
+ * and as 'NASM assembly' (if 'nasm' and 'ld' are installed).
+ *
+ * Each behavior at the end of input is compared as well (see EndOfInput).
+ *
+ * The programs are those that have broken the optimizations before (e.g. multiplications whose origin is zero,
+ * right next to either end of the tape) as well as random ones, whose loops are nested and contain the idioms
+ * the passes recognize. Random programs that leave the tape or don't finish in time aren't compared.
+ */
+class DifferentialTest {
+
+    private static final int TAPE = 0x1000;
+    private static final long BUDGET = 0x200000;
+    private static final int RANDOM = 0x28;
+    private static final long SEED = 0x5EED;
+
+    private static final String[] IDIOMS = { "[-]", "[+]", "[->+<]", "[->>+++<<]", "[-<+>>--<]", "[+>-<]", "[>]", "[<]", "[>>]", "[<<<]", "[---]", "[->+>+<<]", ">[-]<", "[-->+<]" };
+    private static final String OPERATORS = "++++----<>.,";
+
+    private static final byte[][] INPUTS = { { 0x0 }, "hello world".getBytes( StandardCharsets.US_ASCII ), {} };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void jvm() throws Exception {
+
+        for ( Function< String, Transpiler > configuration : DifferentialTest.configurations( Format.NASM ) ) {
+
+            this.compare( configuration, program -> {
+
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                program.transpiler().run( program.compiled(), Channels.newChannel( new ByteArrayInputStream( program.input() ) ), Channels.newChannel( output ) );
+                return output.toByteArray();
+
+            } );
+
+        }
+
+    }
+
+    @Test
+    void elf() throws Exception {
+
+        assumeTrue( DifferentialTest.isLinux(), "Executables are only run on Linux (x86-64)." );
+
+        for ( Function< String, Transpiler > configuration : DifferentialTest.configurations( Format.ELF ) ) {
+
+            this.compare( configuration, program -> {
+
+                Path executable = this.directory.resolve( "program" );
+                DifferentialTest.emit( program.transpiler(), program.compiled(), executable );
+                assertTrue( executable.toFile().setExecutable( true ) );
+
+                return this.execute( List.of( executable.toString() ), program.input() );
+
+            } );
+
+        }
+
+    }
+
+    @Test
+    void nasm() throws Exception {
+
+        assumeTrue( DifferentialTest.isLinux(), "Assembly is only run on Linux (x86-64)." );
+        assumeTrue( DifferentialTest.isInstalled( "nasm" ) && DifferentialTest.isInstalled( "ld" ), "Assembly is only run if 'nasm' and 'ld' are installed." );
+
+        for ( Function< String, Transpiler > configuration : DifferentialTest.configurations( Format.NASM ) ) {
+
+            this.compare( configuration, program -> {
+
+                Path assembly = this.directory.resolve( "program.asm" );
+                Path object = this.directory.resolve( "program.o" );
+                Path executable = this.directory.resolve( "program" );
+                DifferentialTest.emit( program.transpiler(), program.compiled(), assembly );
+
+                this.execute( List.of( "nasm", "-f", "elf64", assembly.toString(), "-o", object.toString() ), new byte[ 0x0 ] );
+                this.execute( List.of( "ld", object.toString(), "-o", executable.toString() ), new byte[ 0x0 ] );
+
+                return this.execute( List.of( executable.toString() ), program.input() );
+
+            } );
+
+        }
+
+    }
+
+    @Test
+    void profileLaysOutLoops() throws Exception {
+
+        // Otherwise, the profiled configuration wouldn't compare anything the standard one doesn't
+        String source = ",[>.<-]";
+        Transpiler profiled = Transpiler.builder().profile( DifferentialTest.profile( source ) ).build();
+
+        assertArrayEquals( new long[]{ 0x1 }, DifferentialTest.profile( source ).hot() );
+        assertNotEquals( new Transpiler().transpile( source ), profiled.transpile( source ) );
+
+    }
+
+    @Test
+    void endOfInputOption() throws Exception {
+
+        Path source = Files.writeString( this.directory.resolve( "a.bf" ), "+,,,.>+,." );
+
+        for ( String option : new String[]{ "unchanged", "zero", "minus-one" } ) {
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ByteArrayOutputStream errors = new ByteArrayOutputStream();
+            byte[] input = "ab".getBytes( StandardCharsets.US_ASCII );
+
+            int status = Transpiler.run( List.of( "--eof=" + option, "--run", source.toString() ), this.directory, Channels.newChannel( new ByteArrayInputStream( input ) ),
+                    Channels.newChannel( output ), new PrintStream( errors, true, StandardCharsets.UTF_8 ) );
+
+            assertEquals( 0x0, status, errors::toString );
+            assertArrayEquals( Reference.run( Files.readString( source ), input, ( int ) NasmEmitter.DEFAULT_TAPE_SIZE, BUDGET, EndOfInput.of( option ) ), output.toByteArray(), option );
+
+        }
+
+    }
+
+    /*
+    The configurations each program is transpiled by (given its source): the standard passes, rotated loops
+    and hot loops (see Layout), the passes without propagating values (which leaves more multiplications
+    to the emitters) and the behaviors at the end of input that don't leave the cell unchanged.
+     */
+    private static List< Function< String, Transpiler > > configurations( Format format ) {
+
+        PassManager passes = PassManager.standard();
+        passes.disable( "propagate-values" );
+
+        Transpiler standard = Transpiler.builder().format( format ).tape( TAPE ).build();
+        Transpiler rotated = Transpiler.builder().format( format ).tape( TAPE ).rotate( true ).build();
+        Transpiler propagated = Transpiler.builder().format( format ).tape( TAPE ).passes( passes ).build();
+        Transpiler zero = Transpiler.builder().format( format ).tape( TAPE ).endOfInput( EndOfInput.ZERO ).build();
+        Transpiler minusOne = Transpiler.builder().format( format ).tape( TAPE ).endOfInput( EndOfInput.MINUS_ONE ).build();
+
+        return List.of(
+                source -> standard,
+                source -> rotated,
+                source -> Transpiler.builder().format( format ).tape( TAPE ).profile( DifferentialTest.profile( source ) ).build(),
+                source -> propagated,
+                source -> zero,
+                source -> minusOne
+        );
+
+    }
+
+    /*
+    A profile that makes each loop of the given source hot (as far as there may be that many hot loops),
+    hence each of them is aligned and unrolled where the layout allows.
+     */
+    private static Profile profile( String source ) {
+
+        long[] positions = new long[ 0x40 ];
+        int loops = 0x0;
+
+        for ( int i = 0x0; i < source.length() && loops < positions.length; i++ ) {
+
+            if ( source.charAt( i ) == '[' ) {
+
+                positions[ loops++ ] = i;
+
+            }
+
+        }
+
+        long[] counts = new long[ loops ];
+        Arrays.fill( counts, 0x1000 );
+
+        return new Profile( Arrays.copyOf( positions, loops ), counts, counts );
+
+    }
+
+    private void compare( Function< String, Transpiler > configuration, Runner runner ) throws Exception {
+
+        List< String > programs = DifferentialTest.programs();
+        int compared = 0x0;
+
+        for ( String source : programs ) {
+
+            Transpiler transpiler = configuration.apply( source );
+            Program compiled = transpiler.compile( source );
+
+            for ( byte[] input : INPUTS ) {
+
+                byte[] expected = Reference.run( source, input, TAPE, BUDGET, transpiler.endOfInput() );
+
+                if ( expected == null ) {
+
+                    continue;
+
+                }
+
+                String description = String.format( "Program '%s' (options '%s') with input '%s'.", source, transpiler.options(), new String( input, StandardCharsets.ISO_8859_1 ) );
+                byte[] actual;
+
+                try {
+
+                    actual = runner.run( new Case( transpiler, compiled, input ) );
+
+                } catch ( AssertionError error ) {
+
+                    throw new AssertionError( description, error );
+
+                }
+
+                assertArrayEquals( expected, actual, description );
+                compared++;
+
+            }
+
+        }
+
+        assertTrue( compared >= programs.size(), "Too few programs have been compared." );
+
+    }
+
+    /*
+    The programs that have broken the emitters before: a multiply loop whose origin is zero
+    (its targets must not be touched at all, even if they lie beyond either end of the tape),
+    followed by the programs that keep using the cells afterwards, then programs that tell the behaviors
+    at the end of input apart (and rely on them to finish), packed runs of cells (one of them right
+    at the end of the tape) and random ones.
+     */
+    private static List< String > programs() {
+
+        String last = ">".repeat( TAPE - 0x1 );
+        List< String > programs = new ArrayList<>( List.of(
+                ",[<+>-]",
+                ",[<<<+>>>-]",
+                last + ",[>+<-]",
+                last + ",[>>>>+++<<<<-]",
+                ",[<+>-]+.",
+                ",[<+<++>>-].",
+                last + ",[->+<]>[-]<.",
+                "+.,[<+>-].",
+                ",[<+>-],[<<++>>-]+.",
+                last + ",[>+<-]<[-]+.",
+                "+[>,[<+>-]<-]+.",
+                ">".repeat( TAPE - 0x2 ) + "+[>,[>+<-]<-]+.",
+                "+[>,[<<+>>-]<-]+.",
+                ">".repeat( TAPE - 0x3 ) + "+[>,[>>+<<-]<-]+.",
+                ",.,.",
+                "+,.",
+                "+,[.,]",
+                ",+[-.,+]",
+                ",,,,,,,,,,,,,.[-.]"
+        ) );
+
+        programs.add( DifferentialTest.packed( 0x14, 0x0, false ) );
+        programs.add( DifferentialTest.packed( 0x14, 0x3, false ) );
+        programs.add( DifferentialTest.packed( 0x10, 0x0, true ) );
+        programs.add( DifferentialTest.packed( 0x18, 0x4, true ) );
+        programs.add( ">".repeat( TAPE - 0xC ) + DifferentialTest.packed( 0xC, 0x0, false ) );
+
+        Random random = new Random( SEED );
+
+        for ( int i = 0x0; i < RANDOM; i++ ) {
+
+            programs.add( ">".repeat( 0x10 ) + DifferentialTest.generate( random, 0x0, 0x28 ) );
+
+        }
+
+        return programs;
+
+    }
+
+    /*
+    Changes the given amount of neighboring cells (apart from each gap-th one, which keeps its value), either by
+    additions or assignments (see Packing), and writes each of them. Some cells are read beforehand, so that
+    their values aren't known at compile time.
+     */
+    private static String packed( int cells, int gap, boolean assigned ) {
+
+        StringBuilder program = new StringBuilder( ",>".repeat( 0x5 ) ).append( "<".repeat( 0x5 ) );
+
+        for ( int i = 0x0; i < cells; i++ ) {
+
+            if ( gap == 0x0 || i % gap != gap - 0x1 ) {
+
+                program.append( assigned ? "[-]" : "" ).append( "+".repeat( i + 0x1 ) );
+
+            }
+
+            program.append( i < cells - 0x1 ? ">" : "" );
+
+        }
+
+        return program.append( "<".repeat( cells - 0x1 ) ).append( ".>".repeat( cells - 0x1 ) ).append( '.' ).toString();
+
+    }
+
+    private static String generate( Random random, int depth, int length ) {
+
+        StringBuilder program = new StringBuilder();
+        int count = random.nextInt( length + 0x1 );
+
+        for ( int i = 0x0; i < count; i++ ) {
+
+            double choice = random.nextDouble();
+
+            if ( choice < 0.15 && depth < 0x4 ) {
+
+                program.append( random.nextDouble() < 0.3 ? "[-" : "[" );
+                program.append( DifferentialTest.generate( random, depth + 0x1, length / 0x2 ) ).append( ']' );
+
+            } else if ( choice < 0.25 ) {
+
+                program.append( IDIOMS[ random.nextInt( IDIOMS.length ) ] );
+
+            } else {
+
+                program.append( OPERATORS.charAt( random.nextInt( OPERATORS.length() ) ) );
+
+            }
+
+        }
+
+        return program.toString();
+
+    }
+
+    private static void emit( Transpiler transpiler, Program program, Path destination ) throws IOException {
+
+        try ( FileChannel channel = FileChannel.open( destination, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) ) {
+
+            transpiler.emit( program, channel );
+
+        }
+
+    }
+
+    private byte[] execute( List< String > command, byte[] input ) throws IOException, InterruptedException {
+
+        Path in = Files.write( this.directory.resolve( "input" ), input );
+        Path out = this.directory.resolve( "output" );
+
+        Process process = new ProcessBuilder( command )
+                .redirectInput( in.toFile() )
+                .redirectOutput( out.toFile() )
+                .redirectError( ProcessBuilder.Redirect.DISCARD )
+                .start();
+
+        if ( !process.waitFor( 0xA, TimeUnit.SECONDS ) ) {
+
+            process.destroyForcibly();
+            throw new AssertionError( String.format( "Command '%s' hasn't finished in time.", command ) );
+
+        }
+
+        assertEquals( 0x0, process.exitValue(), () -> String.format( "Command '%s' has failed.", command ) );
+        return Files.readAllBytes( out );
+
+    }
+
+    private static boolean isLinux() {
+
+        String arch = System.getProperty( "os.arch" );
+        return System.getProperty( "os.name" ).equals( "Linux" ) && ( arch.equals( "amd64" ) || arch.equals( "x86_64" ) );
+
+    }
+
+    private static boolean isInstalled( String command ) {
+
+        for ( String path : System.getenv().getOrDefault( "PATH", "" ).split( File.pathSeparator ) ) {
+
+            if ( !path.isEmpty() && Files.isExecutable( Path.of( path, command ) ) ) {
+
+                return true;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    private record Case( Transpiler transpiler, Program compiled, byte[] input ) {}
+
+    @FunctionalInterface
+    private interface Runner {
+
+        byte[] run( Case program ) throws Exception;
+
+    }
+
+}
@@ -0,0 +1,102 @@
+package transpiler.brainfuck.core;
+
+import transpiler.brainfuck.emitter.EndOfInput;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * The reference interpreter runs 'Brainfuck' programs as plainly as possible (one operator at a time,
+ * without any optimization), which is what the transpiled programs have to agree with.
+ *
+ * Cells wrap around, the pointer starts at the leftmost cell and the end of input is treated as configured.
+ * Programs that leave the tape or don't finish within the budget have no defined output (null).
+ */
+final class Reference {
+
+    private Reference() {}
+
+    static byte[] run( String program, byte[] input, int tape, long budget ) {
+
+        return Reference.run( program, input, tape, budget, EndOfInput.UNCHANGED );
+
+    }
+
+    static byte[] run( String program, byte[] input, int tape, long budget, EndOfInput endOfInput ) {
+
+        char[] code = program.toCharArray();
+        int[] partners = new int[ code.length ];
+        int[] open = new int[ code.length ];
+        int depth = 0x0;
+
+        for ( int i = 0x0; i < code.length; i++ ) {
+
+            if ( code[ i ] == '[' ) {
+
+                open[ depth++ ] = i;
+
+            } else if ( code[ i ] == ']' ) {
+
+                partners[ i ] = open[ --depth ];
+                partners[ open[ depth ] ] = i;
+
+            }
+
+        }
+
+        byte[] cells = new byte[ tape ];
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int pointer = 0x0;
+        int read = 0x0;
+        long steps = 0x0;
+
+        for ( int i = 0x0; i < code.length; i++ ) {
+
+            if ( ++steps > budget ) {
+
+                return null;
+
+            }
+
+            switch ( code[ i ] ) {
+
+                case '+' -> cells[ pointer ]++;
+                case '-' -> cells[ pointer ]--;
+                case '>' -> pointer++;
+                case '<' -> pointer--;
+                case '.' -> output.write( cells[ pointer ] );
+                case ',' -> {
+
+                    if ( read < input.length ) {
+
+                        cells[ pointer ] = input[ read++ ];
+
+                    } else if ( endOfInput == EndOfInput.ZERO ) {
+
+                        cells[ pointer ] = 0x0;
+
+                    } else if ( endOfInput == EndOfInput.MINUS_ONE ) {
+
+                        cells[ pointer ] = -0x1;
+
+                    }
+
+                }
+                case '[' -> i = ( cells[ pointer ] == 0x0 ? partners[ i ] : i );
+                case ']' -> i = ( cells[ pointer ] != 0x0 ? partners[ i ] : i );
+                default -> {}
+
+            }
+
+            if ( pointer < 0x0 || pointer >= tape ) {
+
+                return null;
+
+            }
+
+        }
+
+        return output.toByteArray();
+
+    }
+
+}
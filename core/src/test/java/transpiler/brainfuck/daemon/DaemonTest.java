@@ -0,0 +1,206 @@
+package transpiler.brainfuck.daemon;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Sends requests to a daemon (see Protocol) and checks that each of them is answered by its exit status,
+ * preceded by the output or the errors of the request, even if the request itself fails.
+ */
+class DaemonTest {
+
+    private static final long STARTUP = 0x7530;
+
+    @TempDir
+    Path directory;
+
+    private Path socket;
+    private Daemon daemon;
+    private Thread thread;
+
+    @BeforeEach
+    void start() throws Exception {
+
+        Files.writeString( this.directory.resolve( "a.bf" ), "+++[>++<-]>." );
+
+        this.socket = this.directory.resolve( "daemon.socket" );
+        this.daemon = new Daemon( this.socket );
+        this.thread = new Thread( () -> {
+
+            try {
+
+                this.daemon.serve();
+
+            } catch ( IOException exception ) {
+
+                throw new IllegalStateException( exception );
+
+            }
+
+        } );
+        this.thread.start();
+
+        // The socket exists right before the daemon listens on it, hence it is only up once it accepts a connection
+        long deadline = System.currentTimeMillis() + STARTUP;
+
+        while ( !this.isListening() ) {
+
+            if ( System.currentTimeMillis() > deadline || !this.thread.isAlive() ) {
+
+                fail( "The daemon hasn't started in time." );
+
+            }
+
+            Thread.sleep( 0xA );
+
+        }
+
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+
+        this.request( List.of( Protocol.SHUTDOWN ) );
+        this.thread.join( STARTUP );
+
+    }
+
+    @Test
+    void output() throws Exception {
+
+        Response response = this.request( List.of( "a.bf", "-" ) );
+
+        assertEquals( 0x0, response.status(), response.errors() );
+        assertTrue( response.output().contains( "_start" ), response.output() );
+
+    }
+
+    @Test
+    void missingProfile() throws Exception {
+
+        this.assertFailure( this.request( List.of( "--profile=missing", "a.bf", "-" ) ) );
+
+    }
+
+    @Test
+    void missingManifest() throws Exception {
+
+        this.assertFailure( this.request( List.of( "--manifest=missing" ) ) );
+
+    }
+
+    @Test
+    void unwritableStatistics() throws Exception {
+
+        this.assertFailure( this.request( List.of( "--stats=" + this.directory.resolve( "missing/stats.json" ), "a.bf", "-" ) ) );
+
+    }
+
+    @Test
+    void invalidArgument() throws Exception {
+
+        this.assertFailure( this.request( List.of( "--tape=zz", "a.bf", "-" ) ) );
+
+    }
+
+    /*
+    A connection that is closed without any request is dropped by the daemon.
+     */
+    private boolean isListening() {
+
+        try ( SocketChannel channel = SocketChannel.open( StandardProtocolFamily.UNIX ) ) {
+
+            return channel.connect( UnixDomainSocketAddress.of( this.socket ) );
+
+        } catch ( IOException exception ) {
+
+            return false;
+
+        }
+
+    }
+
+    private void assertFailure( Response response ) {
+
+        assertEquals( 0x1, response.status() );
+        assertTrue( response.errors().startsWith( "error: " ), response.errors() );
+
+    }
+
+    /*
+    Sends the given arguments and reads the frames of the response, the last of which has to be its exit status.
+     */
+    private Response request( List< String > arguments ) throws IOException {
+
+        try ( SocketChannel channel = SocketChannel.open( StandardProtocolFamily.UNIX ) ) {
+
+            channel.connect( UnixDomainSocketAddress.of( this.socket ) );
+
+            StringBuilder request = new StringBuilder( this.directory.toString() ).append( '\n' );
+            arguments.forEach( argument -> request.append( argument ).append( '\n' ) );
+            channel.write( ByteBuffer.wrap( request.append( '\n' ).toString().getBytes( StandardCharsets.UTF_8 ) ) );
+
+            DataInputStream input = new DataInputStream( Channels.newInputStream( channel ) );
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+            while ( true ) {
+
+                byte type;
+
+                try {
+
+                    type = input.readByte();
+
+                } catch ( EOFException exception ) {
+
+                    throw new AssertionError( "The connection has been closed without an exit status.", exception );
+
+                }
+
+                byte[] payload = new byte[ input.readInt() ];
+                input.readFully( payload );
+
+                switch ( type ) {
+
+                    case Protocol.OUTPUT -> output.write( payload );
+                    case Protocol.ERROR -> errors.write( payload );
+                    case Protocol.EXIT -> {
+
+                        assertEquals( -0x1, input.read(), "The exit status has to be the last frame." );
+                        return new Response( ByteBuffer.wrap( payload ).getInt(), output.toString( StandardCharsets.UTF_8 ), errors.toString( StandardCharsets.UTF_8 ) );
+
+                    }
+                    default -> fail( "Unknown frame '" + ( char ) type + "'." );
+
+                }
+
+            }
+
+        }
+
+    }
+
+    private record Response( int status, String output, String errors ) {}
+
+}
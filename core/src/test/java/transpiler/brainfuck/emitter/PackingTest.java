@@ -0,0 +1,138 @@
+package transpiler.brainfuck.emitter;
+
+import org.junit.jupiter.api.Test;
+import transpiler.brainfuck.core.Transpiler;
+import transpiler.brainfuck.ir.Operation;
+import transpiler.brainfuck.ir.Program;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Whether the programs that are packed behave correctly is up to the differential test (see DifferentialTest);
+ * this one tells which cells are packed into which chunks.
+ */
+class PackingTest {
+
+    @Test
+    void wide() {
+
+        // Ten of sixteen cells are added to, the ones in between keep their values
+        Program program = PackingTest.program( Operation.ADD, 0x0, 0x1, 0x3, 0x4, 0x6, 0x8, 0x9, 0xB, 0xD, 0xF );
+        Packing packing = Packing.of( program, 0x0, false );
+
+        assertNotNull( packing );
+        assertEquals( program.size(), packing.end() );
+        assertEquals( Packing.WIDE, packing.width( 0x0 ) );
+        assertEquals( packing.size(), packing.next( 0x0 ) );
+        assertFalse( packing.isAssigned( 0x0 ) );
+        assertFalse( packing.isMasked( 0x0 ) );
+
+    }
+
+    @Test
+    void assigned() {
+
+        Program program = PackingTest.program( Operation.SET, 0x1, 0x2, 0x3, 0x4, 0x5, 0x6, 0x7, 0x8 );
+        Packing packing = Packing.of( program, 0x0, false );
+
+        assertNotNull( packing );
+        assertEquals( Packing.NARROW, packing.width( 0x0 ) );
+        assertTrue( packing.isAssigned( 0x0 ) );
+
+        // Each cell is assigned its value (see program), the lowest cell being the lowest byte
+        assertEquals( 0x0807060504030201L, packing.quad( 0x0, 0x0 ) );
+
+    }
+
+    @Test
+    void boundedByHighestCell() {
+
+        // Ten cells don't fill a wide chunk, which would reach beyond the highest one
+        Program program = PackingTest.program( Operation.ADD, 0x0, 0x1, 0x2, 0x3, 0x4, 0x5, 0x6, 0x7, 0x8, 0x9 );
+        Packing packing = Packing.of( program, 0x0, false );
+
+        assertNotNull( packing );
+        assertEquals( Packing.NARROW, packing.width( 0x0 ) );
+        assertEquals( 0x8, packing.next( 0x0 ) );
+        assertEquals( 0x0, packing.width( 0x8 ) );
+        assertEquals( 0x0, packing.width( 0x9 ) );
+
+    }
+
+    @Test
+    void tooFew() {
+
+        assertNull( Packing.of( PackingTest.program( Operation.ADD, 0x0, 0x1 ), 0x0, false ) );
+        assertNull( Packing.of( PackingTest.program( Operation.ADD, 0x0, 0x4, 0x8, 0xC ), 0x0, false ) );
+
+    }
+
+    @Test
+    void sameCell() {
+
+        // The second addition to cell 1 can't be reordered, hence the packing ends right before it
+        Program program = PackingTest.program( Operation.ADD, 0x0, 0x1, 0x2, 0x3, 0x4, 0x5, 0x6, 0x7, 0x1, 0x8 );
+        Packing packing = Packing.of( program, 0x0, false );
+
+        assertNotNull( packing );
+        assertEquals( 0x8, packing.end() );
+
+    }
+
+    @Test
+    void heldCell() {
+
+        // The current cell is left out while it is held in the cell register
+        Program program = PackingTest.program( Operation.ADD, 0x0, 0x1, 0x2, 0x3, 0x4, 0x5, 0x6, 0x7 );
+
+        assertEquals( program.size(), Packing.of( program, 0x0, false ).end() );
+        assertNull( Packing.of( program, 0x0, true ) );
+        assertTrue( Packing.isPacked( program, 0x0 ) );
+
+    }
+
+    @Test
+    void emitted() throws Exception {
+
+        Transpiler transpiler = new Transpiler();
+
+        // Deferred pointer movement turns these into additions and assignments with offsets;
+        // the cells are read beforehand, since additions to cells that are known to be zero are assignments
+        StringBuilder additions = new StringBuilder( ",>".repeat( 0x10 ) ).append( "<".repeat( 0x10 ) );
+
+        for ( int i = 0x0; i < 0x10; i++ ) {
+
+            additions.append( "+".repeat( i + 0x1 ) ).append( '>' );
+
+        }
+
+        String added = transpiler.transpile( additions.append( '.' ) );
+        String assigned = transpiler.transpile( ",>[-]+>[-]++>[-]+++>[-]++++>[-]+++++>[-]++++++>[-]+++++++>[-]++++++++<." );
+
+        assertTrue( added.contains( "\tpaddb\txmm0, xmm1\n" ), "The additions haven't been packed." );
+        assertTrue( assigned.contains( "\tmov\trax, 0x" ), "The assignments haven't been packed." );
+
+    }
+
+    /*
+    Changes the cells at the given offsets (each by its index plus one).
+     */
+    private static Program program( Operation operation, int ... offsets ) {
+
+        Program program = new Program();
+
+        for ( int i = 0x0; i < offsets.length; i++ ) {
+
+            program.append( operation, i + 0x1, offsets[ i ] );
+
+        }
+
+        return program;
+
+    }
+
+}
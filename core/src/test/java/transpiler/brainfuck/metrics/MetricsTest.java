@@ -0,0 +1,164 @@
+package transpiler.brainfuck.metrics;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import transpiler.brainfuck.core.Transpiler;
+import transpiler.brainfuck.emitter.Format;
+import transpiler.brainfuck.ir.Pass;
+import transpiler.brainfuck.ir.PassManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTest {
+
+    private static final String SOURCE = ",[-]>,[-]<,[->+<]>[<]>.";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void transpiled() throws Exception {
+
+        List< Metrics > transpiled = new CopyOnWriteArrayList<>();
+        Map< String, Long > stages = new ConcurrentHashMap<>();
+        Transpiler transpiler = Transpiler.builder().listen( new MetricsListener() {
+
+            @Override
+            public void stage( String stage, long nanos ) {
+
+                stages.merge( stage, nanos, Long::sum );
+
+            }
+
+            @Override
+            public void transpiled( Metrics metrics ) {
+
+                transpiled.add( metrics );
+
+            }
+
+        } ).build();
+
+        String assembly = transpiler.transpile( SOURCE );
+
+        assertEquals( 0x1, transpiled.size() );
+        Metrics metrics = transpiled.get( 0x0 );
+
+        // Each stage is told as soon as it has finished, which adds up to the stages of the metrics
+        assertEquals( stages, metrics.stages() );
+        assertTrue( metrics.stages().keySet().containsAll( List.of( "validation", "parsing", "emission" ) ), metrics.stages()::toString );
+
+        for ( Pass pass : PassManager.standard().passes() ) {
+
+            assertTrue( metrics.stages().containsKey( pass.name() ), pass.name() );
+
+        }
+
+        assertEquals( 0x2, metrics.patterns().get( "recognize-idioms.clear" ) );
+        assertEquals( 0x1, metrics.patterns().get( "recognize-idioms.multiply" ) );
+        assertEquals( 0x1, metrics.patterns().get( "recognize-idioms.scan" ) );
+
+        assertEquals( SOURCE.length(), metrics.operators() );
+        assertEquals( assembly.getBytes( StandardCharsets.UTF_8 ).length, metrics.bytes() );
+        assertTrue( metrics.instructions() > 0x0 );
+        assertTrue( metrics.syscalls() > 0x0 );
+        assertNotEquals( 0x0, metrics.allocated() );
+
+    }
+
+    @Test
+    void executable() throws Exception {
+
+        Transpiler transpiler = Transpiler.builder().format( Format.ELF ).build();
+        Metrics metrics = transpiler.metrics( "a.bf" );
+
+        ByteArrayOutputStream executable = new ByteArrayOutputStream();
+        transpiler.emit( transpiler.compile( SOURCE ), Channels.newChannel( executable ), metrics );
+        metrics.finish();
+
+        assertEquals( executable.size(), metrics.bytes() );
+        assertTrue( metrics.instructions() > 0x0 );
+        assertTrue( metrics.syscalls() > 0x0 );
+
+    }
+
+    @Test
+    void json() {
+
+        Metrics metrics = new Metrics( "a \"b\"\n.bf", List.of() );
+        metrics.time( "parsing", () -> {} );
+        metrics.count( "recognize-idioms.clear", 0x3 );
+        metrics.setOperators( 0x2A );
+        metrics.finish();
+
+        String json = metrics.json();
+
+        assertTrue( json.startsWith( "{\"source\":\"a \\\"b\\\"\\u000a.bf\",\"stages\":{\"parsing\":" ), json );
+        assertTrue( json.contains( ",\"patterns\":{\"recognize-idioms.clear\":3},\"operators\":42,\"instructions\":0," ), json );
+        assertTrue( json.endsWith( "}" ) && !json.contains( "\n" ), json );
+
+    }
+
+    @Test
+    void disabled() {
+
+        assertEquals( 0x2A, Metrics.DISABLED.time( "parsing", () -> 0x2A ) );
+        Metrics.DISABLED.count( "recognize-idioms.clear" );
+        Metrics.DISABLED.finish();
+
+        assertTrue( Metrics.DISABLED.stages().isEmpty() );
+        assertTrue( Metrics.DISABLED.patterns().isEmpty() );
+        assertEquals( "{\"stages\":{},\"patterns\":{},\"operators\":0,\"instructions\":0,\"syscalls\":0,\"bytes\":0,\"allocated\":0}", Metrics.DISABLED.json() );
+
+    }
+
+    @Test
+    void events() throws Exception {
+
+        Path file = this.directory.resolve( "recording.jfr" );
+
+        try ( Recording recording = new Recording() ) {
+
+            recording.enable( "transpiler.brainfuck.Stage" );
+            recording.enable( "transpiler.brainfuck.Transpilation" );
+            recording.start();
+
+            Transpiler transpiler = new Transpiler();
+            Metrics metrics = transpiler.metrics( "events.bf" );
+            transpiler.emit( transpiler.compile( ByteBuffer.wrap( SOURCE.getBytes( StandardCharsets.US_ASCII ) ), metrics ), Channels.newChannel( OutputStream.nullOutputStream() ), metrics );
+            metrics.finish();
+
+            recording.stop();
+            recording.dump( file );
+
+        }
+
+        List< RecordedEvent > events = RecordingFile.readAllEvents( file ).stream()
+                .filter( event -> "events.bf".equals( event.getString( "source" ) ) )
+                .toList();
+
+        assertTrue( events.stream().anyMatch( event -> event.getEventType().getName().equals( "transpiler.brainfuck.Stage" ) && "emission".equals( event.getString( "stage" ) ) ) );
+
+        List< RecordedEvent > transpilations = events.stream().filter( event -> event.getEventType().getName().equals( "transpiler.brainfuck.Transpilation" ) ).toList();
+        assertEquals( 0x1, transpilations.size() );
+        assertEquals( SOURCE.length(), transpilations.get( 0x0 ).getLong( "operators" ) );
+
+    }
+
+}
@@ -0,0 +1,124 @@
+package transpiler.brainfuck.profile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import transpiler.brainfuck.core.Transpiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ProfileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readWritten() throws Exception {
+
+        Path file = this.write( "written", Profile.MAGIC, 0x4, new long[]{ 0x0, 0xA, 0xA, 0x14 }, new long[]{ 0x1, 0x64, 0x2, 0xC8, 0x3, 0x64, 0x4, 0x2580 } );
+        Profile profile = Profile.read( file );
+
+        assertEquals( 0x4, profile.loops() );
+        assertEquals( 0xA, profile.position( 0x2 ) );
+        assertEquals( 0x3, profile.entries( 0x2 ) );
+        assertEquals( 0x64, profile.iterations( 0x2 ) );
+        assertEquals( 0x2710, profile.iterations() );
+
+        // Loops that share a position count as one, which makes the loops at 10 hot (300 iterations), unlike the one at 0
+        assertArrayEquals( new long[]{ 0xA, 0x14 }, profile.hot() );
+
+    }
+
+    @Test
+    void readMalformed() throws Exception {
+
+        Path foreign = this.write( "foreign", 0x1, 0x0, new long[ 0x0 ], new long[ 0x0 ] );
+        Path truncated = this.write( "truncated", Profile.MAGIC, 0x2, new long[]{ 0x0, 0x1 }, new long[]{ 0x1, 0x1 } );
+
+        assertTrue( assertThrows( IOException.class, () -> Profile.read( foreign ) ).getMessage().endsWith( "is not a profile." ) );
+        assertTrue( assertThrows( IOException.class, () -> Profile.read( truncated ) ).getMessage().endsWith( "is truncated." ) );
+
+    }
+
+    /*
+    An instrumented program writes its profile into its working directory once it exits,
+    which counts how often each loop (that hasn't been replaced) has been entered and iterated.
+     */
+    @Test
+    void instrument() throws Exception {
+
+        String arch = System.getProperty( "os.arch" );
+        assumeTrue( System.getProperty( "os.name" ).equals( "Linux" ) && ( arch.equals( "amd64" ) || arch.equals( "x86_64" ) ), "Executables are only run on Linux (x86-64)." );
+
+        Path source = Files.writeString( this.directory.resolve( "a.bf" ), "read,\n[>++[>.<-]<-]" );
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        int status = Transpiler.run( List.of( "--emit=elf", "--instrument=a.profile", "a.bf", "a" ), this.directory,
+                Channels.newChannel( ByteArrayOutputStream.nullOutputStream() ), new PrintStream( errors, true, StandardCharsets.UTF_8 ) );
+
+        assertEquals( 0x0, status, errors::toString );
+
+        Path input = Files.write( this.directory.resolve( "input" ), new byte[]{ 0x3 } );
+        Process process = new ProcessBuilder( this.directory.resolve( "a" ).toString() )
+                .directory( this.directory.toFile() )
+                .redirectInput( input.toFile() )
+                .redirectOutput( ProcessBuilder.Redirect.DISCARD )
+                .start();
+
+        assertTrue( process.waitFor( 0xA, TimeUnit.SECONDS ) );
+        assertEquals( 0x0, process.exitValue() );
+
+        Profile profile = Profile.read( this.directory.resolve( "a.profile" ) );
+
+        assertEquals( 0x2, profile.loops() );
+        assertArrayEquals( new long[]{ 0x6, 0xA }, new long[]{ profile.position( 0x0 ), profile.position( 0x1 ) } );
+        assertArrayEquals( new long[]{ 0x1, 0x3 }, new long[]{ profile.entries( 0x0 ), profile.entries( 0x1 ) } );
+        assertArrayEquals( new long[]{ 0x3, 0x6 }, new long[]{ profile.iterations( 0x0 ), profile.iterations( 0x1 ) } );
+
+        // The report lists the hottest loop first, by its line and column
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        Report.write( Files.readAllBytes( source ), profile, 0xA, new PrintStream( report, true, StandardCharsets.UTF_8 ) );
+        List< String > lines = report.toString( StandardCharsets.UTF_8 ).lines().toList();
+
+        assertEquals( 0x3, lines.size() );
+        assertTrue( lines.get( 0x1 ).startsWith( "2:5 " ) && lines.get( 0x1 ).endsWith( "[>.<-]" ), lines.get( 0x1 ) );
+        assertTrue( lines.get( 0x2 ).startsWith( "2:1 " ) && lines.get( 0x2 ).endsWith( "[>++[>.<-]<-]" ), lines.get( 0x2 ) );
+
+    }
+
+    private Path write( String name, long magic, long loops, long[] positions, long[] counts ) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate( 0x10 + ( positions.length + counts.length ) * 0x8 ).order( ByteOrder.LITTLE_ENDIAN );
+        buffer.putLong( magic ).putLong( loops );
+
+        for ( long value : positions ) {
+
+            buffer.putLong( value );
+
+        }
+
+        for ( long value : counts ) {
+
+            buffer.putLong( value );
+
+        }
+
+        return Files.write( this.directory.resolve( name ), buffer.array() );
+
+    }
+
+}
@@ -0,0 +1,120 @@
+package transpiler.brainfuck.validation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import transpiler.brainfuck.validation.exception.UnclosedBracketException;
+import transpiler.brainfuck.validation.exception.UnknownOperatorException;
+import transpiler.brainfuck.validation.exception.UnopenedBracketException;
+import transpiler.brainfuck.validation.exception.ValidationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValidatorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void comments() {
+
+        Validation validation = Validator.validate( ValidatorTest.buffer( "add [ +- ]\nloop [[>]<]" ), false );
+
+        assertTrue( validation.isValid() );
+        assertEquals( 0xA, validation.operators() );
+        assertEquals( 0x6, validation.count() );
+
+        // The entries of matching brackets refer to each other
+        assertArrayEquals( new int[]{ 0x1, 0x0, 0x5, 0x4, 0x3, 0x2 }, Arrays.copyOf( validation.brackets(), validation.count() ) );
+
+    }
+
+    @Test
+    void strict() {
+
+        Validation validation = Validator.validate( ValidatorTest.buffer( "+a\n]b[" ), true );
+        List< ValidationException > errors = validation.errors();
+
+        assertEquals( 0x4, errors.size() );
+        ValidatorTest.assertError( UnknownOperatorException.class, 0x1, 0x1, 0x2, errors.get( 0x0 ) );
+        ValidatorTest.assertError( UnopenedBracketException.class, 0x3, 0x2, 0x1, errors.get( 0x1 ) );
+        ValidatorTest.assertError( UnknownOperatorException.class, 0x4, 0x2, 0x2, errors.get( 0x2 ) );
+        ValidatorTest.assertError( UnclosedBracketException.class, 0x5, 0x2, 0x3, errors.get( 0x3 ) );
+
+    }
+
+    @Test
+    void brackets() {
+
+        // Without strict validation, only the brackets are errors (in the order they appear)
+        Validation validation = Validator.validate( ValidatorTest.buffer( "[ comment\n[]\n] ]\n[" ), false );
+        List< ValidationException > errors = validation.errors();
+
+        assertEquals( 0x2, errors.size() );
+        ValidatorTest.assertError( UnopenedBracketException.class, 0xF, 0x3, 0x3, errors.get( 0x0 ) );
+        ValidatorTest.assertError( UnclosedBracketException.class, 0x11, 0x4, 0x1, errors.get( 0x1 ) );
+
+    }
+
+    @Test
+    void check() {
+
+        Validation validation = Validator.validate( ValidatorTest.buffer( "]]" ), false );
+        ValidationException exception = assertThrows( ValidationException.class, validation::check );
+
+        assertSame( validation.errors().get( 0x0 ), exception );
+        assertEquals( 0x1, exception.getSuppressed().length );
+
+    }
+
+    @Test
+    void remainder() {
+
+        // Indices (and columns) are relative to the position, which is left unchanged
+        ByteBuffer source = ValidatorTest.buffer( "]]+]" ).position( 0x2 );
+        Validation validation = Validator.validate( source, false );
+
+        assertEquals( 0x2, source.position() );
+        assertEquals( 0x1, validation.errors().size() );
+        ValidatorTest.assertError( UnopenedBracketException.class, 0x1, 0x1, 0x2, validation.errors().get( 0x0 ) );
+
+    }
+
+    @Test
+    void file() throws Exception {
+
+        Path source = Files.writeString( this.directory.resolve( "a.bf" ), "+[>+\n<-]]" );
+        Validation validation = Validator.validate( source, false );
+
+        assertEquals( 0x1, validation.errors().size() );
+        ValidatorTest.assertError( UnopenedBracketException.class, 0x8, 0x2, 0x4, validation.errors().get( 0x0 ) );
+
+    }
+
+    private static ByteBuffer buffer( String source ) {
+
+        return ByteBuffer.wrap( source.getBytes( StandardCharsets.US_ASCII ) );
+
+    }
+
+    private static void assertError( Class< ? extends ValidationException > type, int index, int line, int column, ValidationException error ) {
+
+        assertInstanceOf( type, error );
+        assertEquals( index, error.index(), "index" );
+        assertEquals( line, error.line(), "line" );
+        assertEquals( column, error.column(), "column" );
+
+    }
+
+}
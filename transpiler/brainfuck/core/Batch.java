@@ -0,0 +1,277 @@
+package transpiler.brainfuck.core;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * A batch transpiles many programs at once, so that a single JVM (and its warmed up
+ * just-in-time compiler) serves all of them instead of starting one per program.
+ *
+ * The programs are transpiled concurrently on a fork-join pool; they don't share anything
+ * but the (read-only) configuration, hence the throughput grows with the amount of cores.
+ * A program that fails (e.g. because it isn't valid) is reported together with its path,
+ * but doesn't abort the batch; the remaining programs are still transpiled.
+ */
+public class Batch {
+
+    public static final String SOURCE_EXTENSION = ".bf";
+
+    private final Transpiler transpiler;
+    private final Cache cache;
+
+    // The jobs map each destination file to its source file, in the order they have been added;
+    // a source might be transpiled into several destinations, but a destination mustn't be written twice
+    private final Map< Path, Path > jobs = new LinkedHashMap<>();
+
+    public Batch( Transpiler transpiler, Cache cache ) {
+
+        this.transpiler = transpiler;
+        this.cache = cache;
+
+    }
+
+    /**
+     * Adds a job; its destination mustn't be the destination of any other job.
+     */
+    public Batch add( Path source, Path destination ) {
+
+        if ( !this.tryAdd( source, destination ) ) {
+
+            throw new IllegalArgumentException( String.format( "Destination '%s' is written by more than one program.", destination ) );
+
+        }
+
+        return this;
+
+    }
+
+    private boolean tryAdd( Path source, Path destination ) {
+
+        return this.jobs.putIfAbsent( destination.toAbsolutePath().normalize(), source ) == null;
+
+    }
+
+    /**
+     * Adds each 'Brainfuck' program (*.bf) within the given directory (and its subdirectories).
+     * Its destination lies at the same relative path within the destination directory,
+     * but with the extension replaced by the one of the format (e.g. '.asm').
+     */
+    public Batch addDirectory( Path source, Path destination ) throws IOException {
+
+        try ( Stream< Path > files = Files.walk( source ) ) {
+
+            for ( Path file : ( Iterable< Path > ) files.filter( Files::isRegularFile ).filter( Batch::isSource ).sorted()::iterator ) {
+
+                String relative = source.relativize( file ).toString();
+                relative = relative.substring( 0x0, relative.length() - SOURCE_EXTENSION.length() ) + this.transpiler.format().extension();
+
+                this.add( file, destination.resolve( relative ) );
+
+            }
+
+        }
+
+        return this;
+
+    }
+
+    /**
+     * Adds each job that is listed by the given manifest.
+     *
+     * Each line of the manifest names a source file and its destination file, separated
+     * by whitespace; empty lines and lines starting with '#' are skipped.
+     * Relative paths are resolved against the directory of the manifest; a destination
+     * that is listed more than once is reported together with the line that lists it again.
+     */
+    public Batch addManifest( Path manifest ) throws IOException {
+
+        Path directory = manifest.toAbsolutePath().getParent();
+        int number = 0x0;
+
+        for ( String line : Files.readAllLines( manifest ) ) {
+
+            number++;
+            line = line.strip();
+
+            if ( line.isEmpty() || line.startsWith( "#" ) ) {
+
+                continue;
+
+            }
+
+            String[] paths = line.split( "\\s+" );
+
+            if ( paths.length != 0x2 ) {
+
+                throw new IllegalArgumentException( String.format( "Line '%s' of manifest '%s' doesn't consist of a source and a destination.", number, manifest ) );
+
+            }
+
+            if ( !this.tryAdd( directory.resolve( paths[ 0x0 ] ), directory.resolve( paths[ 0x1 ] ) ) ) {
+
+                throw new IllegalArgumentException( String.format( "Line '%s' of manifest '%s' names destination '%s', which is written by more than one program.", number, manifest, paths[ 0x1 ] ) );
+
+            }
+
+        }
+
+        return this;
+
+    }
+
+    public int size() {
+
+        return this.jobs.size();
+
+    }
+
+    /**
+     * Transpiles all programs of the batch, using the given amount of threads.
+     *
+     * Failures are written to the given stream (one line per program, in the order the
+     * programs have been added, regardless of the order in which they have been finished).
+     * Returns the amount of programs that have failed.
+     *
+     * A single thread (or a single program) doesn't need a pool at all;
+     * the programs are then transpiled by the calling thread.
+     */
+    public int run( int threads, PrintStream errors ) {
+
+        if ( threads <= 0x1 || this.jobs.size() <= 0x1 ) {
+
+            int failures = 0x0;
+
+            for ( Map.Entry< Path, Path > job : this.jobs.entrySet() ) {
+
+                failures += this.report( job.getValue(), this.transpile( job ), errors );
+
+            }
+
+            return failures;
+
+        }
+
+        ForkJoinPool pool = new ForkJoinPool( Math.max( threads, 0x1 ) );
+        List< Future< Exception > > results = new ArrayList<>( this.jobs.size() );
+
+        try {
+
+            for ( Map.Entry< Path, Path > job : this.jobs.entrySet() ) {
+
+                results.add( pool.submit( () -> this.transpile( job ) ) );
+
+            }
+
+            int failures = 0x0;
+            int index = 0x0;
+
+            for ( Path source : this.jobs.values() ) {
+
+                try {
+
+                    failures += this.report( source, results.get( index++ ).get(), errors );
+
+                } catch ( ExecutionException exception ) {
+
+                    Batch.print( source, exception.getCause(), errors );
+                    failures++;
+
+                } catch ( InterruptedException exception ) {
+
+                    Thread.currentThread().interrupt();
+                    return failures + ( this.jobs.size() - index + 0x1 );
+
+                }
+
+            }
+
+            return failures;
+
+        } finally {
+
+            pool.shutdownNow();
+
+        }
+
+    }
+
+    /*
+    Each job yields the exception it has failed with (if any).
+     */
+    private Exception transpile( Map.Entry< Path, Path > job ) {
+
+        try {
+
+            this.transpiler.transpile( job.getValue(), job.getKey(), this.cache );
+            return null;
+
+        } catch ( Exception exception ) {
+
+            return exception;
+
+        }
+
+    }
+
+    private int report( Path source, Exception exception, PrintStream errors ) {
+
+        if ( exception == null ) {
+
+            return 0x0;
+
+        }
+
+        Batch.print( source, exception, errors );
+        return 0x1;
+
+    }
+
+    /**
+     * Reports the given failure of the given program; if there are further errors
+     * (e.g. a program that isn't valid in many places), each of them is reported on a line of its own.
+     */
+    static void print( Path source, Throwable throwable, PrintStream errors ) {
+
+        errors.printf( "error: %s: %s%n", source, Batch.describe( throwable ) );
+
+        for ( Throwable suppressed : throwable.getSuppressed() ) {
+
+            errors.printf( "error: %s: %s%n", source, Batch.describe( suppressed ) );
+
+        }
+
+    }
+
+    private static boolean isSource( Path file ) {
+
+        return file.getFileName().toString().endsWith( SOURCE_EXTENSION );
+
+    }
+
+    /*
+    Validation errors describe themselves; any other error (e.g. a file that doesn't exist)
+    needs its type to be understood.
+     */
+    static String describe( Throwable throwable ) {
+
+        if ( throwable.getClass().getPackageName().startsWith( "transpiler.brainfuck" ) ) {
+
+            return throwable.getMessage();
+
+        }
+
+        return throwable.toString();
+
+    }
+
+}
@@ -0,0 +1,289 @@
+package transpiler.brainfuck.core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The cache keeps transpiled programs on disk, so that transpiling a program
+ * that has been transpiled before (with the very same options) merely copies
+ * the earlier result instead of parsing, optimizing and emitting it again.
+ *
+ * Its entries are content-addressed:
+ * The key of an entry is the SHA-256 hash of the source, the options and the version
+ * of the transpiler, hence an entry never has to be invalidated; if anything
+ * that affects the result changes, so does the key.
+ * This relies on the transpiled programs being reproducible (which they are,
+ * since labels are named after the instructions they belong to).
+ *
+ * The size of the cache is bounded:
+ * Whenever an entry is stored and the entries exceed the maximum size, the least recently
+ * used entries are removed; each hit touches its entry, so that its modification time
+ * tells when it has been used last.
+ * The size of the entries is kept track of while they are stored, hence the directory is only
+ * listed once it has to be evicted (which then frees a share of the cache, so that it doesn't
+ * have to be listed again right with the next entry).
+ * Entries are named after their keys only, since the key already tells the format apart.
+ * Entries are stored atomically (written to a temporary file first and then moved),
+ * hence several threads and even several processes can share the same cache.
+ */
+public class Cache {
+
+    public static final long DEFAULT_SIZE = 0x10000000;
+
+    private static final String TEMPORARY = ".tmp";
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    // The share of the maximum size (in eighths) the entries are evicted down to
+    private static final int EVICTED = 0x7;
+
+    private final Path directory;
+    private final long size;
+
+    // The size of the entries (as far as this cache knows), or -1 if it hasn't been determined yet
+    private long total = -0x1;
+
+    public Cache( Path directory ) {
+
+        this( directory, DEFAULT_SIZE );
+
+    }
+
+    public Cache( Path directory, long size ) {
+
+        this.directory = directory;
+        this.size = size;
+
+    }
+
+    public Path directory() {
+
+        return this.directory;
+
+    }
+
+    /**
+     * Computes the key of the given source transpiled with the given options,
+     * which have to describe everything that affects the result.
+     */
+    public static String key( byte[] source, String options ) {
+
+        return Cache.key( ByteBuffer.wrap( source ), options );
+
+    }
+
+    /**
+     * Computes the key of the remainder of the given buffer, just like above; its position is left unchanged.
+     */
+    public static String key( ByteBuffer source, String options ) {
+
+        try {
+
+            MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+            digest.update( Transpiler.VERSION.getBytes( StandardCharsets.US_ASCII ) );
+            digest.update( ( byte ) 0x0 );
+            digest.update( options.getBytes( StandardCharsets.UTF_8 ) );
+            digest.update( ( byte ) 0x0 );
+            digest.update( source.duplicate() );
+
+            byte[] hash = digest.digest();
+            char[] key = new char[ hash.length * 0x2 ];
+
+            for ( int i = 0x0; i < hash.length; i++ ) {
+
+                key[ i * 0x2 ] = DIGITS[ ( hash[ i ] >>> 0x4 ) & 0xF ];
+                key[ i * 0x2 + 0x1 ] = DIGITS[ hash[ i ] & 0xF ];
+
+            }
+
+            return new String( key );
+
+        } catch ( NoSuchAlgorithmException exception ) {
+
+            // Each Java platform is required to support SHA-256
+            throw new IllegalStateException( exception );
+
+        }
+
+    }
+
+    /**
+     * Copies the entry with the given key (if there is one) to the given destination.
+     * Returns whether there has been such an entry.
+     */
+    public boolean load( String key, Path destination ) throws IOException {
+
+        Path entry = this.entry( key );
+
+        try {
+
+            Files.copy( entry, destination, StandardCopyOption.REPLACE_EXISTING );
+            Files.setLastModifiedTime( entry, FileTime.fromMillis( System.currentTimeMillis() ) );
+            return true;
+
+        } catch ( NoSuchFileException exception ) {
+
+            // The entry doesn't exist (or has just been evicted)
+            return false;
+
+        }
+
+    }
+
+    /**
+     * Stores a copy of the given (transpiled) file as the entry with the given key
+     * and evicts the least recently used entries if the cache has grown too large.
+     */
+    public void store( String key, Path file ) throws IOException {
+
+        Files.createDirectories( this.directory );
+
+        Path temporary = Files.createTempFile( this.directory, key, TEMPORARY );
+        long length;
+
+        try {
+
+            Files.copy( file, temporary, StandardCopyOption.REPLACE_EXISTING );
+            length = Files.size( temporary );
+            Files.move( temporary, this.entry( key ), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+        } finally {
+
+            Files.deleteIfExists( temporary );
+
+        }
+
+        this.grow( length );
+
+    }
+
+    /*
+    Adds a stored entry to the size of the cache (an entry that has been replaced is counted twice,
+    which merely evicts a little early) and evicts entries if it has grown too large.
+     */
+    private synchronized void grow( long length ) throws IOException {
+
+        if ( this.total < 0x0 ) {
+
+            this.total = this.evict( Long.MAX_VALUE );
+
+        } else {
+
+            this.total += length;
+
+        }
+
+        if ( this.total > this.size ) {
+
+            this.total = this.evict( this.size / 0x8 * EVICTED );
+
+        }
+
+    }
+
+    /*
+    Removes the least recently used entries until the remaining ones fit into the given size
+    and returns the size of the remaining ones. Entries that vanish meanwhile
+    (e.g. because another process evicts them, too) are skipped.
+     */
+    private long evict( long limit ) throws IOException {
+
+        List< Path > entries = new ArrayList<>();
+        long total = 0x0;
+
+        try ( Stream< Path > files = Files.list( this.directory ) ) {
+
+            for ( Path file : ( Iterable< Path > ) files.filter( Cache::isEntry )::iterator ) {
+
+                try {
+
+                    total += Files.size( file );
+                    entries.add( file );
+
+                } catch ( NoSuchFileException exception ) {
+
+                    // The entry has been removed in the meantime
+
+                }
+
+            }
+
+        }
+
+        if ( total <= limit ) {
+
+            return total;
+
+        }
+
+        entries.sort( Comparator.comparing( Cache::lastModified ) );
+
+        for ( Path entry : entries ) {
+
+            if ( total <= limit ) {
+
+                break;
+
+            }
+
+            try {
+
+                long length = Files.size( entry );
+                Files.delete( entry );
+                total -= length;
+
+            } catch ( NoSuchFileException exception ) {
+
+                // The entry has been removed in the meantime
+
+            }
+
+        }
+
+        return total;
+
+    }
+
+    private Path entry( String key ) {
+
+        return this.directory.resolve( key );
+
+    }
+
+    private static boolean isEntry( Path file ) {
+
+        return !file.getFileName().toString().endsWith( TEMPORARY );
+
+    }
+
+    private static FileTime lastModified( Path file ) {
+
+        try {
+
+            return Files.getLastModifiedTime( file );
+
+        } catch ( NoSuchFileException exception ) {
+
+            return FileTime.fromMillis( 0x0 );
+
+        } catch ( IOException exception ) {
+
+            throw new UncheckedIOException( exception );
+
+        }
+
+    }
+
+}
@@ -0,0 +1,161 @@
+package transpiler.brainfuck.core;
+
+import transpiler.brainfuck.ir.PassManager;
+import transpiler.brainfuck.ir.Program;
+import transpiler.brainfuck.metrics.Metrics;
+import transpiler.brainfuck.parser.Parser;
+import transpiler.brainfuck.validation.Validation;
+import transpiler.brainfuck.validation.Validator;
+import transpiler.brainfuck.validation.exception.ValidationException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Huge programs (e.g. generated ones) would be parsed and optimized by a single thread,
+ * while the remaining cores sit idle. Instead, their source is split into chunks between
+ * top-level loops (where no loop is open), each of which is a valid program on its own:
+ *
+ *      -> the whole source is validated beforehand (so that errors refer to the whole source)
+ *      -> each chunk is parsed and optimized by the local passes (see Pass.isLocal)
+ *         on a fork-join pool, independently of the others
+ *      -> the chunks are joined in order (their instructions keep their positions within the whole source),
+ *         which the remaining passes then optimize as a whole
+ *
+ * The joined program behaves just like the whole program optimized at once, but it isn't necessarily
+ * the very same: The local passes can't optimize across the bounds of the chunks (e.g. the pointer is moved
+ * at the end of each chunk rather than deferred into the next one).
+ *
+ * Labels are told apart by the indices of the instructions within the joined program
+ * (see NasmEmitter), hence the chunks don't get into each other's way.
+ *
+ * The chunks are forked into the pool the calling thread belongs to (e.g. the pool of a Batch)
+ * or into the common pool; sources that are smaller than the threshold aren't split at all.
+ * Where a source is split only depends on the source itself (never on the amount of threads),
+ * since the optimized program (and therefore the cached output, see Cache) has to be the same on any machine.
+ */
+public final class Chunks {
+
+    public static final int THRESHOLD = 0x100000;
+
+    // The size of a chunk (in bytes of source) at least, which keeps the overhead per chunk small
+    private static final int SIZE = 0x40000;
+
+    private Chunks() {}
+
+    /**
+     * Validates, parses and optimizes the remainder of the given buffer into a program that behaves
+     * just like the whole program optimized by the given passes at once; its position is left unchanged.
+     */
+    public static Program compile( ByteBuffer source, boolean strict, PassManager passes ) throws ValidationException {
+
+        return Chunks.compile( source, strict, passes, Metrics.DISABLED );
+
+    }
+
+    /**
+     * Compiles the given source, just like above, recording each stage in the given metrics;
+     * the stages of the chunks add up.
+     */
+    public static Program compile( ByteBuffer source, boolean strict, PassManager passes, Metrics metrics ) throws ValidationException {
+
+        Validation validation = metrics.time( "validation", () -> Validator.validate( source, strict ) );
+
+        validation.check();
+        metrics.setOperators( validation.operators() );
+
+        if ( source.remaining() < THRESHOLD ) {
+
+            Program program = metrics.time( "parsing", () -> Parser.parse( source, validation ) );
+            return passes.run( program, metrics );
+
+        }
+
+        int[] bounds = Chunks.split( source, SIZE );
+        List< ForkJoinTask< Program > > chunks = new ArrayList<>( bounds.length - 0x1 );
+
+        for ( int i = 0x0; i < bounds.length - 0x1; i++ ) {
+
+            ByteBuffer chunk = source.duplicate().position( bounds[ i ] ).limit( bounds[ i + 0x1 ] );
+            chunks.add( ForkJoinTask.adapt( ( Callable< Program > ) () -> metrics.delegate( () -> Chunks.compileChunk( chunk, passes, metrics ) ) ).fork() );
+
+        }
+
+        Program[] programs = new Program[ chunks.size() ];
+        int size = 0x0;
+
+        for ( int i = 0x0; i < programs.length; i++ ) {
+
+            programs[ i ] = chunks.get( i ).join();
+            size += programs[ i ].size();
+
+        }
+
+        Program joined = new Program( size );
+
+        for ( int i = 0x0; i < programs.length; i++ ) {
+
+            joined.appendAll( programs[ i ], bounds[ i ] - source.position() );
+
+            // Chunks that have been joined aren't needed anymore
+            programs[ i ] = null;
+
+        }
+
+        return passes.runGlobal( joined, metrics );
+
+    }
+
+    private static Program compileChunk( ByteBuffer chunk, PassManager passes, Metrics metrics ) {
+
+        return passes.runLocal( metrics.time( "parsing", () -> Parser.parse( chunk ) ), metrics );
+
+    }
+
+    /*
+    Returns the bounds of the chunks (the beginning of each chunk, followed by the end of the last one),
+    each of which spans at least the given size (apart from the last one), unless a top-level loop
+    is larger than that.
+     */
+    private static int[] split( ByteBuffer source, int size ) {
+
+        int[] bounds = new int[ 0x10 ];
+        int count = 0x0;
+        int depth = 0x0;
+
+        bounds[ count++ ] = source.position();
+
+        for ( int i = source.position(); i < source.limit(); i++ ) {
+
+            byte character = source.get( i );
+
+            if ( character == '[' ) {
+
+                depth++;
+
+            } else if ( character == ']' && --depth == 0x0 && i + 0x1 - bounds[ count - 0x1 ] >= size && i + 0x1 < source.limit() ) {
+
+                if ( count == bounds.length ) {
+
+                    bounds = Arrays.copyOf( bounds, count * 0x2 );
+
+                }
+
+                bounds[ count++ ] = i + 0x1;
+
+            }
+
+        }
+
+        bounds = Arrays.copyOf( bounds, count + 0x1 );
+        bounds[ count ] = source.limit();
+
+        return bounds;
+
+    }
+
+}
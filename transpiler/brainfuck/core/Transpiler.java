@@ -1,63 +1,150 @@
 package transpiler.brainfuck.core;
 
-import transpiler.brainfuck.parser.Parser;
+import transpiler.brainfuck.emitter.AssemblyWriter;
+import transpiler.brainfuck.emitter.ElfEmitter;
+import transpiler.brainfuck.emitter.EndOfInput;
+import transpiler.brainfuck.emitter.Format;
+import transpiler.brainfuck.emitter.Layout;
+import transpiler.brainfuck.emitter.NasmEmitter;
+import transpiler.brainfuck.emitter.Template;
+import transpiler.brainfuck.engine.Engine;
+import transpiler.brainfuck.engine.TapeException;
+import transpiler.brainfuck.ir.Pass;
+import transpiler.brainfuck.ir.PassManager;
+import transpiler.brainfuck.ir.Program;
+import transpiler.brainfuck.ir.pass.PartialEvaluation;
+import transpiler.brainfuck.metrics.Metrics;
+import transpiler.brainfuck.metrics.MetricsListener;
+import transpiler.brainfuck.profile.Profile;
+import transpiler.brainfuck.validation.exception.ValidationException;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Scanner;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * This program transpiles 'Brainfuck' to 'NASM assembly' (Linux)
  * while making some optimizations.
+ *
+ * It is run from the command line (see main) or embedded as a library:
+ * An instance of the transpiler holds its configuration and transpiles programs
+ * from memory (or any channel) into memory (or any channel), without touching the disk.
  */
 public class Transpiler {
 
+    /**
+     * The version is part of the key of cached programs (see Cache), hence it has to be
+     * changed whenever a change of the transpiler changes the transpiled programs.
+     */
+    public static final String VERSION = "0.20";
+
+    public static final String DEFAULT_PROFILE = "brainfuck.profile";
+
+    private final PassManager passes;
+    private final EndOfInput endOfInput;
+    private final long tape;
+    private final Format format;
+    private final boolean strict;
+    private final String instrument;
+    private final Profile profile;
+    private final boolean rotate;
+    private final List< MetricsListener > listeners;
+
+    /**
+     * Creates a transpiler with the default configuration.
+     */
+    public Transpiler() {
+
+        this( new Builder() );
+
+    }
+
+    /*
+    The transpiler works on a copy of the pass manager (whose partial evaluation, if there is one,
+    is adapted to the tape), hence transpilers with different tapes can share the same one.
+    A transpiler doesn't change after its creation and neither do its passes when they run,
+    hence one transpiler can serve any amount of threads at the same time.
+     */
+    private Transpiler( Builder builder ) {
+
+        // The passes might be shared (e.g. by transpilers with different tapes), hence they are adapted on a copy
+        PassManager adapted = builder.passes.copy();
+
+        for ( Pass pass : builder.passes.passes() ) {
+
+            if ( pass instanceof PartialEvaluation evaluation ) {
+
+                adapted.replace( evaluation.forTape( builder.tape ) );
+
+            }
+
+        }
+
+        this.passes = adapted;
+        this.endOfInput = builder.endOfInput;
+        this.tape = builder.tape;
+        this.format = builder.format;
+        this.strict = builder.strict;
+        this.instrument = builder.instrument;
+        this.profile = builder.profile;
+        this.rotate = builder.rotate;
+        this.listeners = List.copyOf( builder.listeners );
+
+    }
+
+    /**
+     * Returns a builder of a transpiler, starting from the default configuration.
+     */
+    public static Builder builder() {
+
+        return new Builder();
+
+    }
+
+    /**
+     * Returns a transpiler, just like this one, which tells the given listener about the metrics
+     * of each program it transpiles (see Metrics) in addition to the listeners of this one.
+     */
+    public Transpiler listen( MetricsListener listener ) {
+
+        return new Builder( this ).listen( listener ).build();
+
+    }
+
     public static void main( String ... arguments ) {
 
         try {
 
-            /*
-            There are only two valid arguments:
-
-                -> arguments[0x0] = source directory
-                -> arguments[0x1] = destination directory
-             */
-            if ( arguments.length == 0x2 ) {
-
-                /*
-                The coarse structure of the transpiled programs is described by the file '/transpiler.brainfuck.template/transpiler.brainfuck.template.asm'.
-                It first is loaded from inside the JAR with help of the Scanner implementation and then
-                certain placeholders (e.g. %SOURCE% which will contain the transpiled source code) are
-                replaced with the actual values.
-
-                The transpilation work is actually done by the parser which reads in the operator sequence
-                of the given 'Brainfuck' program and translates it into 'NASM assembly' while making optimizations.
-                 */
-                Scanner scanner = new Scanner( Transpiler.class.getResourceAsStream("/transpiler/brainfuck/template/template.asm") ).useDelimiter( "\\A" );
-                String template = scanner.hasNext() ? scanner.next() : "";
-                String modified = template.replaceAll( "%STACK_SIZE_REGISTER%", Parser.STACK_SIZE_REGISTER )
-                                          .replaceAll( "%STACK_SIZE%", Parser.STACK_SIZE )
-                                          .replaceAll( "%POINTER_REGISTER%", Parser.INDEX_REGISTER )
-                                          .replaceAll( "%SOURCE%", Parser.parse( Paths.get( arguments[ 0 ] ) ) );
-
-                /*
-                After transpilation, the assembly source code is then
-                transferred into the specified destination file.
-                 */
-                PrintWriter writer = new PrintWriter( arguments[ 1 ], StandardCharsets.UTF_8 );
-                writer.println( modified );
-                writer.close();
+            int status = Transpiler.run( List.of( arguments ), Paths.get( "" ).toAbsolutePath(), Channels.newChannel( System.in ), Channels.newChannel( System.out ), System.err );
 
-            } else {
+            if ( status != 0x0 ) {
 
-                throw new IllegalArgumentException( "Illegal argument count.\nArguments: <source> <destination>" );
+                System.exit( status );
 
             }
 
+        } catch ( IllegalArgumentException exception ) {
+
+            // Usage errors (e.g. an unknown pass or an argument that isn't a number) don't need a stack trace
+            System.err.printf( "error: %s%n", exception.getMessage() );
+            System.exit( 0x1 );
+
         } catch ( IOException exception ) {
 
             exception.printStackTrace();
@@ -66,4 +153,986 @@ public class Transpiler {
 
     }
 
+    /**
+     * Runs the transpiler with the given arguments (see below) and returns its exit status,
+     * which is zero if, and only if, each program has been transpiled successfully.
+     *
+     * Relative paths are resolved against the given directory (which is not necessarily
+     * the working directory of this process, e.g. if the transpiler runs as a daemon).
+     * A destination of '-' writes the transpiled program to the given output instead of a file;
+     * failures are written to the given error stream.
+     *
+     * Programs that are run right away (see --run) don't get any input.
+     */
+    public static int run( List< String > arguments, Path directory, WritableByteChannel output, PrintStream errors ) throws IOException {
+
+        return Transpiler.run( arguments, directory, Channels.newChannel( InputStream.nullInputStream() ), output, errors );
+
+    }
+
+    /**
+     * Runs the transpiler with the given arguments, just like above;
+     * programs that are run right away (see --run) read their input from the given channel.
+     */
+    public static int run( List< String > arguments, Path directory, ReadableByteChannel input, WritableByteChannel output, PrintStream errors ) throws IOException {
+
+        /*
+        Optimization passes can be turned on or off one at a time
+        by options that precede the actual arguments:
+
+            -> --enable=<pass>
+            -> --disable=<pass>
+
+        The amount of steps that are executed at compile time
+        (see PartialEvaluation) can be limited as well:
+
+            -> --budget=<steps>
+
+        What happens if no input is left (see EndOfInput) can be chosen, too,
+        as well as the amount of cells of the tape:
+
+            -> --eof=<unchanged|zero|minus-one>
+            -> --tape=<cells>
+
+        Programs are emitted as 'NASM assembly' by default; they can be emitted
+        as executables (see ElfEmitter) instead, which needs neither an assembler nor a linker:
+
+            -> --emit=<nasm|elf>
+
+        Many programs can be transpiled at once (see Batch), either by passing directories
+        instead of files or by listing them in a manifest; the amount of threads
+        defaults to the amount of available processors:
+
+            -> --manifest=<file>
+            -> --threads=<count>
+
+        Transpiled programs can be cached (see Cache), so that unchanged programs
+        don't have to be transpiled again; the cache is bounded by a size in bytes:
+
+            -> --cache=<directory>
+            -> --cache-size=<bytes>
+
+        Any character that isn't an operator is a comment, unless the programs are validated strictly:
+
+            -> --strict
+
+        Programs can be instrumented, so that they write a profile of their loops when they exit
+        (see Profile and Report), by default to 'brainfuck.profile':
+
+            -> --instrument[=<file>]
+
+        The profile of an instrumented program then guides transpiling the very same program
+        (see Layout), which lays out the loops that are hot for speed:
+
+            -> --profile=<file>
+
+        Without a profile, programs can be laid out for speed as a whole, which rotates each loop
+        and keeps the current cell in a register (see Layout):
+
+            -> --rotate
+
+        The metrics of each program (see Metrics) can be written as one line of JSON per program,
+        either to the error stream or to the given file (which is truncated beforehand):
+
+            -> --stats[=<file>]
+
+        Instead of being transpiled, a program can be run right away within the JVM (see Engine),
+        which takes the place of the destination:
+
+            -> --run
+         */
+        PassManager passes = PassManager.standard();
+        EndOfInput endOfInput = EndOfInput.UNCHANGED;
+        long tape = NasmEmitter.DEFAULT_TAPE_SIZE;
+        Format format = Format.NASM;
+        Path manifest = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path cache = null;
+        long cacheSize = Cache.DEFAULT_SIZE;
+        boolean strict = false;
+        String instrument = null;
+        Profile profile = null;
+        boolean rotate = false;
+        boolean stats = false;
+        Path statsFile = null;
+        boolean run = false;
+        List< String > paths = new ArrayList<>();
+
+        for ( String argument : arguments ) {
+
+            if ( argument.startsWith( "--enable=" ) ) {
+
+                passes.enable( argument.substring( argument.indexOf( '=' ) + 0x1 ) );
+
+            } else if ( argument.startsWith( "--disable=" ) ) {
+
+                passes.disable( argument.substring( argument.indexOf( '=' ) + 0x1 ) );
+
+            } else if ( argument.startsWith( "--budget=" ) ) {
+
+                PartialEvaluation evaluation = ( PartialEvaluation ) passes.get( "evaluate-prefix" );
+                evaluation.setBudget( Transpiler.number( argument ) );
+
+            } else if ( argument.startsWith( "--eof=" ) ) {
+
+                endOfInput = EndOfInput.of( argument.substring( argument.indexOf( '=' ) + 0x1 ) );
+
+            } else if ( argument.startsWith( "--tape=" ) ) {
+
+                tape = Transpiler.number( argument );
+
+            } else if ( argument.startsWith( "--emit=" ) ) {
+
+                format = Format.of( argument.substring( argument.indexOf( '=' ) + 0x1 ) );
+
+            } else if ( argument.startsWith( "--manifest=" ) ) {
+
+                manifest = directory.resolve( argument.substring( argument.indexOf( '=' ) + 0x1 ) );
+
+            } else if ( argument.startsWith( "--threads=" ) ) {
+
+                threads = ( int ) Math.min( Transpiler.number( argument ), Integer.MAX_VALUE );
+
+            } else if ( argument.startsWith( "--cache=" ) ) {
+
+                cache = directory.resolve( argument.substring( argument.indexOf( '=' ) + 0x1 ) );
+
+            } else if ( argument.startsWith( "--cache-size=" ) ) {
+
+                cacheSize = Transpiler.number( argument );
+
+            } else if ( argument.equals( "--strict" ) ) {
+
+                strict = true;
+
+            } else if ( argument.equals( "--instrument" ) ) {
+
+                instrument = DEFAULT_PROFILE;
+
+            } else if ( argument.startsWith( "--instrument=" ) ) {
+
+                instrument = argument.substring( argument.indexOf( '=' ) + 0x1 );
+
+            } else if ( argument.startsWith( "--profile=" ) ) {
+
+                profile = Profile.read( directory.resolve( argument.substring( argument.indexOf( '=' ) + 0x1 ) ) );
+
+            } else if ( argument.equals( "--rotate" ) ) {
+
+                rotate = true;
+
+            } else if ( argument.equals( "--stats" ) ) {
+
+                stats = true;
+
+            } else if ( argument.startsWith( "--stats=" ) ) {
+
+                stats = true;
+                statsFile = directory.resolve( argument.substring( argument.indexOf( '=' ) + 0x1 ) );
+
+            } else if ( argument.equals( "--run" ) ) {
+
+                run = true;
+
+            } else {
+
+                paths.add( argument );
+
+            }
+
+        }
+
+        Transpiler transpiler = Transpiler.builder()
+                .passes( passes )
+                .endOfInput( endOfInput )
+                .tape( tape )
+                .format( format )
+                .strict( strict )
+                .instrument( instrument )
+                .profile( profile )
+                .rotate( rotate )
+                .build();
+
+        if ( stats ) {
+
+            transpiler = transpiler.listen( Transpiler.stats( statsFile, errors ) );
+
+        }
+
+        if ( run && instrument == null && manifest == null && paths.size() == 0x1 ) {
+
+            Path source = directory.resolve( paths.get( 0x0 ) );
+
+            try {
+
+                Metrics metrics = transpiler.metrics( source.toString() );
+                Program program = transpiler.compile( Transpiler.map( source ), metrics );
+                metrics.finish();
+
+                transpiler.run( program, input, output );
+                return 0x0;
+
+            } catch ( Exception exception ) {
+
+                Batch.print( source, exception, errors );
+                return 0x1;
+
+            }
+
+        }
+
+        Batch batch = new Batch( transpiler, ( cache == null ? null : new Cache( cache, cacheSize ) ) );
+
+        /*
+        There are only two valid arguments (unless a manifest lists the programs):
+
+            -> paths[0x0] = source file or directory
+            -> paths[0x1] = destination file or directory
+         */
+        if ( manifest != null && paths.isEmpty() ) {
+
+            batch.addManifest( manifest );
+
+        } else if ( !run && manifest == null && paths.size() == 0x2 ) {
+
+            Path source = directory.resolve( paths.get( 0x0 ) );
+            Path destination = directory.resolve( paths.get( 0x1 ) );
+
+            if ( paths.get( 0x1 ).equals( "-" ) ) {
+
+                try {
+
+                    Metrics metrics = transpiler.metrics( source.toString() );
+                    transpiler.emit( transpiler.compile( Transpiler.map( source ), metrics ), output, metrics );
+                    metrics.finish();
+                    return 0x0;
+
+                } catch ( Exception exception ) {
+
+                    Batch.print( source, exception, errors );
+                    return 0x1;
+
+                }
+
+            } else if ( Files.isDirectory( source ) ) {
+
+                batch.addDirectory( source, destination );
+
+            } else {
+
+                batch.add( source, destination );
+
+            }
+
+        } else {
+
+            throw new IllegalArgumentException( "Illegal argument count.\nArguments: [--enable=<pass>] [--disable=<pass>] [--budget=<steps>] [--eof=<behavior>] [--tape=<cells>] [--emit=<format>] [--threads=<count>] [--cache=<directory>] [--cache-size=<bytes>] [--strict] [--instrument[=<file>]] [--profile=<file>] [--rotate] [--stats[=<file>]] (<source> <destination|-> | --manifest=<file> | --run <source>)" );
+
+        }
+
+        return ( batch.run( Math.min( threads, batch.size() ), errors ) > 0x0 ? 0x1 : 0x0 );
+
+    }
+
+    /**
+     * Compiles the given 'Brainfuck' program into the (optimized) intermediate representation,
+     * which can then be emitted (see emit).
+     *
+     * The transpilation work is actually done in three steps:
+     * The parser reads in the operator sequence of the given 'Brainfuck' program and translates it
+     * into the intermediate representation, the passes optimize it and the emitter finally
+     * translates it into 'NASM assembly'.
+     */
+    public Program compile( byte[] source ) throws ValidationException {
+
+        return this.compile( ByteBuffer.wrap( source ) );
+
+    }
+
+    /**
+     * Since 'Brainfuck' operators are ASCII characters, each character is taken as one byte;
+     * any other character is a comment (or rejected by the validator in strict mode) anyway.
+     */
+    public Program compile( CharSequence source ) throws ValidationException {
+
+        return this.compile( Transpiler.bytes( source ) );
+
+    }
+
+    /*
+    Numeric arguments (e.g. '--tape=0x100000') are given in decimal or hexadecimal;
+    anything else is a usage error, just like an unknown argument.
+     */
+    private static long number( String argument ) {
+
+        try {
+
+            return Long.decode( argument.substring( argument.indexOf( '=' ) + 0x1 ) );
+
+        } catch ( NumberFormatException exception ) {
+
+            throw new IllegalArgumentException( String.format( "Argument '%s' is not a number.", argument ) );
+
+        }
+
+    }
+
+    private static byte[] bytes( CharSequence source ) {
+
+        byte[] bytes = new byte[ source.length() ];
+
+        for ( int i = 0x0; i < bytes.length; i++ ) {
+
+            char character = source.charAt( i );
+            bytes[ i ] = ( byte ) ( character < 0x80 ? character : 0x7F );
+
+        }
+
+        return bytes;
+
+    }
+
+    /**
+     * Compiles the remainder of the given buffer; its position is left unchanged.
+     * Huge programs are split into chunks that are parsed and optimized concurrently (see Chunks).
+     */
+    public Program compile( ByteBuffer source ) throws ValidationException {
+
+        return this.compile( source, Metrics.DISABLED );
+
+    }
+
+    /**
+     * Compiles the remainder of the given buffer, just like above, recording each stage
+     * (validation, parsing and each pass) in the given metrics.
+     */
+    public Program compile( ByteBuffer source, Metrics metrics ) throws ValidationException {
+
+        return Chunks.compile( source, this.strict, this.passes, metrics );
+
+    }
+
+    /**
+     * Compiles everything that is read from the given channel until its end (which is left open).
+     */
+    public Program compile( ReadableByteChannel source ) throws IOException, ValidationException {
+
+        return this.compile( Channels.newInputStream( Transpiler.unclosable( source ) ).readAllBytes() );
+
+    }
+
+    /**
+     * Emits the given program into the given channel (which is left open),
+     * either as 'NASM assembly' or as executable (see ElfEmitter).
+     *
+     * The coarse structure of the transpiled programs is described by the file '/transpiler/brainfuck/template/template.asm'.
+     * It is loaded from inside the JAR (see Template) and then written to the destination
+     * with certain placeholders (e.g. %SOURCE% which will contain the transpiled source code)
+     * replaced with the actual values.
+     * The assembly source code is transferred into the destination while it is emitted,
+     * that is, without building it in memory first.
+     */
+    public void emit( Program program, WritableByteChannel destination ) throws IOException {
+
+        this.emit( program, destination, Metrics.DISABLED );
+
+    }
+
+    /**
+     * Emits the given program, just like above, recording the emission in the given metrics
+     * along with the amount of instructions, of syscalls and of bytes that are emitted.
+     */
+    public void emit( Program program, WritableByteChannel destination, Metrics metrics ) throws IOException {
+
+        Counter counter = new Counter( destination );
+        metrics.time( "emission", () -> this.write( program, counter, metrics ) );
+        metrics.setBytes( counter.bytes() );
+
+    }
+
+    private void write( Program program, WritableByteChannel destination, Metrics metrics ) throws IOException {
+
+        if ( this.format == Format.ELF ) {
+
+            ElfEmitter.emit( program, this.endOfInput, this.tape, this.layout( program ), this.instrument, destination, metrics );
+            return;
+
+        }
+
+        long cells = NasmEmitter.tape( this.tape );
+        long guard = NasmEmitter.guard( program );
+        String eof = this.endOfInput.instruction();
+        String instrument = this.instrument;
+        Layout layout = this.layout( program );
+
+        Map< String, Template.Replacement > replacements = new HashMap<>();
+        replacements.put( "TAPE_SIZE", writer -> writer.hex( cells ) );
+        replacements.put( "GUARD_SIZE", writer -> writer.hex( guard ) );
+        replacements.put( "POINTER_REGISTER", writer -> writer.append( NasmEmitter.INDEX_REGISTER ) );
+        replacements.put( "OUTPUT_REGISTER", writer -> writer.append( NasmEmitter.OUTPUT_REGISTER ) );
+        replacements.put( "OUTPUT_BUFFER_SIZE", writer -> writer.append( NasmEmitter.OUTPUT_BUFFER_SIZE ) );
+        replacements.put( "INPUT_INDEX_REGISTER", writer -> writer.append( NasmEmitter.INPUT_INDEX_REGISTER ) );
+        replacements.put( "INPUT_LIMIT_REGISTER", writer -> writer.append( NasmEmitter.INPUT_LIMIT_REGISTER ) );
+        replacements.put( "INPUT_BUFFER_SIZE", writer -> writer.append( NasmEmitter.INPUT_BUFFER_SIZE ) );
+        replacements.put( "END_OF_INPUT", writer -> writer.append( eof ) );
+        replacements.put( "SOURCE", writer -> NasmEmitter.emit( program, layout, instrument != null, writer ) );
+        replacements.put( "CPU_FEATURES", writer -> NasmEmitter.features( program, writer ) );
+        replacements.put( "SCANS", writer -> NasmEmitter.scans( program, writer ) );
+
+        if ( instrument != null ) {
+
+            replacements.put( "PROFILE", writer -> NasmEmitter.profile( program, writer ) );
+            replacements.put( "PROFILE_COUNTERS", writer -> NasmEmitter.counters( program, writer ) );
+            replacements.put( "DATA", writer -> NasmEmitter.data( program, instrument, writer ) );
+
+        } else {
+
+            replacements.put( "PROFILE", writer -> {} );
+            replacements.put( "PROFILE_COUNTERS", writer -> {} );
+            replacements.put( "DATA", writer -> NasmEmitter.data( program, writer ) );
+
+        }
+
+        AssemblyWriter writer = new AssemblyWriter( destination );
+        Template.standard().write( writer, replacements );
+        writer.append( '\n' );
+        writer.flush();
+
+        metrics.setInstructions( writer.instructions() );
+        metrics.setSyscalls( writer.syscalls() );
+
+    }
+
+    private Layout layout( Program program ) {
+
+        if ( this.profile == null && !this.rotate ) {
+
+            return Layout.COMPACT;
+
+        }
+
+        return Layout.of( program, ( this.profile == null ? new long[ 0x0 ] : this.profile.hot() ), this.rotate );
+
+    }
+
+    /**
+     * Emits the given program into the given appendable (e.g. a StringBuilder or a Writer).
+     */
+    public void emit( Program program, Appendable destination ) throws IOException {
+
+        this.emit( program, Transpiler.channel( destination ) );
+
+    }
+
+    /*
+    Writes into the given appendable through a channel, each byte as one character.
+     */
+    private static WritableByteChannel channel( Appendable destination ) {
+
+        return new WritableByteChannel() {
+
+            @Override
+            public int write( ByteBuffer source ) throws IOException {
+
+                int length = source.remaining();
+
+                while ( source.hasRemaining() ) {
+
+                    destination.append( ( char ) ( source.get() & 0xFF ) );
+
+                }
+
+                return length;
+
+            }
+
+            @Override
+            public boolean isOpen() {
+
+                return true;
+
+            }
+
+            @Override
+            public void close() {
+
+            }
+
+        };
+
+    }
+
+    /**
+     * Creates the metrics of a transpilation of the given source (which may be null),
+     * which tell the listeners of this transpiler once they are finished (see listen).
+     * Programs that are compiled and emitted separately are measured by passing their metrics to both.
+     */
+    public Metrics metrics( String source ) {
+
+        return new Metrics( source, this.listeners );
+
+    }
+
+    /**
+     * Runs the given program right away within the JVM (see Engine), reading its input
+     * from the given channel and writing its output to the given one (both of which are left open).
+     */
+    public void run( Program program, ReadableByteChannel input, WritableByteChannel output ) throws IOException, TapeException {
+
+        Engine.compile( program, this.endOfInput, this.tape ).run( input, output );
+
+    }
+
+    /**
+     * Transpiles the given 'Brainfuck' program into 'NASM assembly' at once.
+     */
+    public String transpile( CharSequence source ) throws ValidationException {
+
+        StringBuilder builder = new StringBuilder();
+        Metrics metrics = this.metrics( null );
+
+        try {
+
+            this.emit( this.compile( ByteBuffer.wrap( Transpiler.bytes( source ) ), metrics ), Transpiler.channel( builder ), metrics );
+
+        } catch ( IOException exception ) {
+
+            // A StringBuilder doesn't throw any
+            throw new UncheckedIOException( exception );
+
+        }
+
+        metrics.finish();
+
+        return builder.toString();
+
+    }
+
+    /**
+     * Transpiles the program within the given source file into the given destination file.
+     *
+     * If a cache is given (it may be null), a program that has been transpiled before
+     * with the same options is copied from the cache instead, which only costs
+     * hashing the source; otherwise, the transpiled program is stored in the cache.
+     */
+    public void transpile( Path source, Path destination, Cache cache ) throws IOException, ValidationException {
+
+        ByteBuffer content = Transpiler.map( source );
+        Metrics metrics = this.metrics( source.toString() );
+
+        if ( destination.getParent() != null ) {
+
+            Files.createDirectories( destination.getParent() );
+
+        }
+
+        // Both hashing the source and looking it up count as the cache stage
+        String key = ( cache == null ? null : metrics.time( "cache", () -> Cache.key( content, this.options() ) ) );
+
+        if ( cache != null && metrics.time( "cache", () -> cache.load( key, destination ) ) ) {
+
+            this.permit( destination );
+            metrics.finish();
+            return;
+
+        }
+
+        Program program = this.compile( content, metrics );
+
+        try ( FileChannel channel = FileChannel.open( destination, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) ) {
+
+            this.emit( program, channel, metrics );
+
+        }
+
+        this.permit( destination );
+
+        if ( cache != null ) {
+
+            cache.store( key, destination );
+
+        }
+
+        metrics.finish();
+
+    }
+
+    /*
+    Sources are mapped into memory instead of being read (just like the parser and the validator map them),
+    hence not even huge ones are held on the heap.
+     */
+    private static ByteBuffer map( Path source ) throws IOException {
+
+        try ( FileChannel channel = FileChannel.open( source, StandardOpenOption.READ ) ) {
+
+            return channel.map( FileChannel.MapMode.READ_ONLY, 0x0, channel.size() );
+
+        }
+
+    }
+
+    /*
+    Executables are made executable (where the file system supports it).
+     */
+    private void permit( Path file ) throws IOException {
+
+        if ( this.format.isExecutable() ) {
+
+            try {
+
+                Files.setPosixFilePermissions( file, PosixFilePermissions.fromString( "rwxr-xr-x" ) );
+
+            } catch ( UnsupportedOperationException exception ) {
+
+                // The file system doesn't know about permissions
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Describes each option that affects the transpiled program,
+     * which is what tells cached programs apart (see Cache).
+     */
+    public String options() {
+
+        StringBuilder options = new StringBuilder();
+
+        for ( Pass pass : this.passes.passes() ) {
+
+            options.append( pass.name() ).append( '=' ).append( this.passes.isEnabled( pass.name() ) ).append( ';' );
+
+            if ( pass instanceof PartialEvaluation evaluation ) {
+
+                options.append( "budget=" ).append( evaluation.budget() ).append( ';' );
+
+            }
+
+        }
+
+        options.append( "eof=" ).append( this.endOfInput ).append( ';' );
+        options.append( "tape=" ).append( this.tape ).append( ';' );
+        options.append( "emit=" ).append( this.format ).append( ';' );
+        options.append( "strict=" ).append( this.strict ).append( ';' );
+        options.append( "instrument=" ).append( this.instrument ).append( ';' );
+        options.append( "profile=" ).append( ( this.profile == null ? null : Arrays.toString( this.profile.hot() ) ) ).append( ';' );
+        options.append( "rotate=" ).append( this.rotate ).append( ';' );
+
+        return options.toString();
+
+    }
+
+    /**
+     * Returns a copy of the passes programs are optimized by (adapted to the tape);
+     * changing it doesn't affect this transpiler (see the builder instead).
+     */
+    public PassManager passes() {
+
+        return this.passes.copy();
+
+    }
+
+    public EndOfInput endOfInput() {
+
+        return this.endOfInput;
+
+    }
+
+    public long tape() {
+
+        return this.tape;
+
+    }
+
+    public Format format() {
+
+        return this.format;
+
+    }
+
+    public boolean isStrict() {
+
+        return this.strict;
+
+    }
+
+    /**
+     * Returns the file instrumented programs write their profile to or 'null' if they aren't instrumented.
+     */
+    public String instrument() {
+
+        return this.instrument;
+
+    }
+
+    /**
+     * Returns the profile that guides the transpiled programs or 'null' if there is none.
+     */
+    public Profile profile() {
+
+        return this.profile;
+
+    }
+
+    public boolean isRotated() {
+
+        return this.rotate;
+
+    }
+
+    /*
+    The listener of '--stats' writes the metrics of each program as one line of JSON, either to the given file
+    (which is truncated right away) or, if there is none, to the given error stream.
+    Since programs might be transpiled concurrently (see Batch), lines are written one at a time.
+     */
+    private static MetricsListener stats( Path file, PrintStream errors ) throws IOException {
+
+        if ( file == null ) {
+
+            return metrics -> {
+
+                synchronized ( errors ) {
+
+                    errors.println( metrics.json() );
+
+                }
+
+            };
+
+        }
+
+        Files.write( file, new byte[ 0x0 ] );
+
+        return metrics -> {
+
+            synchronized ( errors ) {
+
+                try {
+
+                    Files.writeString( file, metrics.json() + '\n', StandardOpenOption.APPEND );
+
+                } catch ( IOException exception ) {
+
+                    throw new UncheckedIOException( exception );
+
+                }
+
+            }
+
+        };
+
+    }
+
+    /*
+    Reading a channel through a stream would close the channel along with the stream.
+     */
+    private static ReadableByteChannel unclosable( ReadableByteChannel channel ) {
+
+        return new ReadableByteChannel() {
+
+            @Override
+            public int read( ByteBuffer destination ) throws IOException {
+
+                return channel.read( destination );
+
+            }
+
+            @Override
+            public boolean isOpen() {
+
+                return channel.isOpen();
+
+            }
+
+            @Override
+            public void close() {
+
+            }
+
+        };
+
+    }
+
+    /**
+     * The builder collects the configuration of a transpiler; each option that isn't given keeps its default.
+     * The pass manager isn't taken over (see Transpiler), hence it might be shared by several builders.
+     */
+    public static final class Builder {
+
+        private PassManager passes = PassManager.standard();
+        private EndOfInput endOfInput = EndOfInput.UNCHANGED;
+        private long tape = NasmEmitter.DEFAULT_TAPE_SIZE;
+        private Format format = Format.NASM;
+        private boolean strict = false;
+        private String instrument = null;
+        private Profile profile = null;
+        private boolean rotate = false;
+        private final List< MetricsListener > listeners = new ArrayList<>();
+
+        private Builder() {}
+
+        private Builder( Transpiler transpiler ) {
+
+            this.passes = transpiler.passes;
+            this.endOfInput = transpiler.endOfInput;
+            this.tape = transpiler.tape;
+            this.format = transpiler.format;
+            this.strict = transpiler.strict;
+            this.instrument = transpiler.instrument;
+            this.profile = transpiler.profile;
+            this.rotate = transpiler.rotate;
+            this.listeners.addAll( transpiler.listeners );
+
+        }
+
+        /**
+         * The passes programs are optimized by.
+         */
+        public Builder passes( PassManager passes ) {
+
+            this.passes = passes;
+            return this;
+
+        }
+
+        /**
+         * How the emitted programs treat the end of input.
+         */
+        public Builder endOfInput( EndOfInput endOfInput ) {
+
+            this.endOfInput = endOfInput;
+            return this;
+
+        }
+
+        /**
+         * The amount of cells the tape of the emitted programs consists of.
+         */
+        public Builder tape( long tape ) {
+
+            this.tape = tape;
+            return this;
+
+        }
+
+        /**
+         * The format programs are emitted in, either 'NASM assembly' or executables (see ElfEmitter).
+         */
+        public Builder format( Format format ) {
+
+            this.format = format;
+            return this;
+
+        }
+
+        /**
+         * Whether any character that isn't an operator is rejected (strict)
+         * or treated as comment (which is the usual convention).
+         */
+        public Builder strict( boolean strict ) {
+
+            this.strict = strict;
+            return this;
+
+        }
+
+        /**
+         * Instruments the emitted programs if a file is given (otherwise null):
+         * They count the entries and iterations of each loop and write them to the given file (see Profile),
+         * which is resolved against the working directory of the transpiled program.
+         */
+        public Builder instrument( String instrument ) {
+
+            this.instrument = instrument;
+            return this;
+
+        }
+
+        /**
+         * The profile (if any) that guides the emitted programs, which has been written by an instrumented
+         * program: Their hot loops are laid out for speed (see Layout).
+         */
+        public Builder profile( Profile profile ) {
+
+            this.profile = profile;
+            return this;
+
+        }
+
+        /**
+         * Whether the emitted programs are laid out for speed as a whole: Each of their loops is rotated
+         * and the current cell is kept in a register across the instructions that refer to it (see Layout),
+         * whether the loops are hot or not.
+         */
+        public Builder rotate( boolean rotate ) {
+
+            this.rotate = rotate;
+            return this;
+
+        }
+
+        /**
+         * Adds a listener that is told about the metrics of each program that is transpiled (see Metrics).
+         */
+        public Builder listen( MetricsListener listener ) {
+
+            this.listeners.add( listener );
+            return this;
+
+        }
+
+        public Transpiler build() {
+
+            return new Transpiler( this );
+
+        }
+
+    }
+
+    /**
+     * Counts the bytes that are written into a channel (which is left open).
+     */
+    private static final class Counter implements WritableByteChannel {
+
+        private final WritableByteChannel channel;
+        private long bytes;
+
+        Counter( WritableByteChannel channel ) {
+
+            this.channel = channel;
+
+        }
+
+        @Override
+        public int write( ByteBuffer source ) throws IOException {
+
+            int written = this.channel.write( source );
+            this.bytes += written;
+
+            return written;
+
+        }
+
+        @Override
+        public boolean isOpen() {
+
+            return this.channel.isOpen();
+
+        }
+
+        @Override
+        public void close() {
+
+        }
+
+        long bytes() {
+
+            return this.bytes;
+
+        }
+
+    }
+
 }
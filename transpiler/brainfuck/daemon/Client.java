@@ -0,0 +1,95 @@
+package transpiler.brainfuck.daemon;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * The client passes its arguments on to a running daemon (see Daemon) and reproduces
+ * the daemon's response as if it had transpiled the programs itself:
+ * The output is written to stdout, errors are written to stderr and it exits with the same status.
+ */
+public class Client {
+
+    /**
+     * The arguments are the path of the socket, followed by the arguments of the transpiler
+     * (or '--shutdown', which shuts the daemon down).
+     */
+    public static void main( String ... arguments ) throws IOException {
+
+        if ( arguments.length < 0x1 ) {
+
+            throw new IllegalArgumentException( "Illegal argument count.\nArguments: <socket> (<arguments of the transpiler> | --shutdown)" );
+
+        }
+
+        StringBuilder request = new StringBuilder();
+        request.append( Paths.get( "" ).toAbsolutePath() ).append( '\n' );
+
+        for ( int i = 0x1; i < arguments.length; i++ ) {
+
+            request.append( arguments[ i ] ).append( '\n' );
+
+        }
+
+        request.append( '\n' );
+
+        try ( SocketChannel channel = SocketChannel.open( StandardProtocolFamily.UNIX ) ) {
+
+            channel.connect( UnixDomainSocketAddress.of( arguments[ 0x0 ] ) );
+
+            ByteBuffer buffer = ByteBuffer.wrap( request.toString().getBytes( StandardCharsets.UTF_8 ) );
+
+            while ( buffer.hasRemaining() ) {
+
+                channel.write( buffer );
+
+            }
+
+            DataInputStream input = new DataInputStream( Channels.newInputStream( channel ) );
+            byte[] payload = new byte[ 0x10000 ];
+
+            while ( true ) {
+
+                byte type = input.readByte();
+                int length = input.readInt();
+
+                if ( type == Protocol.EXIT ) {
+
+                    int status = input.readInt();
+                    System.out.flush();
+                    System.exit( status );
+
+                }
+
+                OutputStream stream = ( type == Protocol.ERROR ? System.err : System.out );
+
+                while ( length > 0x0 ) {
+
+                    int read = input.read( payload, 0x0, Math.min( length, payload.length ) );
+
+                    if ( read < 0x0 ) {
+
+                        throw new IOException( "The daemon has closed the connection unexpectedly." );
+
+                    }
+
+                    stream.write( payload, 0x0, read );
+                    length -= read;
+
+                }
+
+            }
+
+        }
+
+    }
+
+}
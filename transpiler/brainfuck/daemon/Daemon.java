@@ -0,0 +1,215 @@
+package transpiler.brainfuck.daemon;
+
+import transpiler.brainfuck.core.Transpiler;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The daemon keeps the transpiler resident, so that transpiling a (small) program
+ * isn't dominated by starting the JVM and loading (and compiling) its classes over and over.
+ *
+ * It listens on a Unix domain socket and serves each connection on a thread of its own
+ * (see Protocol); the requests are just the arguments the transpiler takes on the command line.
+ * Before it accepts any connection, it transpiles a sample program a couple of times,
+ * so that even the first requests are served by compiled code.
+ */
+public class Daemon {
+
+    private static final byte[] SAMPLE = "++++++++[>++++[>++>+++>+++>+<<<<-]>+>+>->>+[<]<-]>>.>---.+++++++..+++.>>.<-.<.+++.------.--------.>>+.>++.,[.,][-]>[->+<]<[>]".getBytes( StandardCharsets.US_ASCII );
+    private static final int WARM_UP = 0x400;
+
+    private final Path socket;
+    private final ExecutorService executor;
+    private ServerSocketChannel server;
+
+    public Daemon( Path socket ) {
+
+        this.socket = socket;
+        this.executor = Executors.newCachedThreadPool( runnable -> {
+
+            Thread thread = new Thread( runnable, "transpiler-daemon" );
+            thread.setDaemon( true );
+            return thread;
+
+        } );
+
+    }
+
+    /**
+     * There is only one valid argument:
+     *
+     *      -> arguments[0x0] = path of the socket
+     */
+    public static void main( String ... arguments ) throws IOException {
+
+        if ( arguments.length != 0x1 ) {
+
+            throw new IllegalArgumentException( "Illegal argument count.\nArguments: <socket>" );
+
+        }
+
+        new Daemon( Paths.get( arguments[ 0x0 ] ) ).serve();
+
+    }
+
+    /**
+     * Accepts connections until a client requests the daemon to shut down.
+     */
+    public void serve() throws IOException {
+
+        Daemon.warmUp();
+
+        // A socket that is left over (e.g. after a crash) would prevent binding
+        Files.deleteIfExists( this.socket );
+
+        this.server = ServerSocketChannel.open( StandardProtocolFamily.UNIX );
+        this.server.bind( UnixDomainSocketAddress.of( this.socket ) );
+
+        try {
+
+            while ( true ) {
+
+                SocketChannel connection = this.server.accept();
+                this.executor.execute( () -> this.handle( connection ) );
+
+            }
+
+        } catch ( AsynchronousCloseException exception ) {
+
+            // The daemon has been shut down
+
+        } finally {
+
+            this.executor.shutdown();
+            Files.deleteIfExists( this.socket );
+
+        }
+
+    }
+
+    public void shutdown() throws IOException {
+
+        this.server.close();
+
+    }
+
+    private void handle( SocketChannel connection ) {
+
+        try ( connection ) {
+
+            BufferedReader reader = new BufferedReader( new InputStreamReader( Channels.newInputStream( connection ), StandardCharsets.UTF_8 ) );
+            String directory = reader.readLine();
+            List< String > arguments = new ArrayList<>();
+
+            for ( String line = reader.readLine(); line != null && !line.isEmpty(); line = reader.readLine() ) {
+
+                arguments.add( line );
+
+            }
+
+            if ( directory == null ) {
+
+                return;
+
+            }
+
+            ByteArrayOutputStream errors = new ByteArrayOutputStream();
+            int status;
+
+            if ( arguments.equals( List.of( Protocol.SHUTDOWN ) ) ) {
+
+                this.shutdown();
+                status = 0x0;
+
+            } else {
+
+                PrintStream stream = new PrintStream( errors, true, StandardCharsets.UTF_8 );
+                status = Daemon.run( arguments, Paths.get( directory ), Protocol.frames( connection, Protocol.OUTPUT ), stream );
+
+            }
+
+            if ( errors.size() > 0x0 ) {
+
+                Protocol.write( connection, Protocol.ERROR, ByteBuffer.wrap( errors.toByteArray() ) );
+
+            }
+
+            Protocol.write( connection, Protocol.EXIT, ByteBuffer.allocate( 0x4 ).putInt( 0x0, status ) );
+
+        } catch ( IOException exception ) {
+
+            // The client has gone away; there is no one left to report to
+
+        }
+
+    }
+
+    /*
+    Invalid arguments (e.g. an unknown pass) and any other failure of the request (e.g. a manifest
+    or profile that doesn't exist) are reported to the client just like failed programs are,
+    so that it always gets its exit status; only failures of the connection itself are left to handle.
+    If the client has gone away in the meantime, reporting the failure fails as well.
+     */
+    private static int run( List< String > arguments, Path directory, WritableByteChannel output, PrintStream errors ) {
+
+        try {
+
+            return Transpiler.run( arguments, directory, output, errors );
+
+        } catch ( IllegalArgumentException exception ) {
+
+            errors.printf( "error: %s%n", exception.getMessage() );
+            return 0x1;
+
+        } catch ( Exception exception ) {
+
+            errors.printf( "error: %s%n", exception );
+            return 0x1;
+
+        }
+
+    }
+
+    private static void warmUp() throws IOException {
+
+        WritableByteChannel sink = Channels.newChannel( OutputStream.nullOutputStream() );
+
+        for ( int i = 0x0; i < WARM_UP; i++ ) {
+
+            try {
+
+                Transpiler transpiler = new Transpiler();
+                transpiler.emit( transpiler.compile( SAMPLE ), sink );
+
+            } catch ( Exception exception ) {
+
+                throw new IllegalStateException( exception );
+
+            }
+
+        }
+
+    }
+
+}
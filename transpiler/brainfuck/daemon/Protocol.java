@@ -0,0 +1,86 @@
+package transpiler.brainfuck.daemon;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The protocol that is spoken between the daemon and its clients over a Unix domain socket;
+ * each connection carries exactly one request and its response.
+ *
+ * The request consists of lines (UTF-8, each terminated by '\n'):
+ * The working directory of the client (which relative paths are resolved against),
+ * followed by one line per argument (the same arguments the transpiler takes on the command line)
+ * and an empty line that terminates the request.
+ *
+ * The response consists of frames, each of which is made up of its type (one byte),
+ * the length of its payload (four bytes, big endian) and the payload itself:
+ *
+ *      -> OUTPUT   = a part of the transpiled program (if its destination is '-')
+ *      -> ERROR    = a part of the error messages
+ *      -> EXIT     = the exit status (four bytes, big endian); always the last frame
+ */
+public class Protocol {
+
+    public static final byte OUTPUT = 'O';
+    public static final byte ERROR  = 'E';
+    public static final byte EXIT   = 'X';
+
+    public static final String SHUTDOWN = "--shutdown";
+
+    /**
+     * Writes a frame of the given type whose payload is the remainder of the given buffer.
+     */
+    public static void write( WritableByteChannel channel, byte type, ByteBuffer payload ) throws IOException {
+
+        ByteBuffer header = ByteBuffer.allocate( 0x5 );
+        header.put( type ).putInt( payload.remaining() ).flip();
+
+        while ( header.hasRemaining() ) {
+
+            channel.write( header );
+
+        }
+
+        while ( payload.hasRemaining() ) {
+
+            channel.write( payload );
+
+        }
+
+    }
+
+    /**
+     * A channel that wraps everything written to it into frames of the given type.
+     * Closing it doesn't close the underlying channel.
+     */
+    public static WritableByteChannel frames( WritableByteChannel channel, byte type ) {
+
+        return new WritableByteChannel() {
+
+            @Override
+            public int write( ByteBuffer source ) throws IOException {
+
+                int length = source.remaining();
+                Protocol.write( channel, type, source );
+                return length;
+
+            }
+
+            @Override
+            public boolean isOpen() {
+
+                return channel.isOpen();
+
+            }
+
+            @Override
+            public void close() {
+
+            }
+
+        };
+
+    }
+
+}
@@ -0,0 +1,309 @@
+package transpiler.brainfuck.emitter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The assembly writer is the sink the emitter writes the transpiled program to.
+ *
+ * Text is encoded straight into a direct buffer which is reused over and over:
+ * Whenever it is full, it is written to the underlying channel (e.g. the destination file),
+ * hence the whole program never has to be held in memory at once, regardless of its size.
+ *
+ * Assembly is pure ASCII, therefore each character is written as exactly one byte;
+ * neither fragments nor numbers (which are formatted digit by digit) allocate
+ * any intermediate strings.
+ *
+ * While the buffer is written, the writer counts the instructions within it (see instructions),
+ * that is, the lines that are indented and begin with a mnemonic rather than a directive or a comment.
+ */
+public class AssemblyWriter implements Closeable {
+
+    public static final int DEFAULT_CAPACITY = 0x10000;
+
+    private static final byte[] DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+
+    private static final byte[][] DIRECTIVES = AssemblyWriter.words( "align", "db", "dw", "dd", "dq", "times", "resb", "resq", "equ", "section", "global", "default" );
+    private static final byte[] SYSCALL = "syscall".getBytes( StandardCharsets.US_ASCII );
+
+    // Where the line that is counted stands: at its beginning, within its indentation, within its first word or beyond
+    private static final int BEGINNING = 0x0;
+    private static final int INDENTATION = 0x1;
+    private static final int WORD = 0x2;
+    private static final int REMAINDER = 0x3;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    private long instructions = 0x0;
+    private long syscalls = 0x0;
+    private int state = BEGINNING;
+    private final byte[] word = new byte[ 0x10 ];
+    private int length = 0x0;
+
+    public AssemblyWriter( WritableByteChannel channel ) {
+
+        this( channel, DEFAULT_CAPACITY );
+
+    }
+
+    public AssemblyWriter( WritableByteChannel channel, int capacity ) {
+
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect( Math.max( capacity, 0x20 ) );
+
+    }
+
+    public AssemblyWriter append( char character ) throws IOException {
+
+        if ( !this.buffer.hasRemaining() ) {
+
+            this.flush();
+
+        }
+
+        this.buffer.put( ( byte ) character );
+        return this;
+
+    }
+
+    public AssemblyWriter append( CharSequence text ) throws IOException {
+
+        for ( int i = 0x0; i < text.length(); i++ ) {
+
+            this.append( text.charAt( i ) );
+
+        }
+
+        return this;
+
+    }
+
+    public AssemblyWriter append( byte[] bytes, int from, int to ) throws IOException {
+
+        while ( from < to ) {
+
+            if ( !this.buffer.hasRemaining() ) {
+
+                this.flush();
+
+            }
+
+            int length = Math.min( to - from, this.buffer.remaining() );
+            this.buffer.put( bytes, from, length );
+            from += length;
+
+        }
+
+        return this;
+
+    }
+
+    /**
+     * Writes the given value as hexadecimal literal (e.g. '0x1f'),
+     * which is how numbers are written throughout the emitted program.
+     * Negative values are written as their two's complement.
+     */
+    public AssemblyWriter hex( long value ) throws IOException {
+
+        this.append( '0' ).append( 'x' );
+
+        int shift = ( 0x3F - Long.numberOfLeadingZeros( value | 0x1 ) ) & ~0x3;
+
+        for ( ; shift >= 0x0; shift -= 0x4 ) {
+
+            this.append( ( char ) DIGITS[ ( int ) ( value >>> shift ) & 0xF ] );
+
+        }
+
+        return this;
+
+    }
+
+    /**
+     * Writes the given value as two hexadecimal digits (e.g. '0x0a'),
+     * which keeps byte sequences aligned.
+     */
+    public AssemblyWriter hexByte( int value ) throws IOException {
+
+        return this.append( '0' ).append( 'x' ).append( ( char ) DIGITS[ ( value >>> 0x4 ) & 0xF ] ).append( ( char ) DIGITS[ value & 0xF ] );
+
+    }
+
+    public AssemblyWriter decimal( long value ) throws IOException {
+
+        if ( value < 0x0 ) {
+
+            this.append( '-' );
+
+        } else {
+
+            value = -value;
+
+        }
+
+        // Digits are computed on the negative value, which also covers Long.MIN_VALUE
+        long divisor = -0x1;
+
+        while ( value / divisor >= 0xA ) {
+
+            divisor *= 0xA;
+
+        }
+
+        for ( ; divisor != 0x0; divisor /= 0xA ) {
+
+            this.append( ( char ) ( '0' + value / divisor % 0xA ) );
+
+        }
+
+        return this;
+
+    }
+
+    /**
+     * Writes everything that has been buffered so far to the channel.
+     */
+    public void flush() throws IOException {
+
+        this.count();
+        this.buffer.flip();
+
+        while ( this.buffer.hasRemaining() ) {
+
+            this.channel.write( this.buffer );
+
+        }
+
+        this.buffer.clear();
+
+    }
+
+    /**
+     * Returns the amount of instructions that have been written so far (as far as they have been flushed).
+     */
+    public long instructions() {
+
+        return this.instructions;
+
+    }
+
+    /**
+     * Returns the amount of syscall instructions that have been written so far (as far as they have been flushed).
+     */
+    public long syscalls() {
+
+        return this.syscalls;
+
+    }
+
+    /*
+    Counts the instructions within the buffer, whose lines might continue within the next one.
+     */
+    private void count() {
+
+        for ( int i = 0x0; i < this.buffer.position(); i++ ) {
+
+            byte character = this.buffer.get( i );
+            boolean blank = ( character == ' ' || character == '\t' );
+
+            if ( character == '\n' ) {
+
+                this.word();
+                this.state = BEGINNING;
+
+            } else if ( this.state == BEGINNING ) {
+
+                this.state = ( blank ? INDENTATION : REMAINDER );
+
+            } else if ( this.state == INDENTATION && !blank ) {
+
+                this.state = ( Character.isLetter( character ) ? WORD : REMAINDER );
+                this.length = 0x0;
+
+            }
+
+            if ( this.state == WORD ) {
+
+                if ( blank ) {
+
+                    this.word();
+                    this.state = REMAINDER;
+
+                } else if ( this.length < this.word.length ) {
+
+                    this.word[ this.length++ ] = character;
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /*
+    The first word of an indented line has been completed.
+     */
+    private void word() {
+
+        if ( this.state != WORD ) {
+
+            return;
+
+        }
+
+        for ( byte[] directive : DIRECTIVES ) {
+
+            if ( Arrays.equals( this.word, 0x0, this.length, directive, 0x0, directive.length ) ) {
+
+                return;
+
+            }
+
+        }
+
+        this.instructions++;
+
+        if ( Arrays.equals( this.word, 0x0, this.length, SYSCALL, 0x0, SYSCALL.length ) ) {
+
+            this.syscalls++;
+
+        }
+
+    }
+
+    private static byte[][] words( String ... words ) {
+
+        byte[][] bytes = new byte[ words.length ][];
+
+        for ( int i = 0x0; i < words.length; i++ ) {
+
+            bytes[ i ] = words[ i ].getBytes( StandardCharsets.US_ASCII );
+
+        }
+
+        return bytes;
+
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        try {
+
+            this.flush();
+
+        } finally {
+
+            this.channel.close();
+
+        }
+
+    }
+
+}
@@ -0,0 +1,57 @@
+package transpiler.brainfuck.emitter;
+
+/**
+ * Tracks what the cell register (see NasmEmitter.CELL_REGISTER) holds while a program is emitted:
+ * Either nothing, or the current cell, which might not have been written to the tape yet (dirty).
+ *
+ * The emitters load the cell register lazily, write it back whenever the tape has to be up to date
+ * (before the pointer moves, before input or output and before labels that might be reached
+ * from elsewhere) and release it afterwards.
+ */
+final class Cell {
+
+    private boolean held = false;
+    private boolean dirty = false;
+
+    boolean isHeld() {
+
+        return this.held;
+
+    }
+
+    boolean isDirty() {
+
+        return this.held && this.dirty;
+
+    }
+
+    /**
+     * The register holds the current cell, which differs from the tape if it is dirty.
+     */
+    void hold( boolean dirty ) {
+
+        this.held = true;
+        this.dirty = dirty;
+
+    }
+
+    /**
+     * The register has been written back to the tape.
+     */
+    void clean() {
+
+        this.dirty = false;
+
+    }
+
+    /**
+     * The register doesn't hold the current cell (anymore); it has to be clean beforehand.
+     */
+    void release() {
+
+        this.held = false;
+        this.dirty = false;
+
+    }
+
+}
@@ -0,0 +1,1290 @@
+package transpiler.brainfuck.emitter;
+
+import transpiler.brainfuck.ir.Operation;
+import transpiler.brainfuck.ir.Program;
+import transpiler.brainfuck.ir.Snapshot;
+import transpiler.brainfuck.metrics.Metrics;
+import transpiler.brainfuck.profile.Profile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static transpiler.brainfuck.emitter.X86Encoder.*;
+
+/**
+ * The emitter translates a program in the intermediate representation directly into
+ * a static ELF64 executable (Linux, x86-64), so that neither an assembler nor a linker is needed.
+ *
+ * The executable consists of the very same instructions 'NASM assembly' would be assembled into
+ * (see NasmEmitter), including the runtime defined within '/transpiler/brainfuck/template/template.asm';
+ * they are encoded by the X86Encoder instead.
+ *
+ * It is made up of two segments:
+ * The first one holds the headers and the code (readable and executable), the second one
+ * holds the data, that is, the messages and the snapshot (if any), followed by the
+ * (zeroed) buffers and counters (readable and writable).
+ * Sections (.text, .data and .bss) are described as well, so that the usual tools
+ * (e.g. 'objdump') can make sense of the executable.
+ */
+public class ElfEmitter {
+
+    private static final long BASE = 0x400000;
+    private static final int PAGE = 0x1000;
+
+    private static final int HEADER_SIZE = 0x40;
+    private static final int PROGRAM_HEADER_SIZE = 0x38;
+    private static final int SECTION_HEADER_SIZE = 0x40;
+    private static final int TEXT = HEADER_SIZE + 0x2 * PROGRAM_HEADER_SIZE;
+
+    private static final int OUTPUT_BUFFER_SIZE = Integer.decode( NasmEmitter.OUTPUT_BUFFER_SIZE );
+    private static final int INPUT_BUFFER_SIZE = Integer.decode( NasmEmitter.INPUT_BUFFER_SIZE );
+
+    private static final byte[] TAPE_ERROR_MESSAGE = "error: the pointer has left the tape\n".getBytes( StandardCharsets.US_ASCII );
+    private static final byte[] ALLOCATION_ERROR_MESSAGE = "error: the tape could not be allocated\n".getBytes( StandardCharsets.US_ASCII );
+    private static final byte[] SECTION_NAMES = "\0.text\0.data\0.bss\0.shstrtab\0".getBytes( StandardCharsets.US_ASCII );
+
+    private final X86Encoder encoder = new X86Encoder();
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+    private final int flushOutput;
+    private final int readInput;
+    private final int tapeError;
+    private final int allocationError;
+    private final int outputBuffer;
+    private final int inputBuffer;
+    private final int snapshotOutput;
+    private final int snapshotCells;
+    private final int profileCounters;
+    private final int avx2Supported;
+
+    // The search routine of each vectorized stride (indexed by the stride, offset by the limit, see Vectors)
+    private final int[] scans = new int[ 0x2 * Vectors.LIMIT + 0x1 ];
+
+    // The amount of loops of an instrumented program, or -1 if it isn't instrumented
+    private final int loops;
+    private final Layout layout;
+    private final Cell cell = new Cell();
+
+    private ElfEmitter( int loops, Layout layout ) {
+
+        this.flushOutput = this.encoder.label();
+        this.readInput = this.encoder.label();
+        this.tapeError = this.encoder.label();
+        this.allocationError = this.encoder.label();
+        this.outputBuffer = this.encoder.label();
+        this.inputBuffer = this.encoder.label();
+        this.snapshotOutput = this.encoder.label();
+        this.snapshotCells = this.encoder.label();
+        this.profileCounters = this.encoder.label();
+        this.avx2Supported = this.encoder.label();
+
+        for ( int i = 0x0; i < this.scans.length; i++ ) {
+
+            this.scans[ i ] = this.encoder.label();
+
+        }
+
+        this.loops = loops;
+        this.layout = layout;
+
+    }
+
+    /**
+     * Emits the given program as executable whose tape consists of the given amount of cells.
+     */
+    public static void emit( Program program, EndOfInput endOfInput, long tape, WritableByteChannel destination ) throws IOException {
+
+        ElfEmitter.emit( program, endOfInput, tape, Layout.COMPACT, null, destination );
+
+    }
+
+    /**
+     * Emits the given program, just like above, laying out its loops as given (see Layout).
+     * If a file is given, the program is instrumented and writes the counters of its loops
+     * to that file when it exits (see NasmEmitter).
+     */
+    public static void emit( Program program, EndOfInput endOfInput, long tape, Layout layout, String instrument, WritableByteChannel destination ) throws IOException {
+
+        ElfEmitter.emit( program, endOfInput, tape, layout, instrument, destination, Metrics.DISABLED );
+
+    }
+
+    /**
+     * Emits the given program, just like above, recording the amount of instructions
+     * and of syscalls that have been encoded in the given metrics.
+     */
+    public static void emit( Program program, EndOfInput endOfInput, long tape, Layout layout, String instrument, WritableByteChannel destination, Metrics metrics ) throws IOException {
+
+        ElfEmitter emitter = new ElfEmitter( ( instrument == null ? -0x1 : NasmEmitter.loops( program ) ), layout );
+        emitter.start( NasmEmitter.tape( tape ), NasmEmitter.guard( program ), Vectors.strides( program ).length > 0x0 );
+        emitter.program( program );
+        emitter.runtime( endOfInput, instrument, program );
+        emitter.write( destination );
+
+        metrics.setInstructions( emitter.encoder.instructions() );
+        metrics.setSyscalls( emitter.encoder.syscalls() );
+
+    }
+
+    /*
+    ------------------------------------------------------------------------------------
+    Runtime (see '/transpiler/brainfuck/template/template.asm')
+    ------------------------------------------------------------------------------------
+     */
+
+    private void start( long tape, long guard, boolean features ) {
+
+        X86Encoder e = this.encoder;
+
+        if ( features ) {
+
+            this.features();
+
+        }
+
+        // allocate the tape surrounded by guard pages
+        e.move( RSI, tape + 0x2 * guard );
+        e.clear( RDI );
+        e.clear( RDX );
+        e.move( R10, 0x4022 );
+        e.move( R8, -0x1 );
+        e.clear( R9 );
+        e.move( RAX, 0x9 );
+        e.syscall();
+        e.arithmetic( CMP, RAX, -0x1000 );
+        e.jump( ABOVE, this.allocationError );
+
+        // prepare array index pointer and make the tape (but not the guard pages) accessible
+        e.move( RBX, guard );
+        e.add( RBX, RAX );
+        e.moveRegister( RDI, RBX );
+        e.move( RSI, tape );
+        e.move( RDX, 0x3 );
+        e.move( RAX, 0xA );
+        e.syscall();
+        e.test( RAX );
+        e.jump( NOT_EQUAL, this.allocationError );
+
+        // accessing a guard page (that is, leaving the tape) raises SIGSEGV which is reported
+        e.moveAddress( RAX, this.tapeError, 0x0 );
+        e.pushImmediate( 0x0 );
+        e.push( RAX );
+        e.pushImmediate( 0x4000000 );
+        e.push( RAX );
+        e.move( RDI, 0xB );
+        e.moveRegister( RSI, RSP );
+        e.clear( RDX );
+        e.move( R10, 0x8 );
+        e.move( RAX, 0xD );
+        e.syscall();
+        e.arithmetic( ADD, RSP, 0x20 );
+
+        // prepare output buffer length, input buffer index and limit
+        e.clear( R12 );
+        e.clear( R13 );
+        e.clear( R14 );
+
+    }
+
+    private void runtime( EndOfInput endOfInput, String instrument, Program program ) {
+
+        X86Encoder e = this.encoder;
+
+        // flush remaining output, write the profile (if the program is instrumented) and exit gracefully
+        e.call( this.flushOutput );
+
+        if ( instrument != null ) {
+
+            this.profile( instrument, program );
+
+        }
+
+        e.move( RAX, 0x3C );
+        e.clear( RDI );
+        e.syscall();
+
+        // write the output buffer to stdout (until it is empty or an error occurs)
+        int loop = e.label();
+        int exit = e.label();
+
+        e.bind( this.flushOutput );
+        e.moveAddress( RSI, this.outputBuffer, 0x0 );
+        e.bind( loop );
+        e.test( R12 );
+        e.jump( EQUAL, exit );
+        e.moveRegister( RDX, R12 );
+        e.move( RDI, 0x1 );
+        e.move( RAX, 0x1 );
+        e.syscall();
+        e.test( RAX );
+        e.jump( LESS_EQUAL, exit );
+        e.add( RSI, RAX );
+        e.sub( R12, RAX );
+        e.jump( loop );
+        e.bind( exit );
+        e.clear( R12 );
+        e.ret();
+
+        // read one character from the input buffer into the cell at rdi
+        int refill = e.label();
+        int end = e.label();
+
+        e.bind( this.readInput );
+        e.compare( R13, R14 );
+        e.jump( BELOW, refill );
+        e.push( RDI );
+        e.call( this.flushOutput );
+        e.moveAddress( RSI, this.inputBuffer, 0x0 );
+        e.move( RDX, INPUT_BUFFER_SIZE );
+        e.clear( RDI );
+        e.clear( RAX );
+        e.syscall();
+        e.pop( RDI );
+        e.test( RAX );
+        e.jump( LESS_EQUAL, end );
+        e.clear( R13 );
+        e.moveRegister( R14, RAX );
+        e.bind( refill );
+        e.loadByte( RAX, this.inputBuffer, 0x0, R13 );
+        e.increment( R13 );
+        e.storeByte( RDI, 0x0, RAX );
+        e.ret();
+        e.bind( end );
+
+        // no input left
+        switch ( endOfInput ) {
+
+            case ZERO -> e.storeImmediate( RDI, 0x0, 0x0 );
+            case MINUS_ONE -> e.storeImmediate( RDI, 0x0, 0xFF );
+
+        }
+
+        e.ret();
+
+        for ( int stride : Vectors.strides( program ) ) {
+
+            this.scan( stride );
+
+        }
+
+        // report that the pointer has left the tape (after writing the output so far) and fail
+        int fail = e.label();
+
+        e.bind( this.tapeError );
+        e.call( this.flushOutput );
+        e.moveAddress( RSI, this.data( TAPE_ERROR_MESSAGE ), 0x0 );
+        e.move( RDX, TAPE_ERROR_MESSAGE.length );
+        e.jump( fail );
+
+        // report that the tape couldn't be allocated and fail
+        e.bind( this.allocationError );
+        e.moveAddress( RSI, this.data( ALLOCATION_ERROR_MESSAGE ), 0x0 );
+        e.move( RDX, ALLOCATION_ERROR_MESSAGE.length );
+
+        e.bind( fail );
+        e.move( RDI, 0x2 );
+        e.move( RAX, 0x1 );
+        e.syscall();
+        e.move( RAX, 0x3C );
+        e.move( RDI, 0x1 );
+        e.syscall();
+
+    }
+
+    /*
+    Detects whether scans may use AVX2 (see NasmEmitter.features).
+     */
+    private void features() {
+
+        X86Encoder e = this.encoder;
+        int exit = e.label();
+
+        e.clear( RAX );
+        e.cpuid();
+        e.arithmetic( CMP, RAX, 0x7 );
+        e.jump( BELOW, exit );
+        e.move( RAX, 0x1 );
+        e.cpuid();
+        e.arithmetic( AND, RCX, 0x18000000 );
+        e.arithmetic( CMP, RCX, 0x18000000 );
+        e.jump( NOT_EQUAL, exit );
+        e.move( RAX, 0x7 );
+        e.clear( RCX );
+        e.cpuid();
+        e.arithmetic( AND, RBX, 0x20 );
+        e.jump( EQUAL, exit );
+        e.clear( RCX );
+        e.xgetbv();
+        e.arithmetic( AND, RAX, 0x6 );
+        e.arithmetic( CMP, RAX, 0x6 );
+        e.jump( NOT_EQUAL, exit );
+        e.setByte( this.avx2Supported, 0x0, 0x1 );
+        e.bind( exit );
+
+    }
+
+    /*
+    Emits the search routine of the given stride (see NasmEmitter.scans).
+     */
+    private void scan( int stride ) {
+
+        X86Encoder e = this.encoder;
+        int avx2 = e.label();
+        int found = e.label();
+
+        e.bind( this.scans[ Vectors.LIMIT + stride ] );
+        e.move( RSI, Vectors.mask( stride ) & 0xFFFFFFFFL );
+
+        if ( Math.abs( stride ) > 0x1 ) {
+
+            e.moveRegister( RCX, RBX );
+            e.arithmetic( AND, RCX, Math.abs( stride ) - 0x1 );
+            e.shiftLeft( RSI );
+
+        }
+
+        e.moveRegister( RCX, RBX );
+        e.compareByte( this.avx2Supported, 0x0, 0x0 );
+        e.jump( NOT_EQUAL, avx2 );
+        this.search( stride, false );
+        e.jump( found );
+        e.bind( avx2 );
+        this.search( stride, true );
+        e.zeroUpper();
+        e.bind( found );
+        e.bitScan( RDX, stride < 0x0 );
+        e.add( RAX, RDX );
+        e.moveRegister( RBX, RAX );
+        e.ret();
+
+    }
+
+    private void search( int stride, boolean avx2 ) {
+
+        X86Encoder e = this.encoder;
+        int width = ( avx2 ? 0x20 : 0x10 );
+        int loop = e.label();
+        int exit = e.label();
+
+        e.moveRegister( RAX, RBX );
+        e.arithmetic( AND, RAX, -width );
+        e.arithmetic( AND, RCX, width - 0x1 );
+
+        if ( stride > 0x0 ) {
+
+            e.move( RDI, -0x1 );
+            e.shiftLeft( RDI );
+
+        } else {
+
+            e.move( RDI, 0x2 );
+            e.shiftLeft( RDI );
+            e.decrement( RDI );
+
+        }
+
+        e.and( RDI, RSI );
+        e.clearVector( 0x0, avx2 );
+        e.compareVector( 0x1, 0x0, RAX, avx2 );
+        e.maskVector( RDX, 0x1, avx2 );
+        e.and( RDX, RDI );
+        e.jump( NOT_EQUAL, exit );
+        e.bind( loop );
+        e.arithmetic( ( stride > 0x0 ? ADD : SUB ), RAX, width );
+        e.compareVector( 0x1, 0x0, RAX, avx2 );
+        e.maskVector( RDX, 0x1, avx2 );
+        e.and( RDX, RSI );
+        e.jump( EQUAL, loop );
+        e.bind( exit );
+
+    }
+
+    private void profile( String profile, Program program ) {
+
+        X86Encoder e = this.encoder;
+
+        ByteBuffer header = ByteBuffer.allocate( 0x8 * ( 0x2 + this.loops ) ).order( ByteOrder.LITTLE_ENDIAN );
+        header.putLong( Profile.MAGIC ).putLong( this.loops );
+
+        for ( int i = 0x0; i < program.size(); i++ ) {
+
+            if ( program.operation( i ) == Operation.OPEN ) {
+
+                header.putLong( program.position( i ) );
+
+            }
+
+        }
+
+        int exit = e.label();
+
+        e.moveAddress( RDI, this.data( ( profile + '\0' ).getBytes( StandardCharsets.UTF_8 ) ), 0x0 );
+        e.move( RSI, 0x241 );
+        e.move( RDX, 0x1A4 );
+        e.move( RAX, 0x2 );
+        e.syscall();
+        e.test( RAX );
+        e.jump( SIGN, exit );
+        e.moveRegister( R15, RAX );
+        e.moveRegister( RDI, R15 );
+        e.moveAddress( RSI, this.data( header.array() ), 0x0 );
+        e.move( RDX, header.capacity() );
+        e.move( RAX, 0x1 );
+        e.syscall();
+        e.moveRegister( RDI, R15 );
+        e.moveAddress( RSI, this.profileCounters, 0x0 );
+        e.move( RDX, 0x10L * this.loops );
+        e.move( RAX, 0x1 );
+        e.syscall();
+        e.moveRegister( RDI, R15 );
+        e.move( RAX, 0x3 );
+        e.syscall();
+        e.bind( exit );
+
+    }
+
+    /*
+    ------------------------------------------------------------------------------------
+    Program (see NasmEmitter, which describes what each instruction does)
+    ------------------------------------------------------------------------------------
+     */
+
+    private void program( Program program ) {
+
+        X86Encoder e = this.encoder;
+
+        if ( program.snapshot() != null ) {
+
+            this.restore( program.snapshot() );
+
+        }
+
+        // The labels of the loops that currently are open (the beginning and the end of each)
+        int[] loops = new int[ 0x20 ];
+        int depth = 0x0;
+        int index = 0x0;
+        int counter = 0x0;
+
+        while ( index < program.size() ) {
+
+            switch ( program.operation( index ) ) {
+
+                case OPEN -> {
+
+                    if ( depth == loops.length ) {
+
+                        loops = Arrays.copyOf( loops, depth * 0x2 );
+
+                    }
+
+                    if ( this.loops >= 0x0 ) {
+
+                        e.incrementQuad( this.profileCounters, 0x10 * counter );
+
+                    }
+
+                    if ( this.layout.isUnrolled( index ) || this.layout.isCached( index ) ) {
+
+                        index = this.loop( program, index, ( this.loops >= 0x0 ? 0x10 * counter + 0x8 : -0x1 ) );
+                        counter++;
+                        continue;
+
+                    }
+
+                    int loop = e.label();
+                    int exit = e.label();
+                    loops[ depth++ ] = loop;
+                    loops[ depth++ ] = exit;
+
+                    boolean entered = NasmEmitter.isEntered( program, index );
+
+                    if ( this.layout.isRotated( index ) || entered ) {
+
+                        if ( !entered ) {
+
+                            this.condition();
+
+                        }
+
+                        this.release();
+
+                        if ( !entered ) {
+
+                            e.jump( EQUAL, exit );
+
+                        }
+
+                        this.align( index );
+                        e.bind( loop );
+
+                    } else {
+
+                        this.release();
+                        e.bind( loop );
+                        e.arithmeticByte( CMP, RBX, 0x0, 0x0 );
+                        e.jump( EQUAL, exit );
+
+                    }
+
+                    if ( this.loops >= 0x0 ) {
+
+                        e.incrementQuad( this.profileCounters, 0x10 * counter + 0x8 );
+
+                    }
+
+                    counter++;
+                    index++;
+
+                }
+
+                case CLOSE -> {
+
+                    int exit = loops[ --depth ];
+                    int loop = loops[ --depth ];
+
+                    if ( this.layout.isRotated( program.partner( index ) ) || NasmEmitter.isEntered( program, program.partner( index ) ) ) {
+
+                        this.condition();
+                        this.release();
+                        e.jump( NOT_EQUAL, loop );
+
+                    } else {
+
+                        this.release();
+                        e.jump( loop );
+
+                    }
+
+                    e.bind( exit );
+                    index++;
+
+                }
+
+                default -> index = this.instruction( program, index );
+
+            }
+
+        }
+
+        this.release();
+
+    }
+
+    /*
+    Emits an innermost loop that is unrolled or cached (see NasmEmitter.loop).
+     */
+    private int loop( Program program, int open, int counter ) {
+
+        X86Encoder e = this.encoder;
+        int close = program.partner( open );
+        boolean cached = this.layout.isCached( open );
+        int copies = ( this.layout.isUnrolled( open ) ? 0x2 : 0x1 );
+
+        int loop = e.label();
+        int exit = e.label();
+
+        boolean entered = NasmEmitter.isEntered( program, open );
+
+        if ( cached ) {
+
+            this.use();
+
+        }
+
+        if ( !entered ) {
+
+            this.condition();
+
+        }
+
+        if ( cached ) {
+
+            this.cell.hold( true );
+
+        } else {
+
+            this.release();
+
+        }
+
+        if ( !entered ) {
+
+            e.jump( EQUAL, exit );
+
+        }
+        this.align( open );
+        e.bind( loop );
+
+        for ( int copy = 0x0; copy < copies; copy++ ) {
+
+            if ( counter >= 0x0 ) {
+
+                e.incrementQuad( this.profileCounters, counter );
+
+            }
+
+            int index = open + 0x1;
+
+            while ( index < close ) {
+
+                index = this.instruction( program, index );
+
+            }
+
+            if ( cached ) {
+
+                this.use();
+                this.condition();
+
+            } else {
+
+                this.condition();
+                this.release();
+
+            }
+
+            e.jump( ( copy < copies - 0x1 ? EQUAL : NOT_EQUAL ), ( copy < copies - 0x1 ? exit : loop ) );
+
+        }
+
+        e.bind( exit );
+
+        if ( cached ) {
+
+            this.cell.hold( true );
+            this.flush();
+
+            if ( !this.layout.cachesCells() ) {
+
+                this.cell.release();
+
+            }
+
+        }
+
+        return close + 0x1;
+
+    }
+
+    private void align( int open ) {
+
+        if ( this.layout.isAligned( open ) ) {
+
+            this.encoder.align( Layout.ALIGNMENT );
+
+        }
+
+    }
+
+    private void condition() {
+
+        if ( this.cell.isHeld() ) {
+
+            this.encoder.testByte( R15 );
+
+        } else {
+
+            this.encoder.arithmeticByte( CMP, RBX, 0x0, 0x0 );
+
+        }
+
+    }
+
+    private void use() {
+
+        if ( !this.cell.isHeld() ) {
+
+            this.encoder.loadByte( R15, RBX, 0x0 );
+            this.cell.hold( false );
+
+        }
+
+    }
+
+    private void flush() {
+
+        if ( this.cell.isDirty() ) {
+
+            this.encoder.storeByte( RBX, 0x0, R15 );
+            this.cell.clean();
+
+        }
+
+    }
+
+    private void release() {
+
+        this.flush();
+        this.cell.release();
+
+    }
+
+    /*
+    Emits an instruction that doesn't change the control flow (see NasmEmitter.instruction);
+    R15 holds the current cell if the cell is held.
+     */
+    private int instruction( Program program, int index ) {
+
+        X86Encoder e = this.encoder;
+        int value = program.value( index );
+        int offset = program.offset( index );
+        boolean cached = this.isCached( program, index );
+        Packing packing = Packing.of( program, index, this.cell.isHeld() );
+
+        if ( packing != null ) {
+
+            this.pack( program, packing );
+            return packing.end();
+
+        }
+
+        switch ( program.operation( index ) ) {
+
+            case ADD -> {
+
+                value &= 0xFF;
+
+                if ( offset != 0x0 || !cached ) {
+
+                    this.emit( program, index );
+
+                } else if ( value != 0x0 ) {
+
+                    this.use();
+                    e.arithmeticByte( ( value < 0x80 ? ADD : SUB ), R15, ( value < 0x80 ? value : 0x100 - value ) );
+                    this.cell.hold( true );
+
+                }
+
+            }
+
+            case SET -> {
+
+                if ( offset != 0x0 || !cached ) {
+
+                    this.emit( program, index );
+
+                } else {
+
+                    e.moveByte( R15, value & 0xFF );
+                    this.cell.hold( true );
+
+                }
+
+            }
+
+            case MULTIPLY -> {
+
+                return this.multiplications( program, index, true );
+
+            }
+
+            case OUTPUT -> {
+
+                this.release();
+                return this.print( program, index );
+
+            }
+
+            case INPUT -> {
+
+                if ( offset == 0x0 ) {
+
+                    this.release();
+
+                }
+
+                this.emit( program, index );
+
+            }
+
+            default -> {
+
+                this.release();
+                this.emit( program, index );
+
+            }
+
+        }
+
+        return index + 0x1;
+
+    }
+
+    /*
+    Emits the additions and assignments of a packing (see NasmEmitter.pack);
+    the constants of each chunk are appended to the data.
+     */
+    private void pack( Program program, Packing packing ) {
+
+        X86Encoder e = this.encoder;
+        int i = 0x0;
+
+        while ( i < packing.size() ) {
+
+            int width = packing.width( i );
+            int offset = packing.offset( i );
+
+            if ( width == 0x0 ) {
+
+                this.emit( program, packing.index( i ) );
+                i++;
+                continue;
+
+            }
+
+            if ( packing.isAssigned( i ) ) {
+
+                for ( int part = 0x0; part < width / Packing.NARROW; part++ ) {
+
+                    e.move( RAX, packing.quad( i, part ) );
+                    e.storeQuad( RBX, offset + part * Packing.NARROW, RAX );
+
+                }
+
+            } else {
+
+                int constants = this.data( packing.constants( i ) );
+                e.loadVector( 0x0, RBX, offset, width );
+
+                if ( packing.isMasked( i ) ) {
+
+                    e.loadConstant( 0x1, constants, Packing.WIDE, width );
+                    e.andVectors( 0x0, 0x1 );
+
+                }
+
+                e.loadConstant( 0x1, constants, 0x0, width );
+                e.addVectors( 0x0, 0x1 );
+                e.storeVector( RBX, offset, 0x0, width );
+
+            }
+
+            i = packing.next( i );
+
+        }
+
+    }
+
+    private void restore( Snapshot snapshot ) {
+
+        X86Encoder e = this.encoder;
+
+        if ( snapshot.output().length > 0x0 ) {
+
+            e.bindData( this.snapshotOutput, this.append( snapshot.output() ) );
+            e.moveAddress( RSI, this.snapshotOutput, 0x0 );
+            e.move( RDX, snapshot.output().length );
+            e.move( RDI, 0x1 );
+            e.move( RAX, 0x1 );
+            e.syscall();
+
+        }
+
+        if ( snapshot.cells().length > 0x0 ) {
+
+            e.bindData( this.snapshotCells, this.append( snapshot.cells() ) );
+            e.lea( RDI, RBX, snapshot.origin() );
+            e.moveAddress( RSI, this.snapshotCells, 0x0 );
+            e.move( RCX, snapshot.cells().length );
+            e.copy();
+
+        }
+
+        this.redirect( snapshot.pointer() );
+
+    }
+
+    /*
+    Emits the multiplications that start at the given index, which are skipped as a whole
+    if their origin is zero (see NasmEmitter.multiplications), and returns the index that follows them;
+    they only refer to the cell register if they may.
+     */
+    private int multiplications( Program program, int index, boolean register ) {
+
+        X86Encoder e = this.encoder;
+        int end = program.endOfMultiplications( index );
+        int origin = program.origin( index );
+        int skip = e.label();
+
+        for ( int i = index; i < end && register && origin == 0x0; i++ ) {
+
+            if ( this.isCached( program, i ) ) {
+
+                this.use();
+                break;
+
+            }
+
+        }
+
+        boolean cached = register && this.cell.isHeld();
+
+        if ( origin == 0x0 ) {
+
+            this.condition();
+
+        } else {
+
+            e.arithmeticByte( CMP, RBX, origin, 0x0 );
+
+        }
+
+        e.jump( EQUAL, skip );
+
+        for ( int i = index; i < end; i++ ) {
+
+            this.multiply( program, i, cached );
+
+        }
+
+        e.bind( skip );
+
+        return end;
+
+    }
+
+    private void multiply( Program program, int index, boolean cached ) {
+
+        X86Encoder e = this.encoder;
+        int value = program.value( index );
+        int offset = program.offset( index );
+        int origin = program.origin( index );
+
+        if ( origin != 0x0 && offset != 0x0 || !cached ) {
+
+            this.emit( program, index );
+
+        } else if ( origin == 0x0 && value == 0x1 ) {
+
+            this.use();
+            e.addByte( RBX, offset, R15 );
+
+        } else if ( origin == 0x0 && value == -0x1 ) {
+
+            this.use();
+            e.subByte( RBX, offset, R15 );
+
+        } else if ( origin == 0x0 ) {
+
+            this.use();
+            e.zeroExtend( RCX, R15 );
+            e.multiply( RCX, value );
+            e.addByte( RBX, offset, RCX );
+
+        } else if ( Math.abs( value ) == 0x1 ) {
+
+            this.use();
+            e.loadByte( RCX, RBX, origin );
+
+            if ( value > 0x0 ) {
+
+                e.addBytes( R15, RCX );
+
+            } else {
+
+                e.subBytes( R15, RCX );
+
+            }
+
+            this.cell.hold( true );
+
+        } else {
+
+            this.use();
+            e.loadZeroExtended( RCX, RBX, origin );
+            e.multiply( RCX, value );
+            e.addBytes( R15, RCX );
+            this.cell.hold( true );
+
+        }
+
+    
+
+    }
+
+    private boolean isCached( Program program, int index ) {
+
+        return this.cell.isHeld() || this.layout.cachesCells() && NasmEmitter.isReused( program, index, this.layout );
+
+    }
+
+    private int print( Program program, int index ) {
+
+        X86Encoder e = this.encoder;
+
+        // Search for the last print operation of the coherent sequence
+        int last = index;
+        int length = 0x0;
+
+        for ( int i = index; i < program.size() && NasmEmitter.isPrintable( program.operation( i ) ) && length < NasmEmitter.PRINT_LIMIT; i++ ) {
+
+            if ( program.operation( i ) == Operation.OUTPUT ) {
+
+                last = i;
+                length++;
+
+            }
+
+        }
+
+        int fits = e.label();
+
+        e.arithmetic( CMP, R12, OUTPUT_BUFFER_SIZE - length );
+        e.jump( BELOW_EQUAL, fits );
+        e.call( this.flushOutput );
+        e.bind( fits );
+
+        int calls = 0x0;
+        for ( int i = index; i <= last; i++ ) {
+
+            if ( program.operation( i ) == Operation.OUTPUT ) {
+
+                e.loadByte( RCX, RBX, program.offset( i ) );
+                e.storeByte( this.outputBuffer, calls, R12, RCX );
+                calls++;
+
+            } else if ( program.operation( i ) == Operation.MULTIPLY ) {
+
+                // The cell register isn't held within print sequences
+                i = this.multiplications( program, i, false ) - 0x1;
+
+            } else {
+
+                this.emit( program, i );
+
+            }
+
+        }
+
+        e.arithmetic( ADD, R12, length );
+
+        return last + 0x1;
+
+    }
+
+    private void emit( Program program, int index ) {
+
+        X86Encoder e = this.encoder;
+        int value = program.value( index );
+        int offset = program.offset( index );
+
+        switch ( program.operation( index ) ) {
+
+            case ADD -> {
+
+                value &= 0xFF;
+
+                if ( value != 0x0 ) {
+
+                    e.arithmeticByte( ( value < 0x80 ? ADD : SUB ), RBX, offset, ( value < 0x80 ? value : 0x100 - value ) );
+
+                }
+
+            }
+
+            case MOVE -> this.redirect( value );
+            case SET -> e.storeImmediate( RBX, offset, value & 0xFF );
+
+            case MULTIPLY -> {
+
+                int origin = program.origin( index );
+
+                if ( value == 0x1 ) {
+
+                    e.loadByte( RCX, RBX, origin );
+                    e.addByte( RBX, offset, RCX );
+
+                } else if ( value == -0x1 ) {
+
+                    e.loadByte( RCX, RBX, origin );
+                    e.subByte( RBX, offset, RCX );
+
+                } else {
+
+                    e.loadZeroExtended( RCX, RBX, origin );
+                    e.multiply( RCX, value );
+                    e.addByte( RBX, offset, RCX );
+
+                }
+
+            }
+
+            case SCAN -> {
+
+                if ( Vectors.isVectorized( value ) ) {
+
+                    this.redirect( offset );
+                    e.call( this.scans[ Vectors.LIMIT + value ] );
+
+                } else {
+
+                    int scan = e.label();
+
+                    this.redirect( offset - value );
+                    e.bind( scan );
+                    e.arithmetic( ADD, RBX, value );
+                    e.arithmeticByte( CMP, RBX, 0x0, 0x0 );
+                    e.jump( NOT_EQUAL, scan );
+
+                }
+
+            }
+
+            case INPUT -> {
+
+                e.lea( RDI, RBX, offset );
+                e.call( this.readInput );
+
+            }
+
+        }
+
+    }
+
+    private void redirect( int value ) {
+
+        if ( value != 0x0 ) {
+
+            this.encoder.arithmetic( ADD, RBX, value );
+
+        }
+
+    }
+
+    /*
+    ------------------------------------------------------------------------------------
+    Layout
+    ------------------------------------------------------------------------------------
+     */
+
+    /*
+    Appends the given bytes to the data and returns their offset.
+     */
+    private int append( byte[] bytes ) {
+
+        int offset = this.data.size();
+        this.data.write( bytes, 0x0, bytes.length );
+
+        return offset;
+
+    }
+
+    /*
+    Appends the given bytes to the data and returns a label bound to them.
+     */
+    private int data( byte[] bytes ) {
+
+        int label = this.encoder.label();
+        this.encoder.bindData( label, this.append( bytes ) );
+
+        return label;
+
+    }
+
+    private void write( WritableByteChannel destination ) throws IOException {
+
+        // The data segment starts at the page following the code (both in the file and in memory)
+        long dataOffset = ElfEmitter.align( TEXT + this.encoder.size(), PAGE );
+        long dataAddress = BASE + dataOffset;
+
+        // The buffers follow the data; they are neither part of the file nor have to be cleared
+        int bss = ( int ) ElfEmitter.align( this.data.size(), 0x10 );
+        this.encoder.bindData( this.outputBuffer, bss );
+        this.encoder.bindData( this.inputBuffer, bss + OUTPUT_BUFFER_SIZE );
+        this.encoder.bindData( this.avx2Supported, bss + OUTPUT_BUFFER_SIZE + INPUT_BUFFER_SIZE );
+        this.encoder.bindData( this.profileCounters, bss + OUTPUT_BUFFER_SIZE + INPUT_BUFFER_SIZE + 0x10 );
+
+        long bssSize = OUTPUT_BUFFER_SIZE + INPUT_BUFFER_SIZE + 0x10 + 0x10L * Math.max( this.loops, 0x0 );
+
+        byte[] code = this.encoder.link( BASE + TEXT, dataAddress );
+        byte[] data = this.data.toByteArray();
+
+        long namesOffset = dataOffset + data.length;
+        long sectionsOffset = ElfEmitter.align( namesOffset + SECTION_NAMES.length, 0x8 );
+
+        ByteBuffer file = ByteBuffer.allocate( ( int ) ( sectionsOffset + 0x5 * SECTION_HEADER_SIZE ) ).order( ByteOrder.LITTLE_ENDIAN );
+
+        // ELF header
+        file.put( new byte[] { 0x7F, 'E', 'L', 'F', 0x2, 0x1, 0x1, 0x0 } ).putLong( 0x0 );
+        file.putShort( ( short ) 0x2 );                         // executable
+        file.putShort( ( short ) 0x3E );                        // x86-64
+        file.putInt( 0x1 );
+        file.putLong( BASE + TEXT );                            // entry point
+        file.putLong( HEADER_SIZE );                            // program headers
+        file.putLong( sectionsOffset );                         // section headers
+        file.putInt( 0x0 );
+        file.putShort( ( short ) HEADER_SIZE );
+        file.putShort( ( short ) PROGRAM_HEADER_SIZE );
+        file.putShort( ( short ) 0x2 );
+        file.putShort( ( short ) SECTION_HEADER_SIZE );
+        file.putShort( ( short ) 0x5 );
+        file.putShort( ( short ) 0x4 );                         // index of the section names
+
+        // Program headers (readable and executable code, readable and writable data)
+        ElfEmitter.segment( file, 0x5, 0x0, BASE, TEXT + code.length, TEXT + code.length );
+        ElfEmitter.segment( file, 0x6, dataOffset, dataAddress, data.length, bss + bssSize );
+
+        file.put( code );
+        file.position( ( int ) dataOffset );
+        file.put( data );
+        file.put( SECTION_NAMES );
+        file.position( ( int ) sectionsOffset );
+
+        // Section headers (null, .text, .data, .bss, .shstrtab)
+        ElfEmitter.section( file, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0 );
+        ElfEmitter.section( file, 0x1, 0x1, 0x6, BASE + TEXT, TEXT, code.length );
+        ElfEmitter.section( file, 0x7, 0x1, 0x3, dataAddress, dataOffset, data.length );
+        ElfEmitter.section( file, 0xD, 0x8, 0x3, dataAddress + bss, dataOffset + bss, bssSize );
+        ElfEmitter.section( file, 0x12, 0x3, 0x0, 0x0, namesOffset, SECTION_NAMES.length );
+
+        file.flip();
+
+        while ( file.hasRemaining() ) {
+
+            destination.write( file );
+
+        }
+
+    }
+
+    private static void segment( ByteBuffer file, int flags, long offset, long address, long size, long memory ) {
+
+        file.putInt( 0x1 );                                     // loadable
+        file.putInt( flags );
+        file.putLong( offset );
+        file.putLong( address );
+        file.putLong( address );
+        file.putLong( size );
+        file.putLong( memory );
+        file.putLong( PAGE );
+
+    }
+
+    private static void section( ByteBuffer file, int name, int type, long flags, long address, long offset, long size ) {
+
+        file.putInt( name );
+        file.putInt( type );
+        file.putLong( flags );
+        file.putLong( address );
+        file.putLong( offset );
+        file.putLong( size );
+        file.putInt( 0x0 );
+        file.putInt( 0x0 );
+        file.putLong( ( type == 0x0 ? 0x0 : 0x10 ) );
+        file.putLong( 0x0 );
+
+    }
+
+    private static long align( long value, long alignment ) {
+
+        return ( value + alignment - 0x1 ) & -alignment;
+
+    }
+
+}
@@ -0,0 +1,62 @@
+package transpiler.brainfuck.emitter;
+
+/**
+ * 'Brainfuck' itself doesn't define what happens if a character is read
+ * but no input is left. Common implementations either
+ *
+ *      -> leave the cell unchanged
+ *      -> set the cell to zero
+ *      -> set the cell to minus one (255)
+ *
+ * and programs rely on one of these behaviors, hence it is configurable.
+ */
+public enum EndOfInput {
+
+    UNCHANGED( "unchanged", "" ),
+    ZERO( "zero", "mov     byte [rdi], 0x0" ),
+    MINUS_ONE( "minus-one", "mov     byte [rdi], 0xFF" );
+
+    private final String name;
+    private final String instruction;
+
+    EndOfInput( String name, String instruction ) {
+
+        this.name = name;
+        this.instruction = instruction;
+
+    }
+
+    /**
+     * Returns the instruction that changes the cell (whose address is held by 'rdi')
+     * accordingly within the runtime defined by '/transpiler/brainfuck/template/template.asm'.
+     */
+    public String instruction() {
+
+        return this.instruction;
+
+    }
+
+    public static EndOfInput of( String name ) {
+
+        for ( EndOfInput behavior : EndOfInput.values() ) {
+
+            if ( behavior.name.equals( name ) ) {
+
+                return behavior;
+
+            }
+
+        }
+
+        throw new IllegalArgumentException( String.format( "End of input behavior '%s' is not known.", name ) );
+
+    }
+
+    @Override
+    public String toString() {
+
+        return this.name;
+
+    }
+
+}
@@ -0,0 +1,62 @@
+package transpiler.brainfuck.emitter;
+
+/**
+ * The format the transpiled programs are emitted in:
+ *
+ *      -> 'NASM assembly' (see NasmEmitter), which still has to be assembled and linked
+ *      -> an ELF64 executable (see ElfEmitter), which can be run right away
+ */
+public enum Format {
+
+    NASM( "nasm", ".asm" ),
+    ELF( "elf", "" );
+
+    private final String name;
+    private final String extension;
+
+    Format( String name, String extension ) {
+
+        this.name = name;
+        this.extension = extension;
+
+    }
+
+    /**
+     * Returns the extension of files in this format (e.g. when a whole directory is transpiled).
+     */
+    public String extension() {
+
+        return this.extension;
+
+    }
+
+    public boolean isExecutable() {
+
+        return this == ELF;
+
+    }
+
+    public static Format of( String name ) {
+
+        for ( Format format : Format.values() ) {
+
+            if ( format.name.equals( name ) ) {
+
+                return format;
+
+            }
+
+        }
+
+        throw new IllegalArgumentException( String.format( "Format '%s' is not known.", name ) );
+
+    }
+
+    @Override
+    public String toString() {
+
+        return this.name;
+
+    }
+
+}
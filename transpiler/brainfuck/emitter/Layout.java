@@ -0,0 +1,171 @@
+package transpiler.brainfuck.emitter;
+
+import transpiler.brainfuck.ir.Operation;
+import transpiler.brainfuck.ir.Program;
+
+import java.util.Arrays;
+
+/**
+ * The layout tells the emitters how to lay out each loop of a program.
+ *
+ * By default, loops are laid out as compactly as possible: the condition is checked at the top
+ * and the end of the loop jumps back to it, which takes two branches per iteration.
+ * Hot loops (see Profile) are laid out for speed instead:
+ *
+ *      -> rotated: the condition is checked once before the loop and then at its bottom,
+ *         so that each iteration falls through its body and takes a single branch back
+ *      -> aligned: the beginning of the body starts at a multiple of 16 bytes
+ *      -> unrolled: the body of an innermost loop that consists of a few instructions
+ *         (none of which needs a label of its own, like print sequences, multiplications or packings do) is emitted twice,
+ *         checking the condition in between
+ *      -> cached: an innermost loop that doesn't move the pointer holds its cell in a register
+ *         (see NasmEmitter.CELL_REGISTER) for all of its iterations, which is written
+ *         to the tape before output (or input) and once the loop exits
+ *
+ * Programs can be laid out for speed as a whole (see --rotate), too, which rotates each loop,
+ * caches each innermost loop that doesn't move the pointer and keeps the current cell in the register
+ * across consecutive instructions that refer to it (see Cell). Only hot loops are aligned and unrolled,
+ * since neither pays off for loops that hardly run.
+ *
+ * Loops are told apart by the index of their beginning.
+ */
+public class Layout {
+
+    public static final Layout COMPACT = new Layout( new byte[ 0x0 ], false );
+
+    static final int ALIGNMENT = 0x10;
+    static final int UNROLL_LIMIT = 0x10;
+
+    private static final byte ROTATED = 0x1;
+    private static final byte ALIGNED = 0x2;
+    private static final byte UNROLLED = 0x4;
+    private static final byte CACHED = 0x8;
+
+    private final byte[] loops;
+    private final boolean cells;
+
+    private Layout( byte[] loops, boolean cells ) {
+
+        this.loops = loops;
+        this.cells = cells;
+
+    }
+
+    /**
+     * Lays out the loops of the given program which begin at one of the given (ascending) positions
+     * within the source for speed, the rest compactly.
+     */
+    public static Layout of( Program program, long[] hot ) {
+
+        return Layout.of( program, hot, false );
+
+    }
+
+    /**
+     * Lays out the given program just like above, the whole of it for speed if it is to be rotated.
+     */
+    public static Layout of( Program program, long[] hot, boolean rotate ) {
+
+        byte[] loops = new byte[ program.size() ];
+
+        for ( int i = 0x0; i < program.size(); i++ ) {
+
+            if ( program.operation( i ) != Operation.OPEN ) {
+
+                continue;
+
+            }
+
+            if ( program.position( i ) >= 0x0 && Arrays.binarySearch( hot, program.position( i ) ) >= 0x0 ) {
+
+                loops[ i ] = Layout.describe( program, i, true );
+
+            } else if ( rotate ) {
+
+                loops[ i ] = Layout.describe( program, i, false );
+
+            }
+
+        }
+
+        return new Layout( loops, rotate );
+
+    }
+
+    /*
+    A loop is unrolled (if it is hot) and cached if its body allows.
+     */
+    private static byte describe( Program program, int open, boolean hot ) {
+
+        int close = program.partner( open );
+        boolean innermost = true;
+        boolean labels = false;
+        boolean moves = false;
+
+        for ( int i = open + 0x1; i < close; i++ ) {
+
+            switch ( program.operation( i ) ) {
+
+                case OPEN -> innermost = false;
+                case SCAN -> labels = moves = true;
+                case OUTPUT, MULTIPLY -> labels = true;
+                case ADD, SET -> labels |= Packing.isPacked( program, i );
+                case MOVE -> moves = true;
+
+            }
+
+        }
+
+        byte layout = ( hot ? ROTATED | ALIGNED : ROTATED );
+
+        if ( hot && innermost && !labels && close - open - 0x1 <= UNROLL_LIMIT ) {
+
+            layout |= UNROLLED;
+
+        }
+
+        if ( innermost && !moves ) {
+
+            layout |= CACHED;
+
+        }
+
+        return layout;
+
+    }
+
+    public boolean isRotated( int open ) {
+
+        return open < this.loops.length && ( this.loops[ open ] & ROTATED ) != 0x0;
+
+    }
+
+    public boolean isAligned( int open ) {
+
+        return open < this.loops.length && ( this.loops[ open ] & ALIGNED ) != 0x0;
+
+    }
+
+    public boolean isUnrolled( int open ) {
+
+        return open < this.loops.length && ( this.loops[ open ] & UNROLLED ) != 0x0;
+
+    }
+
+    public boolean isCached( int open ) {
+
+        return open < this.loops.length && ( this.loops[ open ] & CACHED ) != 0x0;
+
+    }
+
+    /**
+     * Tells whether the current cell is kept in the register across consecutive instructions
+     * (outside of cached loops, too).
+     */
+    public boolean cachesCells() {
+
+        return this.cells;
+
+    }
+
+}
@@ -0,0 +1,1289 @@
+package transpiler.brainfuck.emitter;
+
+import transpiler.brainfuck.ir.Operation;
+import transpiler.brainfuck.ir.Program;
+import transpiler.brainfuck.ir.Snapshot;
+import transpiler.brainfuck.profile.Profile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The emitter translates a program in the intermediate representation
+ * into 'NASM assembly' that is inserted into the framework defined
+ * within '/transpiler/brainfuck/template/template.asm'.
+ *
+ * The instructions are written to an AssemblyWriter as they are emitted,
+ * fragment by fragment and number by number, so that the emitted program
+ * never has to be held in memory as a whole.
+ */
+public class NasmEmitter {
+
+    /**
+     * These static members of the NasmEmitter class are
+     * the placeholder replacements for the framework
+     * that is defined within '/transpiler/brainfuck/template/template.asm'
+     */
+    public static final long DEFAULT_TAPE_SIZE      = 0x10000;
+    public static final String INDEX_REGISTER       = "rbx";
+    public static final String OUTPUT_REGISTER      = "r12";
+    public static final String OUTPUT_BUFFER_SIZE   = "0x10000";
+    public static final String INPUT_INDEX_REGISTER = "r13";
+    public static final String INPUT_LIMIT_REGISTER = "r14";
+    public static final String INPUT_BUFFER_SIZE    = "0x10000";
+    private static final String CACHE_REGISTER      = "cl";
+
+    /**
+     * Holds the current cell throughout a loop that is cached or, if the whole program is laid out for speed,
+     * across consecutive instructions that refer to it (see Layout and Cell); neither syscalls nor the runtime change it.
+     */
+    static final String CELL_REGISTER               = "r15b";
+
+    /**
+     * Coherent print sequences are split after this amount of print operations,
+     * so that each of them surely fits into the output buffer.
+     */
+    static final int PRINT_LIMIT = 0x100;
+
+    /**
+     * The emitter walks over the program exactly once, from left to right.
+     *
+     * Instruction patterns (e.g. coherent print sequences) are recognized by looking
+     * ahead from the current instruction; the emission then continues with
+     * the first instruction that isn't part of the pattern.
+     *
+     * Labels are named after the index of the instruction they belong to
+     * (a loop after the index of its beginning), which makes them unique within the program
+     * without any shared state, hence several programs can be emitted at the same time.
+     */
+    public static void emit( Program program, AssemblyWriter writer ) throws IOException {
+
+        NasmEmitter.emit( program, Layout.COMPACT, false, writer );
+
+    }
+
+    /**
+     * Emits the given program, just like above, laying out its loops as given.
+     * If it is instrumented, each loop counts how often it is entered and how many iterations it runs
+     * (see Profile), which are held by the table 'profile_counters' (two quad words per loop,
+     * in the order the loops begin).
+     */
+    public static void emit( Program program, Layout layout, boolean instrument, AssemblyWriter writer ) throws IOException {
+
+        if ( program.snapshot() != null ) {
+
+            NasmEmitter.restore( program.snapshot(), writer );
+
+        }
+
+        Cell cell = new Cell();
+        int index = 0x0;
+        int loops = 0x0;
+
+        while ( index < program.size() ) {
+
+            switch ( program.operation( index ) ) {
+
+                case OPEN -> {
+
+                    int id = index;
+                    long counter = 0x10L * loops++;
+
+                    if ( instrument ) {
+
+                        writer.append( "\tinc\tqword [profile_counters+" ).hex( counter ).append( "]\n" );
+
+                    }
+
+                    if ( layout.isUnrolled( id ) || layout.isCached( id ) ) {
+
+                        index = NasmEmitter.loop( program, id, layout, cell, ( instrument ? counter + 0x8 : -0x1 ), writer );
+                        continue;
+
+                    }
+
+                    boolean entered = NasmEmitter.isEntered( program, id );
+
+                    if ( layout.isRotated( id ) || entered ) {
+
+                        if ( !entered ) {
+
+                            NasmEmitter.condition( cell, writer );
+
+                        }
+
+                        NasmEmitter.release( cell, writer );
+
+                        if ( !entered ) {
+
+                            writer.append( "\tje\t.exit_" ).decimal( id ).append( '\n' );
+
+                        }
+
+                        NasmEmitter.align( layout, id, writer );
+                        writer.append( ".loop_" ).decimal( id ).append( ":\n" );
+
+                    } else {
+
+                        NasmEmitter.release( cell, writer );
+                        writer.append( ".loop_" ).decimal( id ).append( ":\n" );
+                        writer.append( "\tcmp\tbyte [" ).append( INDEX_REGISTER ).append( "], 0x0\n" );
+                        writer.append( "\tje\t.exit_" ).decimal( id ).append( '\n' );
+
+                    }
+
+                    if ( instrument ) {
+
+                        writer.append( "\tinc\tqword [profile_counters+" ).hex( counter + 0x8 ).append( "]\n" );
+
+                    }
+
+                    index++;
+
+                }
+
+                case CLOSE -> {
+
+                    int id = program.partner( index );
+
+                    if ( layout.isRotated( id ) || NasmEmitter.isEntered( program, id ) ) {
+
+                        NasmEmitter.condition( cell, writer );
+                        NasmEmitter.release( cell, writer );
+                        writer.append( "\tjne\t.loop_" ).decimal( id ).append( '\n' );
+
+                    } else {
+
+                        NasmEmitter.release( cell, writer );
+                        writer.append( "\tjmp\t.loop_" ).decimal( id ).append( '\n' );
+
+                    }
+
+                    writer.append( ".exit_" ).decimal( id ).append( ":\n" );
+                    index++;
+
+                }
+
+                default -> index = NasmEmitter.instruction( program, index, layout, cell, writer );
+
+            }
+
+        }
+
+        NasmEmitter.release( cell, writer );
+
+    }
+
+    /**
+     * Emits an innermost loop that is unrolled or cached (see Layout) and returns the index
+     * of the instruction that follows it; the iterations are counted if a counter is given.
+     *
+     * The loop is rotated, like any loop that is laid out for speed: its condition is checked once
+     * before the loop and then after each copy of its body, leaving the loop from the first copy
+     * and repeating it from the last one.
+     * A cached loop holds the current cell in the register throughout; since it might be dirty
+     * whenever the loop is repeated, it is written back once the loop exits.
+     */
+    private static int loop( Program program, int open, Layout layout, Cell cell, long counter, AssemblyWriter writer ) throws IOException {
+
+        int id = open;
+        int close = program.partner( open );
+        boolean cached = layout.isCached( open );
+        int copies = ( layout.isUnrolled( open ) ? 0x2 : 0x1 );
+
+        boolean entered = NasmEmitter.isEntered( program, open );
+
+        if ( cached ) {
+
+            NasmEmitter.use( cell, writer );
+
+        }
+
+        if ( !entered ) {
+
+            NasmEmitter.condition( cell, writer );
+
+        }
+
+        if ( cached ) {
+
+            cell.hold( true );
+
+        } else {
+
+            NasmEmitter.release( cell, writer );
+
+        }
+
+        if ( !entered ) {
+
+            writer.append( "\tje\t.exit_" ).decimal( id ).append( '\n' );
+
+        }
+        NasmEmitter.align( layout, id, writer );
+        writer.append( ".loop_" ).decimal( id ).append( ":\n" );
+
+        for ( int copy = 0x0; copy < copies; copy++ ) {
+
+            if ( counter >= 0x0 ) {
+
+                writer.append( "\tinc\tqword [profile_counters+" ).hex( counter ).append( "]\n" );
+
+            }
+
+            int index = open + 0x1;
+
+            while ( index < close ) {
+
+                index = NasmEmitter.instruction( program, index, layout, cell, writer );
+
+            }
+
+            if ( cached ) {
+
+                NasmEmitter.use( cell, writer );
+                NasmEmitter.condition( cell, writer );
+
+            } else {
+
+                NasmEmitter.condition( cell, writer );
+                NasmEmitter.release( cell, writer );
+
+            }
+
+            writer.append( copy < copies - 0x1 ? "\tje\t.exit_" : "\tjne\t.loop_" ).decimal( id ).append( '\n' );
+
+        }
+
+        writer.append( ".exit_" ).decimal( id ).append( ":\n" );
+
+        if ( cached ) {
+
+            cell.hold( true );
+            NasmEmitter.flush( cell, writer );
+
+            if ( !layout.cachesCells() ) {
+
+                cell.release();
+
+            }
+
+        }
+
+        return close + 0x1;
+
+    }
+
+    /*
+    A loop that is known to be entered (see ValuePropagation) doesn't check its condition beforehand;
+    like a rotated loop, it checks it at its bottom.
+     */
+    static boolean isEntered( Program program, int open ) {
+
+        return program.value( open ) != 0x0;
+
+    }
+
+    private static void align( Layout layout, int open, AssemblyWriter writer ) throws IOException {
+
+        if ( layout.isAligned( open ) ) {
+
+            writer.append( "\talign\t" ).hex( Layout.ALIGNMENT ).append( '\n' );
+
+        }
+
+    }
+
+    /*
+    Checks the condition of a loop, preferably in the cell register.
+     */
+    private static void condition( Cell cell, AssemblyWriter writer ) throws IOException {
+
+        if ( cell.isHeld() ) {
+
+            writer.append( "\ttest\t" ).append( CELL_REGISTER ).append( ", " ).append( CELL_REGISTER ).append( '\n' );
+
+        } else {
+
+            writer.append( "\tcmp\tbyte [" ).append( INDEX_REGISTER ).append( "], 0x0\n" );
+
+        }
+
+    }
+
+    /*
+    Makes the cell register hold the current cell.
+     */
+    private static void use( Cell cell, AssemblyWriter writer ) throws IOException {
+
+        if ( !cell.isHeld() ) {
+
+            writer.append( "\tmov\t" ).append( CELL_REGISTER ).append( ", [" ).append( INDEX_REGISTER ).append( "]\n" );
+            cell.hold( false );
+
+        }
+
+    }
+
+    /*
+    Writes the cell register to the tape (if it differs).
+     */
+    private static void flush( Cell cell, AssemblyWriter writer ) throws IOException {
+
+        if ( cell.isDirty() ) {
+
+            writer.append( "\tmov\t[" ).append( INDEX_REGISTER ).append( "], " ).append( CELL_REGISTER ).append( '\n' );
+            cell.clean();
+
+        }
+
+    }
+
+    private static void release( Cell cell, AssemblyWriter writer ) throws IOException {
+
+        NasmEmitter.flush( cell, writer );
+        cell.release();
+
+    }
+
+    /**
+     * Emits an instruction (or a print sequence) that doesn't change the control flow
+     * and returns the index of the instruction that follows it.
+     *
+     * Unless the cell register is in use, that is, within a cached loop or if cells are cached
+     * throughout (see Layout), the instruction is emitted as it is.
+     * Otherwise, an instruction that refers to the current cell refers to the cell register instead,
+     * if the register holds the cell anyway or will be used again before it has to be written back
+     * (loading the cell just for one instruction wouldn't pay off).
+     * Moving the pointer, output (since print sequences might change any cell) and input into
+     * the current cell (which might leave the cell unchanged, see EndOfInput) write it back.
+     */
+    private static int instruction( Program program, int index, Layout layout, Cell cell, AssemblyWriter writer ) throws IOException {
+
+        int value = program.value( index );
+        int offset = program.offset( index );
+        boolean cached = NasmEmitter.isCached( program, index, layout, cell );
+        Packing packing = Packing.of( program, index, cell.isHeld() );
+
+        if ( packing != null ) {
+
+            NasmEmitter.pack( program, packing, writer );
+            return packing.end();
+
+        }
+
+        switch ( program.operation( index ) ) {
+
+            case ADD -> {
+
+                if ( offset != 0x0 || !cached ) {
+
+                    NasmEmitter.add( value, offset, writer );
+
+                } else if ( ( value & 0xFF ) != 0x0 ) {
+
+                    value &= 0xFF;
+                    NasmEmitter.use( cell, writer );
+                    writer.append( value < 0x80 ? "\tadd\t" : "\tsub\t" ).append( CELL_REGISTER ).append( ", " ).decimal( value < 0x80 ? value : 0x100 - value ).append( '\n' );
+                    cell.hold( true );
+
+                }
+
+            }
+
+            case SET -> {
+
+                if ( offset != 0x0 || !cached ) {
+
+                    NasmEmitter.set( value, offset, writer );
+
+                } else {
+
+                    writer.append( "\tmov\t" ).append( CELL_REGISTER ).append( ", " ).hex( value & 0xFF ).append( '\n' );
+                    cell.hold( true );
+
+                }
+
+            }
+
+            case MULTIPLY -> {
+
+                return NasmEmitter.multiplications( program, index, layout, cell, writer );
+
+            }
+
+            case OUTPUT -> {
+
+                NasmEmitter.release( cell, writer );
+                return NasmEmitter.print( program, index, writer );
+
+            }
+
+            case INPUT -> {
+
+                if ( offset == 0x0 ) {
+
+                    NasmEmitter.release( cell, writer );
+
+                }
+
+                NasmEmitter.read( offset, writer );
+
+            }
+
+            default -> {
+
+                NasmEmitter.release( cell, writer );
+                NasmEmitter.emit( program, index, writer );
+
+            }
+
+        }
+
+        return index + 0x1;
+
+    }
+
+    /**
+     * Emits the additions and assignments of the given packing (see Packing), chunk by chunk.
+     * The constants a chunk is masked and added with are defined within the data section right before
+     * its instructions (labeled by the index of its first instruction) and loaded into XMM1,
+     * since neither they nor the cells are aligned.
+     */
+    private static void pack( Program program, Packing packing, AssemblyWriter writer ) throws IOException {
+
+        int i = 0x0;
+
+        while ( i < packing.size() ) {
+
+            int width = packing.width( i );
+            int offset = packing.offset( i );
+
+            if ( width == 0x0 ) {
+
+                NasmEmitter.emit( program, packing.index( i ), writer );
+                i++;
+                continue;
+
+            }
+
+            if ( packing.isAssigned( i ) ) {
+
+                for ( int part = 0x0; part < width / Packing.NARROW; part++ ) {
+
+                    writer.append( "\tmov\trax, " ).hex( packing.quad( i, part ) ).append( '\n' );
+                    writer.append( "\tmov\t[" );
+                    NasmEmitter.address( offset + part * Packing.NARROW, writer ).append( "], rax\n" );
+
+                }
+
+            } else {
+
+                String label = ".packed_" + packing.index( i );
+                String move = ( width == Packing.NARROW ? "\tmovq\t" : "\tmovdqu\t" );
+
+                writer.append( "section .data\n" );
+                NasmEmitter.bytes( label, packing.constants( i ), writer );
+                writer.append( "section .text\n" );
+
+                writer.append( move ).append( "xmm0, [" );
+                NasmEmitter.address( offset, writer ).append( "]\n" );
+
+                if ( packing.isMasked( i ) ) {
+
+                    writer.append( move ).append( "xmm1, [" ).append( label ).append( '+' ).hex( Packing.WIDE ).append( "]\n" );
+                    writer.append( "\tpand\txmm0, xmm1\n" );
+
+                }
+
+                writer.append( move ).append( "xmm1, [" ).append( label ).append( "]\n" );
+                writer.append( "\tpaddb\txmm0, xmm1\n" );
+                writer.append( move ).append( '[' );
+                NasmEmitter.address( offset, writer ).append( "], xmm0\n" );
+
+            }
+
+            i = packing.next( i );
+
+        }
+
+    }
+
+    /*
+    A multiply loop (see IdiomRecognition) only touches the cells it multiplies into once it is entered,
+    hence its multiplications (see Program.endOfMultiplications) are skipped as a whole if their origin is zero.
+    Otherwise, they might touch cells the program never reaches, e.g. the guard pages beyond the tape (see guard).
+
+    The cell register has to hold the same either way, hence it is loaded before the multiplications might be
+    skipped if any of them uses it, but only if their origin is the current cell (which is checked anyway);
+    otherwise, only a cell register that is held already is used.
+     */
+    private static int multiplications( Program program, int index, Layout layout, Cell cell, AssemblyWriter writer ) throws IOException {
+
+        int end = program.endOfMultiplications( index );
+        int origin = program.origin( index );
+
+        for ( int i = index; i < end && origin == 0x0; i++ ) {
+
+            if ( NasmEmitter.isCached( program, i, layout, cell ) ) {
+
+                NasmEmitter.use( cell, writer );
+                break;
+
+            }
+
+        }
+
+        boolean cached = cell.isHeld();
+
+        if ( origin == 0x0 ) {
+
+            NasmEmitter.condition( cell, writer );
+
+        } else {
+
+            writer.append( "\tcmp\tbyte [" );
+            NasmEmitter.address( origin, writer ).append( "], 0x0\n" );
+
+        }
+
+        writer.append( "\tje\t.multiplied_" ).decimal( index ).append( '\n' );
+
+        for ( int i = index; i < end; i++ ) {
+
+            NasmEmitter.multiply( program.value( i ), program.offset( i ), origin, cached, cell, writer );
+
+        }
+
+        writer.append( ".multiplied_" ).decimal( index ).append( ":\n" );
+
+        return end;
+
+    }
+
+    /*
+    Adds the cell at the given origin, multiplied by the given value, to the cell at the given offset,
+    preferably within the cell register (if the current cell is cached).
+     */
+    private static void multiply( int value, int offset, int origin, boolean cached, Cell cell, AssemblyWriter writer ) throws IOException {
+
+        if ( origin != 0x0 && offset != 0x0 || !cached ) {
+
+            NasmEmitter.multiply( value, offset, origin, writer );
+
+        } else if ( origin == 0x0 && Math.abs( value ) == 0x1 ) {
+
+            NasmEmitter.use( cell, writer );
+            writer.append( value > 0x0 ? "\tadd\t[" : "\tsub\t[" );
+            NasmEmitter.address( offset, writer ).append( "], " ).append( CELL_REGISTER ).append( '\n' );
+
+        } else if ( origin == 0x0 ) {
+
+            NasmEmitter.use( cell, writer );
+            writer.append( "\tmovzx\tecx, " ).append( CELL_REGISTER ).append( '\n' );
+            writer.append( "\timul\tecx, ecx, " ).decimal( value ).append( '\n' );
+            writer.append( "\tadd\t[" );
+            NasmEmitter.address( offset, writer ).append( "], " ).append( CACHE_REGISTER ).append( '\n' );
+
+        } else if ( Math.abs( value ) == 0x1 ) {
+
+            NasmEmitter.use( cell, writer );
+            writer.append( "\tmov\t" ).append( CACHE_REGISTER ).append( ", [" );
+            NasmEmitter.address( origin, writer ).append( "]\n" );
+            writer.append( value > 0x0 ? "\tadd\t" : "\tsub\t" ).append( CELL_REGISTER ).append( ", " ).append( CACHE_REGISTER ).append( '\n' );
+            cell.hold( true );
+
+        } else {
+
+            NasmEmitter.use( cell, writer );
+            writer.append( "\tmovzx\tecx, byte [" );
+            NasmEmitter.address( origin, writer ).append( "]\n" );
+            writer.append( "\timul\tecx, ecx, " ).decimal( value ).append( '\n' );
+            writer.append( "\tadd\t" ).append( CELL_REGISTER ).append( ", " ).append( CACHE_REGISTER ).append( '\n' );
+            cell.hold( true );
+
+        }
+
+    }
+
+    /*
+    Tells whether an instruction that refers to the current cell refers to the cell register instead
+    (see instruction).
+     */
+    private static boolean isCached( Program program, int index, Layout layout, Cell cell ) {
+
+        return cell.isHeld() || layout.cachesCells() && NasmEmitter.isReused( program, index, layout );
+
+    }
+
+    /*
+    Tells whether the current cell is referred to again after the given instruction
+    before the cell register would have to be written back (the condition of a rotated loop
+    refers to it as well).
+     */
+    static boolean isReused( Program program, int index, Layout layout ) {
+
+        for ( int i = index + 0x1; i < program.size(); i++ ) {
+
+            switch ( program.operation( i ) ) {
+
+                case OPEN -> {
+
+                    return layout.isRotated( i );
+
+                }
+
+                case CLOSE -> {
+
+                    return layout.isRotated( program.partner( i ) );
+
+                }
+
+                case ADD, SET -> {
+
+                    if ( program.offset( i ) == 0x0 ) {
+
+                        return true;
+
+                    }
+
+                }
+
+                case MULTIPLY -> {
+
+                    if ( program.offset( i ) == 0x0 || program.origin( i ) == 0x0 ) {
+
+                        return true;
+
+                    }
+
+                }
+
+                default -> {
+
+                    return false;
+
+                }
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * The tape is allocated in whole pages, hence its size (in cells)
+     * is rounded up to a multiple of the page size.
+     */
+    public static long tape( long cells ) {
+
+        return NasmEmitter.pages( Math.max( cells, 0x1 ) );
+
+    }
+
+    /**
+     * The tape is surrounded by guard pages which can't be accessed.
+     * Leaving the tape therefore doesn't have to be checked by each and every
+     * pointer redirection; it is detected by the first access of a guard page.
+     *
+     * Since accesses might be addressed relative to the pointer and the pointer might
+     * be redirected by more than one cell at once, the guard pages have to span
+     * at least the farthest distance an access might have from the tape.
+     *
+     * This requires every emitter to access only cells the program itself would access at that point:
+     * Code that is run speculatively mustn't touch any other cell (e.g. multiplications are skipped
+     * unless their origin is set, the cell register is only loaded ahead if the cell is read anyway,
+     * packings stay within the cells they change and scans only load aligned vectors).
+     */
+    public static long guard( Program program ) {
+
+        long redirection = 0x0;
+        long offset = 0x0;
+
+        for ( int i = 0x0; i < program.size(); i++ ) {
+
+            if ( program.operation( i ) == Operation.MOVE || program.operation( i ) == Operation.SCAN ) {
+
+                redirection = Math.max( redirection, Math.abs( ( long ) program.value( i ) ) );
+
+            }
+
+            offset = Math.max( offset, Math.max( Math.abs( ( long ) program.offset( i ) ), Math.abs( ( long ) program.origin( i ) ) ) );
+
+        }
+
+        return NasmEmitter.pages( redirection + offset + 0x1 );
+
+    }
+
+    private static long pages( long size ) {
+
+        return ( size + 0xFFF ) & ~0xFFFL;
+
+    }
+
+    /**
+     * The data section holds the state that has been reached at compile time (if any),
+     * that is, the output printed so far and the cells changed so far.
+     */
+    public static void data( Program program, AssemblyWriter writer ) throws IOException {
+
+        Snapshot snapshot = program.snapshot();
+
+        if ( snapshot != null ) {
+
+            NasmEmitter.bytes( "snapshot_output", snapshot.output(), writer );
+            NasmEmitter.bytes( "snapshot_cells", snapshot.cells(), writer );
+
+        }
+
+    }
+
+    /**
+     * Returns the amount of loops of the given program (each of which has its own counters if it is instrumented).
+     */
+    public static int loops( Program program ) {
+
+        int loops = 0x0;
+
+        for ( int i = 0x0; i < program.size(); i++ ) {
+
+            if ( program.operation( i ) == Operation.OPEN ) {
+
+                loops++;
+
+            }
+
+        }
+
+        return loops;
+
+    }
+
+    /**
+     * The data section of an instrumented program additionally holds the header of its profile
+     * (see Profile), that is, the amount of loops and the position of each loop within the source,
+     * as well as the path of the file the profile is written to.
+     */
+    public static void data( Program program, String profile, AssemblyWriter writer ) throws IOException {
+
+        NasmEmitter.data( program, writer );
+
+        writer.append( "profile_header:\n" );
+        writer.append( "\tdq\t" ).hex( Profile.MAGIC ).append( ", " ).hex( NasmEmitter.loops( program ) ).append( '\n' );
+
+        for ( int i = 0x0; i < program.size(); i++ ) {
+
+            if ( program.operation( i ) == Operation.OPEN ) {
+
+                writer.append( "\tdq\t" ).decimal( program.position( i ) ).append( '\n' );
+
+            }
+
+        }
+
+        writer.append( "profile_header_length:\tequ $-profile_header\n" );
+
+        byte[] path = ( profile + '\0' ).getBytes( StandardCharsets.UTF_8 );
+        NasmEmitter.bytes( "profile_path", path, writer );
+
+    }
+
+    /**
+     * The counters of an instrumented program are reserved within the bss section, which is zeroed.
+     */
+    public static void counters( Program program, AssemblyWriter writer ) throws IOException {
+
+        writer.append( "profile_counters:\tresq\t" ).hex( 0x2L * NasmEmitter.loops( program ) ).append( '\n' );
+
+    }
+
+    /**
+     * Programs that scan with vectorized strides (see Vectors) detect at startup whether they may use AVX2,
+     * which requires the support of the processor (CPUID) as well as the operating system,
+     * which has to save the upper halves of the vector registers (XGETBV).
+     * This happens before the pointer is prepared, since CPUID overwrites it.
+     */
+    public static void features( Program program, AssemblyWriter writer ) throws IOException {
+
+        if ( Vectors.strides( program ).length == 0x0 ) {
+
+            return;
+
+        }
+
+        writer.append( "\n    ;detect whether scans may use AVX2 (supported by both the processor and the operating system)\n" );
+        writer.append( "\txor\teax, eax\n" );
+        writer.append( "\tcpuid\n" );
+        writer.append( "\tcmp\teax, 0x7\n" );
+        writer.append( "\tjb\t.exit_features\n" );
+        writer.append( "\tmov\teax, 0x1\n" );
+        writer.append( "\tcpuid\n" );
+        writer.append( "\tand\tecx, 0x18000000\n" );
+        writer.append( "\tcmp\tecx, 0x18000000\n" );
+        writer.append( "\tjne\t.exit_features\n" );
+        writer.append( "\tmov\teax, 0x7\n" );
+        writer.append( "\txor\tecx, ecx\n" );
+        writer.append( "\tcpuid\n" );
+        writer.append( "\tand\tebx, 0x20\n" );
+        writer.append( "\tjz\t.exit_features\n" );
+        writer.append( "\txor\tecx, ecx\n" );
+        writer.append( "\txgetbv\n" );
+        writer.append( "\tand\teax, 0x6\n" );
+        writer.append( "\tcmp\teax, 0x6\n" );
+        writer.append( "\tjne\t.exit_features\n" );
+        writer.append( "\tmov\tbyte [avx2_supported], 0x1\n" );
+        writer.append( ".exit_features:\n" );
+
+    }
+
+    /**
+     * Emits the search routine of each vectorized stride the given program scans with (see Vectors),
+     * which moves the pointer to the nearest cell (at a multiple of the stride from the current cell) that is zero.
+     *
+     * The mask of the positions the scan visits is shifted to where the current cell lies relative to the
+     * stride. The vector that contains the current cell is searched first, ignoring the cells the scan
+     * passes by (those before the current cell when scanning right, those after it when scanning left);
+     * the following vectors are searched as a whole. Finally, the pointer is moved to the first
+     * (or last) zero cell within the vector where the search stopped.
+     */
+    public static void scans( Program program, AssemblyWriter writer ) throws IOException {
+
+        for ( int stride : Vectors.strides( program ) ) {
+
+            String name = Vectors.name( stride );
+            // (local labels are suffixed by the direction and the stride, so that their names are unique throughout the runtime)
+            String suffix = name.substring( name.indexOf( '_' ) );
+
+            writer.append( "    ;move the pointer by " ).decimal( stride ).append( " until it points to a cell that is zero\n" );
+            writer.append( name ).append( ":\n" );
+            writer.append( "\tmov\tesi, " ).hex( Vectors.mask( stride ) & 0xFFFFFFFFL ).append( '\n' );
+
+            if ( Math.abs( stride ) > 0x1 ) {
+
+                writer.append( "\tmov\tecx, ebx\n" );
+                writer.append( "\tand\tecx, " ).hex( Math.abs( stride ) - 0x1 ).append( '\n' );
+                writer.append( "\tshl\trsi, cl\n" );
+
+            }
+
+            writer.append( "\tmov\tecx, ebx\n" );
+            writer.append( "\tcmp\tbyte [avx2_supported], 0x0\n" );
+            writer.append( "\tjne\t.avx2" ).append( suffix ).append( '\n' );
+            NasmEmitter.search( stride, false, suffix, writer );
+            writer.append( "\tjmp\t.found" ).append( suffix ).append( '\n' );
+            writer.append( ".avx2" ).append( suffix ).append( ":\n" );
+            NasmEmitter.search( stride, true, suffix, writer );
+            writer.append( "\tvzeroupper\n" );
+            writer.append( ".found" ).append( suffix ).append( ":\n" );
+            writer.append( stride > 0x0 ? "\tbsf\trdx, rdx\n" : "\tbsr\trdx, rdx\n" );
+            writer.append( "\tadd\trax, rdx\n" );
+            writer.append( "\tmov\t" ).append( INDEX_REGISTER ).append( ", rax\n" );
+            writer.append( "\tret\n\n" );
+
+        }
+
+    }
+
+    /*
+    Searches the vectors (of 16 or 32 cells) from the one that contains the current cell (rbx)
+    until the mask of zero cells (rdx) has one of the positions (rsi) set, leaving the address of the vector in rax.
+    The position of the current cell within its vector (cl) selects the cells of the first vector.
+     */
+    private static void search( int stride, boolean avx2, String suffix, AssemblyWriter writer ) throws IOException {
+
+        int width = ( avx2 ? 0x20 : 0x10 );
+        String loop = ( avx2 ? ".loop_avx2" : ".loop_sse2" ) + suffix;
+        String exit = ( avx2 ? ".exit_avx2" : ".exit_sse2" ) + suffix;
+
+        writer.append( "\tmov\trax, " ).append( INDEX_REGISTER ).append( '\n' );
+        writer.append( "\tand\trax, -" ).hex( width ).append( '\n' );
+        writer.append( "\tand\tecx, " ).hex( width - 0x1 ).append( '\n' );
+
+        if ( stride > 0x0 ) {
+
+            writer.append( "\tmov\trdi, -0x1\n" );
+            writer.append( "\tshl\trdi, cl\n" );
+
+        } else {
+
+            writer.append( "\tmov\tedi, 0x2\n" );
+            writer.append( "\tshl\trdi, cl\n" );
+            writer.append( "\tdec\trdi\n" );
+
+        }
+
+        writer.append( "\tand\trdi, rsi\n" );
+        writer.append( avx2 ? "\tvpxor\tymm0, ymm0, ymm0\n" : "\tpxor\txmm0, xmm0\n" );
+        NasmEmitter.compare( avx2, writer );
+        writer.append( "\tand\trdx, rdi\n" );
+        writer.append( "\tjnz\t" ).append( exit ).append( '\n' );
+        writer.append( loop ).append( ":\n" );
+        writer.append( stride > 0x0 ? "\tadd\trax, " : "\tsub\trax, " ).hex( width ).append( '\n' );
+        NasmEmitter.compare( avx2, writer );
+        writer.append( "\tand\trdx, rsi\n" );
+        writer.append( "\tjz\t" ).append( loop ).append( '\n' );
+        writer.append( exit ).append( ":\n" );
+
+    }
+
+    /*
+    Compares the (aligned) vector at rax with zero (xmm0 or ymm0), leaving the mask of zero cells in rdx.
+     */
+    private static void compare( boolean avx2, AssemblyWriter writer ) throws IOException {
+
+        if ( avx2 ) {
+
+            writer.append( "\tvpcmpeqb\tymm1, ymm0, [rax]\n" );
+            writer.append( "\tvpmovmskb\tedx, ymm1\n" );
+
+        } else {
+
+            writer.append( "\tmovdqa\txmm1, [rax]\n" );
+            writer.append( "\tpcmpeqb\txmm1, xmm0\n" );
+            writer.append( "\tpmovmskb\tedx, xmm1\n" );
+
+        }
+
+    }
+
+    /**
+     * Once an instrumented program exits gracefully, its profile is written: the header followed by the counters.
+     * The program isn't affected if the file can't be written.
+     */
+    public static void profile( Program program, AssemblyWriter writer ) throws IOException {
+
+        writer.append( "\tmov\trax, 0x2\n" );
+        writer.append( "\tmov\trdi, profile_path\n" );
+        writer.append( "\tmov\trsi, 0x241\n" );
+        writer.append( "\tmov\trdx, 0x1A4\n" );
+        writer.append( "\tsyscall\n" );
+        writer.append( "\ttest\trax, rax\n" );
+        writer.append( "\tjs\t.exit_profile\n" );
+        writer.append( "\tmov\tr15, rax\n" );
+        writer.append( "\tmov\trdi, r15\n" );
+        writer.append( "\tmov\trsi, profile_header\n" );
+        writer.append( "\tmov\trdx, profile_header_length\n" );
+        writer.append( "\tmov\trax, 0x1\n" );
+        writer.append( "\tsyscall\n" );
+        writer.append( "\tmov\trdi, r15\n" );
+        writer.append( "\tmov\trsi, profile_counters\n" );
+        writer.append( "\tmov\trdx, " ).hex( 0x10L * NasmEmitter.loops( program ) ).append( '\n' );
+        writer.append( "\tmov\trax, 0x1\n" );
+        writer.append( "\tsyscall\n" );
+        writer.append( "\tmov\trdi, r15\n" );
+        writer.append( "\tmov\trax, 0x3\n" );
+        writer.append( "\tsyscall\n" );
+        writer.append( ".exit_profile:\n" );
+
+    }
+
+    /**
+     * Restores the state that has been reached at compile time:
+     * The output is printed using only one syscall, the cells are copied
+     * as a whole and the pointer is redirected to where the program continues.
+     */
+    private static void restore( Snapshot snapshot, AssemblyWriter writer ) throws IOException {
+
+        if ( snapshot.output().length > 0x0 ) {
+
+            writer.append( "\tmov\trsi, snapshot_output\n" );
+            writer.append( "\tmov\trdx, " ).hex( snapshot.output().length ).append( '\n' );
+            writer.append( "\tmov\trdi, 0x1\n" );
+            writer.append( "\tmov\trax, 0x1\n" );
+            writer.append( "\tsyscall\n" );
+
+        }
+
+        if ( snapshot.cells().length > 0x0 ) {
+
+            writer.append( "\tlea\trdi, [" );
+            NasmEmitter.address( snapshot.origin(), writer ).append( "]\n" );
+            writer.append( "\tmov\trsi, snapshot_cells\n" );
+            writer.append( "\tmov\trcx, " ).hex( snapshot.cells().length ).append( '\n' );
+            writer.append( "\trep\tmovsb\n" );
+
+        }
+
+        NasmEmitter.redirect( snapshot.pointer(), writer );
+
+    }
+
+    /*
+    Defines a labeled sequence of bytes, sixteen per line.
+     */
+    private static void bytes( String label, byte[] bytes, AssemblyWriter writer ) throws IOException {
+
+        writer.append( label ).append( ":\n" );
+
+        for ( int i = 0x0; i < bytes.length; i += 0x10 ) {
+
+            writer.append( "\tdb\t" );
+
+            for ( int j = i; j < Math.min( bytes.length, i + 0x10 ); j++ ) {
+
+                writer.append( j == i ? "" : ", " ).hexByte( bytes[ j ] & 0xFF );
+
+            }
+
+            writer.append( '\n' );
+
+        }
+
+    }
+
+    /**
+     * Since that also requires knowledge of '(NASM) assembly' and describing several
+     * steps is neither very illuminating (e.g. certain syscalls) nor helps
+     * understanding what this structures do, detailed commenting cannot
+     * be found in the following methods.
+     * However, there is an explanation to what each pattern recognizes and
+     * how it optimizes the resulting code.
+     *
+     * This pattern matches sequences that have to do with printing characters.
+     * These use the printing operation (OUTPUT).
+     *
+     * Calls to the operating system (syscalls) are expensive and thus the goal
+     * is to reduce these calls to a minimum.
+     * Therefore, printed characters are not written to stdout right away but appended
+     * to the output buffer (see '/transpiler/brainfuck/template/template.asm') whose
+     * length is held by a register.
+     * The buffer is only written when it is full, before input is read and when the
+     * program exits, hence even prints inside of loops hardly ever cause a syscall.
+     *
+     * Pointer shifting operations (MOVE) as well as cell value changing
+     * operations (ADD) can be found between single print operations.
+     * These only effect the values or rather characters that are printed,
+     * but not the amount of characters.
+     * Hence, it only has to be checked once per coherent sequence whether
+     * the buffer can hold all of its characters; if it can't, it is written beforehand.
+     */
+    private static int print( Program program, int index, AssemblyWriter writer ) throws IOException {
+
+        // Search for the last print operation of the coherent sequence
+        int last = index;
+        int length = 0x0;
+
+        for ( int i = index; i < program.size() && NasmEmitter.isPrintable( program.operation( i ) ) && length < PRINT_LIMIT; i++ ) {
+
+            if ( program.operation( i ) == Operation.OUTPUT ) {
+
+                last = i;
+                length++;
+
+            }
+
+        }
+
+        int id = index;
+
+        writer.append( "\tcmp\t" ).append( OUTPUT_REGISTER ).append( ", " ).append( OUTPUT_BUFFER_SIZE ).append( '-' ).hex( length ).append( '\n' );
+        writer.append( "\tjbe\t.print_" ).decimal( id ).append( '\n' );
+        writer.append( "\tcall\tflush_output\n" );
+        writer.append( ".print_" ).decimal( id ).append( ":\n" );
+
+        int calls = 0x0;
+        for ( int i = index; i <= last; i++ ) {
+
+            switch ( program.operation( i ) ) {
+
+                case OUTPUT -> {
+
+                    writer.append( "\tmov\t" ).append( CACHE_REGISTER ).append( ", [" );
+                    NasmEmitter.address( program.offset( i ), writer ).append( "]\n" );
+                    writer.append( "\tmov\t[output_buffer+" ).append( OUTPUT_REGISTER ).append( '+' ).hex( calls ).append( "], " ).append( CACHE_REGISTER ).append( '\n' );
+                    calls++;
+
+                }
+
+                // The cell register has been released before (see instruction), hence it isn't referred to
+                case MULTIPLY -> i = NasmEmitter.multiplications( program, i, Layout.COMPACT, new Cell(), writer ) - 0x1;
+
+                default -> NasmEmitter.emit( program, i, writer );
+
+            }
+
+        }
+
+        writer.append( "\tadd\t" ).append( OUTPUT_REGISTER ).append( ", " ).hex( length ).append( '\n' );
+
+        return last + 0x1;
+
+    }
+
+    /**
+     * This pattern matches the operation that reads keyboard input (INPUT).
+     *
+     * Calls to the operating system (syscalls) are expensive and thus the goal
+     * is to reduce these calls to a minimum.
+     * Therefore, input isn't read character by character, but as much as is available
+     * at once into the input buffer (see '/transpiler/brainfuck/template/template.asm').
+     * Each read operation is then served from the buffer; only if it is exhausted,
+     * the buffer is refilled (which is when the program might have to wait for input).
+     *
+     * If no input is left at all, the cell is changed according to the
+     * configured end of input behavior (see EndOfInput).
+     */
+    private static void read( int offset, AssemblyWriter writer ) throws IOException {
+
+        writer.append( "\tlea\trdi, [" );
+        NasmEmitter.address( offset, writer ).append( "]\n" );
+        writer.append( "\tcall\tread_input\n" );
+
+    }
+
+    /**
+     * Emits a single instruction that doesn't change the control flow
+     * (apart from calling the runtime).
+     */
+    private static void emit( Program program, int index, AssemblyWriter writer ) throws IOException {
+
+        switch ( program.operation( index ) ) {
+
+            case ADD -> NasmEmitter.add( program.value( index ), program.offset( index ), writer );
+            case MOVE -> NasmEmitter.redirect( program.value( index ), writer );
+            case SET -> NasmEmitter.set( program.value( index ), program.offset( index ), writer );
+            case MULTIPLY -> NasmEmitter.multiply( program.value( index ), program.offset( index ), program.origin( index ), writer );
+            case SCAN -> NasmEmitter.scan( index, program.value( index ), program.offset( index ), writer );
+            case INPUT -> NasmEmitter.read( program.offset( index ), writer );
+
+        }
+
+    }
+
+    /**
+     * Changes the cell at the given offset by the given value.
+     *
+     * The cell is changed in memory directly; since cells are bytes, the value
+     * is reduced modulo 256 and subtracted instead if that is shorter to write.
+     */
+    private static void add( int value, int offset, AssemblyWriter writer ) throws IOException {
+
+        value &= 0xFF;
+
+        if ( value != 0x0 ) {
+
+            writer.append( value < 0x80 ? "\tadd\tbyte [" : "\tsub\tbyte [" );
+            NasmEmitter.address( offset, writer ).append( "], " ).decimal( value < 0x80 ? value : 0x100 - value ).append( '\n' );
+
+        }
+
+    }
+
+    /**
+     * Changes the pointer by the given value.
+     * Coherent sequences have been folded into one instruction beforehand.
+     */
+    private static void redirect( int value, AssemblyWriter writer ) throws IOException {
+
+        if ( value != 0 ) {
+
+            writer.append( value > 0x0 ? "\tadd\t" : "\tsub\t" ).append( INDEX_REGISTER ).append( ", " ).hex( Math.abs( ( long ) value ) ).append( '\n' );
+
+        }
+
+    }
+
+    /**
+     * Sets the cell at the given offset to the given value (e.g. clears it)
+     * without any loop at all.
+     */
+    private static void set( int value, int offset, AssemblyWriter writer ) throws IOException {
+
+        writer.append( "\tmov\tbyte [" );
+        NasmEmitter.address( offset, writer ).append( "], " ).hex( value & 0xFF ).append( '\n' );
+
+    }
+
+    /**
+     * Adds the cell at the given origin, multiplied by the given factor, to the cell at the given offset.
+     *
+     * Copying (a factor of one) and its negation don't need a multiplication at all;
+     * any other factor is multiplied in a 32 bit register of which only
+     * the lowest byte is used (the product modulo 256).
+     */
+    private static void multiply( int factor, int offset, int origin, AssemblyWriter writer ) throws IOException {
+
+        if ( Math.abs( factor ) == 0x1 ) {
+
+            writer.append( "\tmov\t" ).append( CACHE_REGISTER ).append( ", [" );
+            NasmEmitter.address( origin, writer ).append( "]\n" );
+            writer.append( factor > 0x0 ? "\tadd\t[" : "\tsub\t[" );
+            NasmEmitter.address( offset, writer ).append( "], " ).append( CACHE_REGISTER ).append( '\n' );
+
+        } else {
+
+            writer.append( "\tmovzx\tecx, byte [" );
+            NasmEmitter.address( origin, writer ).append( "]\n" );
+            writer.append( "\timul\tecx, ecx, " ).decimal( factor ).append( '\n' );
+            writer.append( "\tadd\t[" );
+            NasmEmitter.address( offset, writer ).append( "], " ).append( CACHE_REGISTER ).append( '\n' );
+
+        }
+
+    }
+
+    /**
+     * Moves the pointer to the cell at the given offset and then by the given stride
+     * until it points to a cell that is zero.
+     *
+     * Strides that are vectorized (see Vectors) call the search routine of the runtime.
+     * Otherwise, in contrast to a generic loop, the condition is only checked at the bottom,
+     * so that each iteration only takes one branch.
+     * Therefore, the pointer initially is moved one stride less
+     * (which can be combined with moving it to the given offset).
+     */
+    private static void scan( int id, int stride, int offset, AssemblyWriter writer ) throws IOException {
+
+        if ( Vectors.isVectorized( stride ) ) {
+
+            NasmEmitter.redirect( offset, writer );
+            writer.append( "\tcall\t" ).append( Vectors.name( stride ) ).append( '\n' );
+            return;
+
+        }
+
+        NasmEmitter.redirect( offset - stride, writer );
+        writer.append( ".scan_" ).decimal( id ).append( ":\n" );
+        writer.append( stride > 0x0 ? "\tadd\t" : "\tsub\t" ).append( INDEX_REGISTER ).append( ", " ).hex( Math.abs( ( long ) stride ) ).append( '\n' );
+        writer.append( "\tcmp\tbyte [" ).append( INDEX_REGISTER ).append( "], 0x0\n" );
+        writer.append( "\tjne\t.scan_" ).decimal( id ).append( '\n' );
+
+    }
+
+    /**
+     * Writes the address of the cell at the given offset relative to the current cell.
+     */
+    private static AssemblyWriter address( int offset, AssemblyWriter writer ) throws IOException {
+
+        writer.append( INDEX_REGISTER );
+
+        if ( offset == 0x0 ) {
+
+            return writer;
+
+        }
+
+        return writer.append( offset > 0x0 ? '+' : '-' ).hex( Math.abs( ( long ) offset ) );
+
+    }
+
+    /*
+    Sequences of print operations may contain any operation that neither
+    changes the control flow nor does input or output itself
+    (reading input might write the output buffer in the midst of the sequence).
+     */
+    static boolean isPrintable( Operation operation ) {
+
+        return switch ( operation ) {
+
+            case OUTPUT, ADD, MOVE, SET, MULTIPLY -> true;
+            default -> false;
+
+        };
+
+    }
+
+}
@@ -0,0 +1,332 @@
+package transpiler.brainfuck.emitter;
+
+import transpiler.brainfuck.ir.Operation;
+import transpiler.brainfuck.ir.Program;
+
+import java.util.Arrays;
+
+/**
+ * Straight-line code often changes many neighboring cells one after another (e.g. the preamble
+ * of a program that sets up a table, or '>+>+>+' once redirections have been deferred), which would take
+ * one instruction (and one store) per cell. Instead, such cells are changed by packed instructions:
+ *
+ *      -> a chunk of 16 (or 8) cells is loaded into a vector register at once, the cells that are assigned
+ *         are cleared (pand) and the values are added (paddb), the cells in between staying unchanged,
+ *         before the chunk is written back
+ *      -> a chunk of 8 cells that are all assigned is written by a single 64 bit immediate store
+ *
+ * A packing consists of the additions and assignments that follow each other directly, as long as
+ * each refers to a cell of its own (so that they can be reordered), except for the current cell while it is
+ * held in the cell register (see Cell). Their cells are divided into chunks (starting at the lowest cell),
+ * each of which has to change enough cells to pay off; any other cell is changed on its own.
+ * Chunks never reach beyond the lowest or the highest cell that is changed, hence packed instructions
+ * don't access any cells (or guard pages) the instructions they replace wouldn't.
+ */
+final class Packing {
+
+    static final int WIDE = 0x10;
+    static final int NARROW = 0x8;
+
+    // The amount of cells a chunk has to change at least (wide and narrow)
+    private static final int WIDE_MINIMUM = 0x4;
+    private static final int NARROW_MINIMUM = 0x3;
+
+    // The amount of instructions a packing consists of at most
+    private static final int LIMIT = 0x100;
+
+    private final Program program;
+    private final int end;
+
+    // The instructions of the packing, ordered by their cells (offsets)
+    private final int[] indices;
+
+    // The width of the chunk that starts at each instruction, or zero if it doesn't start one
+    private final int[] widths;
+
+    private Packing( Program program, int end, int[] indices ) {
+
+        this.program = program;
+        this.end = end;
+        this.indices = indices;
+        this.widths = new int[ indices.length ];
+
+        for ( int i = 0x0; i < indices.length; ) {
+
+            int width = this.chunk( i );
+            this.widths[ i ] = width;
+            i = ( width == 0x0 ? i + 0x1 : this.next( i, width ) );
+
+        }
+
+    }
+
+    /**
+     * Returns the packing that begins with the instruction at the given index, or 'null' if none
+     * of its cells can be changed by a packed instruction.
+     */
+    static Packing of( Program program, int index, boolean held ) {
+
+        int end = index;
+
+        while ( end < program.size() && end - index < LIMIT && Packing.isPackable( program, end, held ) ) {
+
+            end++;
+
+        }
+
+        return Packing.of( program, index, end );
+
+    }
+
+    private static Packing of( Program program, int index, int end ) {
+
+        if ( end - index < NARROW_MINIMUM ) {
+
+            return null;
+
+        }
+
+        Integer[] indices = new Integer[ end - index ];
+
+        for ( int i = 0x0; i < indices.length; i++ ) {
+
+            indices[ i ] = index + i;
+
+        }
+
+        Arrays.sort( indices, ( a, b ) -> Integer.compare( program.offset( a ), program.offset( b ) ) );
+
+        // Instructions that refer to the same cell can't be reordered, hence the packing ends before the later one
+        for ( int i = 0x1; i < indices.length; i++ ) {
+
+            if ( program.offset( indices[ i ] ) == program.offset( indices[ i - 0x1 ] ) ) {
+
+                return Packing.of( program, index, Math.max( indices[ i ], indices[ i - 0x1 ] ) );
+
+            }
+
+        }
+
+        Packing packing = new Packing( program, end, Arrays.stream( indices ).mapToInt( Integer::intValue ).toArray() );
+        return ( packing.isPacked() ? packing : null );
+
+    }
+
+    /**
+     * Tells whether a packing might begin with the instruction at the given index
+     * (whether or not the current cell is held then).
+     */
+    static boolean isPacked( Program program, int index ) {
+
+        return Packing.of( program, index, false ) != null || Packing.of( program, index, true ) != null;
+
+    }
+
+    private static boolean isPackable( Program program, int index, boolean held ) {
+
+        Operation operation = program.operation( index );
+        return ( operation == Operation.ADD || operation == Operation.SET ) && !( held && program.offset( index ) == 0x0 );
+
+    }
+
+    /*
+    Determines the width of the chunk that starts at the cell of the given instruction, if any.
+     */
+    private int chunk( int first ) {
+
+        int offset = this.offset( first );
+        int highest = this.offset( this.indices.length - 0x1 );
+
+        if ( highest - offset + 0x1 >= WIDE && this.next( first, WIDE ) - first >= WIDE_MINIMUM ) {
+
+            return WIDE;
+
+        }
+
+        if ( highest - offset + 0x1 >= NARROW && this.next( first, NARROW ) - first >= NARROW_MINIMUM ) {
+
+            return NARROW;
+
+        }
+
+        return 0x0;
+
+    }
+
+    /*
+    Returns the first instruction whose cell lies beyond the chunk of the given width that starts at the given one.
+     */
+    private int next( int first, int width ) {
+
+        int next = first;
+
+        while ( next < this.indices.length && this.offset( next ) < this.offset( first ) + width ) {
+
+            next++;
+
+        }
+
+        return next;
+
+    }
+
+    private boolean isPacked() {
+
+        for ( int width : this.widths ) {
+
+            if ( width != 0x0 ) {
+
+                return true;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Returns the index of the instruction that follows the packing.
+     */
+    int end() {
+
+        return this.end;
+
+    }
+
+    /**
+     * Returns the amount of instructions of the packing.
+     */
+    int size() {
+
+        return this.indices.length;
+
+    }
+
+    /**
+     * Returns the index of the given instruction (in the order of their cells).
+     */
+    int index( int i ) {
+
+        return this.indices[ i ];
+
+    }
+
+    int offset( int i ) {
+
+        return this.program.offset( this.indices[ i ] );
+
+    }
+
+    /**
+     * Returns the width of the chunk that starts at the given instruction, or zero if the instruction
+     * changes its cell on its own.
+     */
+    int width( int i ) {
+
+        return this.widths[ i ];
+
+    }
+
+    /**
+     * Returns the instruction that follows the chunk which starts at the given instruction.
+     */
+    int next( int i ) {
+
+        return this.next( i, this.widths[ i ] );
+
+    }
+
+    /**
+     * Tells whether each cell of the chunk that starts at the given instruction is assigned.
+     */
+    boolean isAssigned( int i ) {
+
+        int next = this.next( i );
+
+        for ( int j = i; j < next; j++ ) {
+
+            if ( this.program.operation( this.indices[ j ] ) != Operation.SET ) {
+
+                return false;
+
+            }
+
+        }
+
+        return next - i == this.widths[ i ];
+
+    }
+
+    /**
+     * Returns the values that are added to the cells of the chunk that starts at the given instruction
+     * (assigned cells are cleared beforehand, see mask), followed by the mask of the cells that are kept.
+     */
+    byte[] constants( int i ) {
+
+        byte[] constants = new byte[ 0x2 * WIDE ];
+        Arrays.fill( constants, WIDE, 0x2 * WIDE, ( byte ) 0xFF );
+
+        for ( int j = i; j < this.next( i ); j++ ) {
+
+            int cell = this.offset( j ) - this.offset( i );
+            constants[ cell ] = ( byte ) this.program.value( this.indices[ j ] );
+
+            if ( this.program.operation( this.indices[ j ] ) == Operation.SET ) {
+
+                constants[ WIDE + cell ] = 0x0;
+
+            }
+
+        }
+
+        return constants;
+
+    }
+
+    /**
+     * Tells whether any cell of the chunk that starts at the given instruction is assigned
+     * (which requires the cells to be masked).
+     */
+    boolean isMasked( int i ) {
+
+        for ( int j = i; j < this.next( i ); j++ ) {
+
+            if ( this.program.operation( this.indices[ j ] ) == Operation.SET ) {
+
+                return true;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Returns the assigned values of (the narrow part of) a chunk that starts at the given instruction
+     * as little endian quad word.
+     */
+    long quad( int i, int part ) {
+
+        long quad = 0x0L;
+
+        for ( int j = i; j < this.next( i ); j++ ) {
+
+            int cell = this.offset( j ) - this.offset( i ) - part * NARROW;
+
+            if ( cell >= 0x0 && cell < NARROW ) {
+
+                quad |= ( this.program.value( this.indices[ j ] ) & 0xFFL ) << ( cell * 0x8 );
+
+            }
+
+        }
+
+        return quad;
+
+    }
+
+}
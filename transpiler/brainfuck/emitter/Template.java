@@ -0,0 +1,165 @@
+package transpiler.brainfuck.emitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The coarse structure of the transpiled programs is described by the file
+ * '/transpiler/brainfuck/template/template.asm' which contains placeholders
+ * (e.g. %SOURCE% which will contain the transpiled source code).
+ *
+ * The template is split at its placeholders once when it is loaded.
+ * Writing it then streams the text in between unchanged and lets each
+ * placeholder's replacement write itself at its place, hence the (potentially huge)
+ * transpiled source code never has to be held in memory as a whole.
+ * Since replacements are written as they are, they may contain any character
+ * (regular expression replacements would, for instance, interpret '$' and '\').
+ */
+public class Template {
+
+    /**
+     * The replacement of a placeholder writes its value directly to the writer.
+     */
+    public interface Replacement {
+
+        void write( AssemblyWriter writer ) throws IOException;
+
+    }
+
+    private static final String STANDARD = "/transpiler/brainfuck/template/template.asm";
+
+    private final byte[] content;
+    private final int[] starts;
+    private final int[] ends;
+    private final String[] placeholders;
+    private final int size;
+
+    private Template( byte[] content ) {
+
+        int[] starts = new int[ 0x10 ];
+        int[] ends = new int[ 0x10 ];
+        String[] placeholders = new String[ 0x10 ];
+        int size = 0x0;
+
+        for ( int i = 0x0; i < content.length; i++ ) {
+
+            if ( content[ i ] != '%' ) {
+
+                continue;
+
+            }
+
+            // Placeholders consist of upper case letters and underscores only
+            int end = i + 0x1;
+
+            while ( end < content.length && ( Character.isUpperCase( content[ end ] ) || content[ end ] == '_' ) ) {
+
+                end++;
+
+            }
+
+            if ( end > i + 0x1 && end < content.length && content[ end ] == '%' ) {
+
+                if ( size == starts.length ) {
+
+                    starts = Arrays.copyOf( starts, size * 0x2 );
+                    ends = Arrays.copyOf( ends, size * 0x2 );
+                    placeholders = Arrays.copyOf( placeholders, size * 0x2 );
+
+                }
+
+                starts[ size ] = i;
+                ends[ size ] = end + 0x1;
+                placeholders[ size++ ] = new String( content, i + 0x1, end - i - 0x1 );
+                i = end;
+
+            }
+
+        }
+
+        this.content = content;
+        this.starts = starts;
+        this.ends = ends;
+        this.placeholders = placeholders;
+        this.size = size;
+
+    }
+
+    /*
+    The standard template is loaded from inside the JAR on first use; the class loader guarantees
+    that this happens exactly once, without any lock on later uses.
+     */
+    private static class Standard {
+
+        private static final Template TEMPLATE = Template.load( STANDARD );
+
+    }
+
+    /**
+     * Returns the template all programs are transpiled into.
+     * A template doesn't change after its creation, hence it can be shared by any amount of threads.
+     */
+    public static Template standard() {
+
+        return Standard.TEMPLATE;
+
+    }
+
+    private static Template load( String resource ) {
+
+        try ( InputStream stream = Template.class.getResourceAsStream( resource ) ) {
+
+            if ( stream == null ) {
+
+                throw new IllegalStateException( String.format( "Template '%s' is missing.", resource ) );
+
+            }
+
+            return new Template( stream.readAllBytes() );
+
+        } catch ( IOException exception ) {
+
+            throw new UncheckedIOException( exception );
+
+        }
+
+    }
+
+    public static Template of( byte[] content ) {
+
+        return new Template( content.clone() );
+
+    }
+
+    /**
+     * Writes the template with each placeholder replaced by the corresponding
+     * replacement (keyed by the placeholder's name without the percent signs).
+     */
+    public void write( AssemblyWriter writer, Map< String, Replacement > replacements ) throws IOException {
+
+        int position = 0x0;
+
+        for ( int i = 0x0; i < this.size; i++ ) {
+
+            Replacement replacement = replacements.get( this.placeholders[ i ] );
+
+            if ( replacement == null ) {
+
+                throw new IllegalArgumentException( String.format( "Placeholder '%%%s%%' has no replacement.", this.placeholders[ i ] ) );
+
+            }
+
+            writer.append( this.content, position, this.starts[ i ] );
+            replacement.write( writer );
+            position = this.ends[ i ];
+
+        }
+
+        writer.append( this.content, position, this.content.length );
+
+    }
+
+}
@@ -0,0 +1,84 @@
+package transpiler.brainfuck.emitter;
+
+import transpiler.brainfuck.ir.Operation;
+import transpiler.brainfuck.ir.Program;
+
+import java.util.Arrays;
+
+/**
+ * Scans (e.g. '[>]', '[<]' or '[>>>>]') search for the next cell that is zero, which is
+ * what vector instructions are good at: A single comparison checks 16 (SSE2) or 32 (AVX2) cells at once
+ * and the mask of its result tells which of them are zero. Each stride therefore has its search routine
+ * within the runtime (see NasmEmitter.scans), which uses AVX2 if both the processor and the operating
+ * system support it (which is detected once at startup, see NasmEmitter.features) and SSE2 otherwise.
+ *
+ * Only the cells the scan would visit may stop it, that is, the cells at a multiple of the stride
+ * from where it starts. Strides that divide the width of a vector visit the same positions
+ * within each vector, which therefore are selected by a constant mask; the other strides
+ * are scanned cell by cell (see NasmEmitter.scan).
+ *
+ * Vectors are loaded from aligned addresses only, so that a load never crosses a page boundary:
+ * The guard pages around the tape are accessed if (and only if) the scan leaves the tape anyway.
+ */
+final class Vectors {
+
+    static final int LIMIT = 0x8;
+
+    private Vectors() {}
+
+    static boolean isVectorized( int stride ) {
+
+        int distance = Math.abs( stride );
+        return distance <= LIMIT && Integer.bitCount( distance ) == 0x1;
+
+    }
+
+    /**
+     * Returns the (ascending, distinct) vectorized strides the given program scans with.
+     */
+    static int[] strides( Program program ) {
+
+        // Indexed by the stride (offset by the limit), zero unless the stride is scanned with
+        int[] strides = new int[ 0x2 * LIMIT + 0x1 ];
+
+        for ( int i = 0x0; i < program.size(); i++ ) {
+
+            int stride = program.value( i );
+
+            if ( program.operation( i ) == Operation.SCAN && Vectors.isVectorized( stride ) ) {
+
+                strides[ LIMIT + stride ] = stride;
+
+            }
+
+        }
+
+        return Arrays.stream( strides ).filter( stride -> stride != 0x0 ).toArray();
+
+    }
+
+    static String name( int stride ) {
+
+        return ( stride > 0x0 ? "scan_right_" : "scan_left_" ) + Math.abs( stride );
+
+    }
+
+    /**
+     * Returns the mask of the positions at a multiple of the given stride within a vector
+     * (of at most 32 cells).
+     */
+    static int mask( int stride ) {
+
+        int mask = 0x0;
+
+        for ( int i = 0x0; i < 0x20; i += Math.abs( stride ) ) {
+
+            mask |= 0x1 << i;
+
+        }
+
+        return mask;
+
+    }
+
+}
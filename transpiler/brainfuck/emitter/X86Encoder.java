@@ -0,0 +1,1104 @@
+package transpiler.brainfuck.emitter;
+
+import java.util.Arrays;
+
+/**
+ * The encoder translates the (small) subset of x86-64 instructions the emitted programs
+ * consist of into machine code, that is, it does what an assembler would do.
+ *
+ * Jumps and calls refer to labels which don't have to be bound yet (e.g. the end of a loop);
+ * their 32 bit displacements are written as zero first and back-patched once the code is linked.
+ * The same holds for absolute addresses (e.g. of buffers), which are only known
+ * once the layout of the executable has been determined; labels therefore either
+ * refer to a position within the code or to a position within the data.
+ *
+ * Registers are given by their numbers (see the constants); byte instructions
+ * refer to the lowest byte of the given register (e.g. CL for RCX).
+ * Vector instructions refer to XMM0 to XMM7 (or YMM0 to YMM7 if they are wide)
+ * by their numbers as well and only address memory through RAX to RDI.
+ */
+public class X86Encoder {
+
+    public static final int RAX = 0x0;
+    public static final int RCX = 0x1;
+    public static final int RDX = 0x2;
+    public static final int RBX = 0x3;
+    public static final int RSP = 0x4;
+    public static final int RBP = 0x5;
+    public static final int RSI = 0x6;
+    public static final int RDI = 0x7;
+    public static final int R8  = 0x8;
+    public static final int R9  = 0x9;
+    public static final int R10 = 0xA;
+    public static final int R11 = 0xB;
+    public static final int R12 = 0xC;
+    public static final int R13 = 0xD;
+    public static final int R14 = 0xE;
+    public static final int R15 = 0xF;
+
+    /*
+    Condition codes (the lowest nibble of the conditional jump's opcode).
+     */
+    public static final int BELOW         = 0x2;
+    public static final int EQUAL         = 0x4;
+    public static final int NOT_EQUAL     = 0x5;
+    public static final int BELOW_EQUAL   = 0x6;
+    public static final int ABOVE         = 0x7;
+    public static final int SIGN          = 0x8;
+    public static final int LESS_EQUAL    = 0xE;
+
+    /*
+    Extensions of the opcodes that encode arithmetic with an immediate (0x80, 0x81, 0x83).
+     */
+    public static final int ADD = 0x0;
+    public static final int AND = 0x4;
+    public static final int SUB = 0x5;
+    public static final int CMP = 0x7;
+
+    private static final int UNBOUND = -0x1;
+
+    private byte[] code = new byte[ 0x1000 ];
+    private int size = 0x0;
+
+    // Positions (within the code or the data) that labels are bound to
+    private int[] labels = new int[ 0x40 ];
+    private boolean[] data = new boolean[ 0x40 ];
+    private int count = 0x0;
+
+    // Fixups: where a displacement or an address has to be patched, referring to which label
+    private int[] fixups = new int[ 0x40 ];
+    private int[] targets = new int[ 0x40 ];
+    private int[] addends = new int[ 0x40 ];
+    private boolean[] relative = new boolean[ 0x40 ];
+    private int fixupCount = 0x0;
+
+    // The amount of instructions that have been encoded (padding aside) and of the syscalls among them
+    private long instructions = 0x0;
+    private long syscalls = 0x0;
+
+    public int size() {
+
+        return this.size;
+
+    }
+
+    public long instructions() {
+
+        return this.instructions;
+
+    }
+
+    public long syscalls() {
+
+        return this.syscalls;
+
+    }
+
+    /**
+     * Creates a new label that isn't bound yet.
+     */
+    public int label() {
+
+        if ( this.count == this.labels.length ) {
+
+            this.labels = Arrays.copyOf( this.labels, this.count * 0x2 );
+            this.data = Arrays.copyOf( this.data, this.count * 0x2 );
+
+        }
+
+        this.labels[ this.count ] = UNBOUND;
+        return this.count++;
+
+    }
+
+    /**
+     * Binds the given label to the current position within the code.
+     */
+    public void bind( int label ) {
+
+        this.labels[ label ] = this.size;
+        this.data[ label ] = false;
+
+    }
+
+    /**
+     * Binds the given label to the given position within the data.
+     */
+    public void bindData( int label, int offset ) {
+
+        this.labels[ label ] = offset;
+        this.data[ label ] = true;
+
+    }
+
+    /**
+     * Patches all displacements and addresses, given where the code and the data
+     * will be located in memory, and returns the machine code.
+     */
+    public byte[] link( long text, long data ) {
+
+        byte[] linked = Arrays.copyOf( this.code, this.size );
+
+        for ( int i = 0x0; i < this.fixupCount; i++ ) {
+
+            int label = this.targets[ i ];
+
+            if ( this.labels[ label ] == UNBOUND ) {
+
+                throw new IllegalStateException( String.format( "Label '%s' is not bound.", label ) );
+
+            }
+
+            long address = ( this.data[ label ] ? data : text ) + this.labels[ label ] + this.addends[ i ];
+
+            // Relative displacements are measured from the end of the instruction (that is, of the displacement)
+            long value = ( this.relative[ i ] ? address - ( text + this.fixups[ i ] + 0x4 ) : address );
+
+            if ( value != ( int ) value ) {
+
+                throw new IllegalStateException( String.format( "Address of label '%s' doesn't fit into 32 bits.", label ) );
+
+            }
+
+            X86Encoder.put32( linked, this.fixups[ i ], ( int ) value );
+
+        }
+
+        return linked;
+
+    }
+
+    /*
+    ------------------------------------------------------------------------------------
+    Instructions
+    ------------------------------------------------------------------------------------
+     */
+
+    /**
+     * add/sub/cmp byte [base+displacement], immediate
+     */
+    public void arithmeticByte( int extension, int base, int displacement, int immediate ) {
+
+        this.instructions++;
+
+        this.rex( false, 0x0, base, false );
+        this.emit( 0x80 );
+        this.memory( extension, base, displacement );
+        this.emit( immediate );
+
+    }
+
+    /**
+     * add/sub/cmp register, immediate (64 bit)
+     */
+    public void arithmetic( int extension, int register, int immediate ) {
+
+        this.instructions++;
+
+        this.rex( true, 0x0, register, false );
+
+        if ( immediate == ( byte ) immediate ) {
+
+            this.emit( 0x83 );
+            this.emit( 0xC0 | extension << 0x3 | register & 0x7 );
+            this.emit( immediate );
+
+        } else {
+
+            this.emit( 0x81 );
+            this.emit( 0xC0 | extension << 0x3 | register & 0x7 );
+            this.emit32( immediate );
+
+        }
+
+    }
+
+    /**
+     * mov byte [base+displacement], immediate
+     */
+    public void storeImmediate( int base, int displacement, int immediate ) {
+
+        this.instructions++;
+
+        this.rex( false, 0x0, base, false );
+        this.emit( 0xC6 );
+        this.memory( 0x0, base, displacement );
+        this.emit( immediate );
+
+    }
+
+    /**
+     * mov register8, [base+displacement]
+     */
+    public void loadByte( int register, int base, int displacement ) {
+
+        this.instructions++;
+
+        this.rex( false, register, base, true );
+        this.emit( 0x8A );
+        this.memory( register, base, displacement );
+
+    }
+
+    /**
+     * mov register8, [label+addend+index]
+     */
+    public void loadByte( int register, int label, int addend, int index ) {
+
+        this.instructions++;
+
+        this.rex( false, register, index, true );
+        this.emit( 0x8A );
+        this.absolute( register, index, label, addend );
+
+    }
+
+    /**
+     * Pads the code with nop until its size is a multiple of the given alignment
+     * (which aligns the position in memory as well, as long as the code starts at such a multiple).
+     */
+    public void align( int alignment ) {
+
+        while ( this.size % alignment != 0x0 ) {
+
+            this.emit( 0x90 );
+
+        }
+
+    }
+
+    /**
+     * inc qword [label+addend]
+     */
+    public void incrementQuad( int label, int addend ) {
+
+        this.instructions++;
+
+        this.rex( true, 0x0, 0x0, false );
+        this.emit( 0xFF );
+        this.absolute( 0x0, label, addend );
+
+    }
+
+    /**
+     * mov [base+displacement], register8
+     */
+    public void storeByte( int base, int displacement, int register ) {
+
+        this.instructions++;
+
+        this.rex( false, register, base, true );
+        this.emit( 0x88 );
+        this.memory( register, base, displacement );
+
+    }
+
+    /**
+     * mov [label+addend+index], register8
+     */
+    public void storeByte( int label, int addend, int index, int register ) {
+
+        this.instructions++;
+
+        this.rex( false, register, index, true );
+        this.emit( 0x88 );
+        this.absolute( register, index, label, addend );
+
+    }
+
+    /**
+     * add [base+displacement], register8
+     */
+    public void addByte( int base, int displacement, int register ) {
+
+        this.instructions++;
+
+        this.rex( false, register, base, true );
+        this.emit( 0x00 );
+        this.memory( register, base, displacement );
+
+    }
+
+    /**
+     * sub [base+displacement], register8
+     */
+    public void subByte( int base, int displacement, int register ) {
+
+        this.instructions++;
+
+        this.rex( false, register, base, true );
+        this.emit( 0x28 );
+        this.memory( register, base, displacement );
+
+    }
+
+    /**
+     * movzx register32, byte [base+displacement]
+     */
+    public void loadZeroExtended( int register, int base, int displacement ) {
+
+        this.instructions++;
+
+        this.rex( false, register, base, false );
+        this.emit( 0x0F );
+        this.emit( 0xB6 );
+        this.memory( register, base, displacement );
+
+    }
+
+    /**
+     * imul register32, register32, immediate
+     */
+    public void multiply( int register, int immediate ) {
+
+        this.instructions++;
+
+        this.rex( false, register, register, false );
+        this.emit( 0x69 );
+        this.emit( 0xC0 | ( register & 0x7 ) << 0x3 | register & 0x7 );
+        this.emit32( immediate );
+
+    }
+
+    /**
+     * add/sub/cmp register8, immediate
+     */
+    public void arithmeticByte( int extension, int register, int immediate ) {
+
+        this.instructions++;
+
+        this.rexBytes( 0x0, register );
+        this.emit( 0x80 );
+        this.emit( 0xC0 | extension << 0x3 | register & 0x7 );
+        this.emit( immediate );
+
+    }
+
+    /**
+     * mov register8, immediate
+     */
+    public void moveByte( int register, int immediate ) {
+
+        this.instructions++;
+
+        this.rexBytes( 0x0, register );
+        this.emit( 0xB0 | register & 0x7 );
+        this.emit( immediate );
+
+    }
+
+    /**
+     * add destination8, source8
+     */
+    public void addBytes( int destination, int source ) {
+
+        this.instructions++;
+
+        this.registersByte( 0x00, destination, source );
+
+    }
+
+    /**
+     * sub destination8, source8
+     */
+    public void subBytes( int destination, int source ) {
+
+        this.instructions++;
+
+        this.registersByte( 0x28, destination, source );
+
+    }
+
+    /**
+     * test register8, register8
+     */
+    public void testByte( int register ) {
+
+        this.instructions++;
+
+        this.registersByte( 0x84, register, register );
+
+    }
+
+    /**
+     * movzx destination32, source8
+     */
+    public void zeroExtend( int destination, int source ) {
+
+        this.instructions++;
+
+        this.rexBytes( destination, source );
+        this.emit( 0x0F );
+        this.emit( 0xB6 );
+        this.emit( 0xC0 | ( destination & 0x7 ) << 0x3 | source & 0x7 );
+
+    }
+
+    /**
+     * lea register, [base+displacement]
+     */
+    public void lea( int register, int base, int displacement ) {
+
+        this.instructions++;
+
+        this.rex( true, register, base, false );
+        this.emit( 0x8D );
+        this.memory( register, base, displacement );
+
+    }
+
+    /**
+     * mov register, immediate
+     * (using the shortest encoding: zero extended 32 bit, sign extended 32 bit or 64 bit)
+     */
+    public void move( int register, long immediate ) {
+
+        this.instructions++;
+
+        if ( immediate >= 0x0 && immediate <= 0xFFFFFFFFL ) {
+
+            this.rex( false, 0x0, register, false );
+            this.emit( 0xB8 | register & 0x7 );
+            this.emit32( ( int ) immediate );
+
+        } else if ( immediate == ( int ) immediate ) {
+
+            this.rex( true, 0x0, register, false );
+            this.emit( 0xC7 );
+            this.emit( 0xC0 | register & 0x7 );
+            this.emit32( ( int ) immediate );
+
+        } else {
+
+            this.rex( true, 0x0, register, false );
+            this.emit( 0xB8 | register & 0x7 );
+            this.emit32( ( int ) immediate );
+            this.emit32( ( int ) ( immediate >>> 0x20 ) );
+
+        }
+
+    }
+
+    /**
+     * mov register, label+addend
+     */
+    public void moveAddress( int register, int label, int addend ) {
+
+        this.instructions++;
+
+        this.rex( false, 0x0, register, false );
+        this.emit( 0xB8 | register & 0x7 );
+        this.fixup( label, addend, false );
+
+    }
+
+    /**
+     * mov destination, source (64 bit)
+     */
+    public void moveRegister( int destination, int source ) {
+
+        this.instructions++;
+
+        this.registers( 0x89, destination, source );
+
+    }
+
+    /**
+     * add destination, source (64 bit)
+     */
+    public void add( int destination, int source ) {
+
+        this.instructions++;
+
+        this.registers( 0x01, destination, source );
+
+    }
+
+    /**
+     * sub destination, source (64 bit)
+     */
+    public void sub( int destination, int source ) {
+
+        this.instructions++;
+
+        this.registers( 0x29, destination, source );
+
+    }
+
+    /**
+     * cmp destination, source (64 bit)
+     */
+    public void compare( int destination, int source ) {
+
+        this.instructions++;
+
+        this.registers( 0x39, destination, source );
+
+    }
+
+    /**
+     * test register, register (64 bit)
+     */
+    public void test( int register ) {
+
+        this.instructions++;
+
+        this.registers( 0x85, register, register );
+
+    }
+
+    /**
+     * xor register32, register32 (which clears the whole register)
+     */
+    public void clear( int register ) {
+
+        this.instructions++;
+
+        this.rex( false, register, register, false );
+        this.emit( 0x31 );
+        this.emit( 0xC0 | ( register & 0x7 ) << 0x3 | register & 0x7 );
+
+    }
+
+    /**
+     * inc register (64 bit)
+     */
+    public void increment( int register ) {
+
+        this.instructions++;
+
+        this.rex( true, 0x0, register, false );
+        this.emit( 0xFF );
+        this.emit( 0xC0 | register & 0x7 );
+
+    }
+
+    public void push( int register ) {
+
+        this.instructions++;
+
+        this.rex( false, 0x0, register, false );
+        this.emit( 0x50 | register & 0x7 );
+
+    }
+
+    /**
+     * push immediate (sign extended to 64 bit)
+     */
+    public void pushImmediate( int immediate ) {
+
+        this.instructions++;
+
+        this.emit( 0x68 );
+        this.emit32( immediate );
+
+    }
+
+    public void pop( int register ) {
+
+        this.instructions++;
+
+        this.rex( false, 0x0, register, false );
+        this.emit( 0x58 | register & 0x7 );
+
+    }
+
+    public void jump( int label ) {
+
+        this.instructions++;
+
+        this.emit( 0xE9 );
+        this.fixup( label, 0x0, true );
+
+    }
+
+    public void jump( int condition, int label ) {
+
+        this.instructions++;
+
+        this.emit( 0x0F );
+        this.emit( 0x80 | condition );
+        this.fixup( label, 0x0, true );
+
+    }
+
+    public void call( int label ) {
+
+        this.instructions++;
+
+        this.emit( 0xE8 );
+        this.fixup( label, 0x0, true );
+
+    }
+
+    public void ret() {
+
+        this.instructions++;
+
+        this.emit( 0xC3 );
+
+    }
+
+    public void syscall() {
+
+        this.instructions++;
+        this.syscalls++;
+
+        this.emit( 0x0F );
+        this.emit( 0x05 );
+
+    }
+
+    /**
+     * and destination, source (64 bit)
+     */
+    public void and( int destination, int source ) {
+
+        this.instructions++;
+
+        this.registers( 0x21, destination, source );
+
+    }
+
+    /**
+     * shl register, cl (64 bit)
+     */
+    public void shiftLeft( int register ) {
+
+        this.instructions++;
+
+        this.rex( true, 0x0, register, false );
+        this.emit( 0xD3 );
+        this.emit( 0xE0 | register & 0x7 );
+
+    }
+
+    /**
+     * dec register (64 bit)
+     */
+    public void decrement( int register ) {
+
+        this.instructions++;
+
+        this.rex( true, 0x0, register, false );
+        this.emit( 0xFF );
+        this.emit( 0xC8 | register & 0x7 );
+
+    }
+
+    /**
+     * bsf/bsr register, register (64 bit), that is, the position of its lowest (or highest) set bit
+     */
+    public void bitScan( int register, boolean reverse ) {
+
+        this.instructions++;
+
+        this.rex( true, register, register, false );
+        this.emit( 0x0F );
+        this.emit( reverse ? 0xBD : 0xBC );
+        this.emit( 0xC0 | ( register & 0x7 ) << 0x3 | register & 0x7 );
+
+    }
+
+    /**
+     * cmp byte [label+addend], immediate
+     */
+    public void compareByte( int label, int addend, int immediate ) {
+
+        this.instructions++;
+
+        this.emit( 0x80 );
+        this.absolute( CMP, label, addend );
+        this.emit( immediate );
+
+    }
+
+    /**
+     * mov byte [label+addend], immediate
+     */
+    public void setByte( int label, int addend, int immediate ) {
+
+        this.instructions++;
+
+        this.emit( 0xC6 );
+        this.absolute( 0x0, label, addend );
+        this.emit( immediate );
+
+    }
+
+    public void cpuid() {
+
+        this.instructions++;
+
+        this.emit( 0x0F );
+        this.emit( 0xA2 );
+
+    }
+
+    public void xgetbv() {
+
+        this.instructions++;
+
+        this.emit( 0x0F );
+        this.emit( 0x01 );
+        this.emit( 0xD0 );
+
+    }
+
+    /**
+     * pxor vector, vector (or vpxor vector, vector, vector if it is wide)
+     */
+    public void clearVector( int vector, boolean wide ) {
+
+        this.instructions++;
+
+        this.vector( 0xEF, vector, wide );
+        this.emit( 0xC0 | vector << 0x3 | vector );
+
+    }
+
+    /**
+     * movdqa vector, [base] and pcmpeqb vector, other
+     * (or vpcmpeqb vector, other, [base] if it is wide), that is, compares the bytes at base with those of the other vector
+     */
+    public void compareVector( int vector, int other, int base, boolean wide ) {
+
+        this.instructions += ( wide ? 0x1 : 0x2 );
+
+        if ( wide ) {
+
+            this.vector( 0x74, other, true );
+            this.memory( vector, base, 0x0 );
+
+        } else {
+
+            this.vector( 0x6F, 0x0, false );
+            this.memory( vector, base, 0x0 );
+            this.vector( 0x74, 0x0, false );
+            this.emit( 0xC0 | vector << 0x3 | other );
+
+        }
+
+    }
+
+    /**
+     * pmovmskb register32, vector (or vpmovmskb if it is wide), that is, the most significant bit of each byte
+     */
+    public void maskVector( int register, int vector, boolean wide ) {
+
+        this.instructions++;
+
+        this.vector( 0xD7, 0x0, wide );
+        this.emit( 0xC0 | register << 0x3 | vector );
+
+    }
+
+    /**
+     * vzeroupper (which avoids the penalty of mixing wide and narrow vector instructions afterwards)
+     */
+    public void zeroUpper() {
+
+        this.instructions++;
+
+        this.emit( 0xC5 );
+        this.emit( 0xF8 );
+        this.emit( 0x77 );
+
+    }
+
+    /**
+     * movdqu vector, [base+displacement] (or movq if the width is 8 bytes)
+     */
+    public void loadVector( int vector, int base, int displacement, int width ) {
+
+        this.instructions++;
+
+        this.packed( 0xF3, ( width == 0x8 ? 0x7E : 0x6F ), vector, base );
+        this.memory( vector, base, displacement );
+
+    }
+
+    /**
+     * movdqu vector, [label+addend] (or movq if the width is 8 bytes)
+     */
+    public void loadConstant( int vector, int label, int addend, int width ) {
+
+        this.instructions++;
+
+        this.packed( 0xF3, ( width == 0x8 ? 0x7E : 0x6F ), vector, 0x0 );
+        this.absolute( vector, label, addend );
+
+    }
+
+    /**
+     * movdqu [base+displacement], vector (or movq if the width is 8 bytes)
+     */
+    public void storeVector( int base, int displacement, int vector, int width ) {
+
+        this.instructions++;
+
+        this.packed( ( width == 0x8 ? 0x66 : 0xF3 ), ( width == 0x8 ? 0xD6 : 0x7F ), vector, base );
+        this.memory( vector, base, displacement );
+
+    }
+
+    /**
+     * pand destination, source
+     */
+    public void andVectors( int destination, int source ) {
+
+        this.instructions++;
+
+        this.vector( 0xDB, 0x0, false );
+        this.emit( 0xC0 | destination << 0x3 | source );
+
+    }
+
+    /**
+     * paddb destination, source
+     */
+    public void addVectors( int destination, int source ) {
+
+        this.instructions++;
+
+        this.vector( 0xFC, 0x0, false );
+        this.emit( 0xC0 | destination << 0x3 | source );
+
+    }
+
+    /**
+     * mov qword [base+displacement], register
+     */
+    public void storeQuad( int base, int displacement, int register ) {
+
+        this.instructions++;
+
+        this.rex( true, register, base, false );
+        this.emit( 0x89 );
+        this.memory( register, base, displacement );
+
+    }
+
+    /**
+     * rep movsb
+     */
+    public void copy() {
+
+        this.instructions++;
+
+        this.emit( 0xF3 );
+        this.emit( 0xA4 );
+
+    }
+
+    /*
+    ------------------------------------------------------------------------------------
+    Encoding
+    ------------------------------------------------------------------------------------
+     */
+
+    /*
+    Emits the REX prefix if it is necessary, that is, if the operand is 64 bit wide or
+    registers R8 to R15 are used. Byte registers SPL to DIL need a prefix, too
+    (they would otherwise refer to AH to BH).
+     */
+    private void rex( boolean wide, int register, int base, boolean bytes ) {
+
+        int rex = ( wide ? 0x8 : 0x0 ) | ( register >= 0x8 ? 0x4 : 0x0 ) | ( base >= 0x8 ? 0x1 : 0x0 );
+
+        if ( rex != 0x0 || ( bytes && register >= RSP && register <= RDI ) ) {
+
+            this.emit( 0x40 | rex );
+
+        }
+
+    }
+
+    /*
+    Instructions whose both operands are byte registers need a REX prefix
+    if either of them is one of SPL to DIL.
+     */
+    private void rexBytes( int register, int base ) {
+
+        int rex = ( register >= 0x8 ? 0x4 : 0x0 ) | ( base >= 0x8 ? 0x1 : 0x0 );
+
+        if ( rex != 0x0 || ( register >= RSP && register <= RDI ) || ( base >= RSP && base <= RDI ) ) {
+
+            this.emit( 0x40 | rex );
+
+        }
+
+    }
+
+    private void registersByte( int opcode, int destination, int source ) {
+
+        this.rexBytes( source, destination );
+        this.emit( opcode );
+        this.emit( 0xC0 | ( source & 0x7 ) << 0x3 | destination & 0x7 );
+
+    }
+
+    private void registers( int opcode, int destination, int source ) {
+
+        this.rex( true, source, destination, false );
+        this.emit( opcode );
+        this.emit( 0xC0 | ( source & 0x7 ) << 0x3 | destination & 0x7 );
+
+    }
+
+    /*
+    Emits the prefixes and the opcode of a vector instruction (operating on packed bytes): Narrow ones are
+    prefixed by 66 0F, wide ones by the two byte VEX prefix, which also holds their (first) source operand.
+     */
+    private void vector( int opcode, int source, boolean wide ) {
+
+        if ( wide ) {
+
+            this.emit( 0xC5 );
+            this.emit( 0x80 | ( ~source & 0xF ) << 0x3 | 0x4 | 0x1 );
+
+        } else {
+
+            this.emit( 0x66 );
+            this.emit( 0x0F );
+
+        }
+
+        this.emit( opcode );
+
+    }
+
+    /*
+    Emits the prefixes and the opcode of a vector instruction that moves packed bytes from or to memory,
+    whose mandatory prefix (F3 or 66) precedes the REX prefix (if the base requires one).
+     */
+    private void packed( int prefix, int opcode, int vector, int base ) {
+
+        this.emit( prefix );
+        this.rex( false, vector, base, false );
+        this.emit( 0x0F );
+        this.emit( opcode );
+
+    }
+
+    /*
+    Encodes the memory operand [base+displacement] (ModR/M, SIB and displacement) using the
+    shortest displacement; RSP and R12 as base require a SIB byte, RBP and R13 a displacement.
+     */
+    private void memory( int register, int base, int displacement ) {
+
+        int mode;
+
+        if ( displacement == 0x0 && ( base & 0x7 ) != RBP ) {
+
+            mode = 0x0;
+
+        } else if ( displacement == ( byte ) displacement ) {
+
+            mode = 0x1;
+
+        } else {
+
+            mode = 0x2;
+
+        }
+
+        this.emit( mode << 0x6 | ( register & 0x7 ) << 0x3 | base & 0x7 );
+
+        if ( ( base & 0x7 ) == RSP ) {
+
+            this.emit( 0x24 );
+
+        }
+
+        if ( mode == 0x1 ) {
+
+            this.emit( displacement );
+
+        } else if ( mode == 0x2 ) {
+
+            this.emit32( displacement );
+
+        }
+
+    }
+
+    /*
+    Encodes the memory operand [label+addend+index], whose displacement is an absolute address.
+     */
+    private void absolute( int register, int index, int label, int addend ) {
+
+        this.emit( 0x80 | ( register & 0x7 ) << 0x3 | index & 0x7 );
+
+        if ( ( index & 0x7 ) == RSP ) {
+
+            this.emit( 0x24 );
+
+        }
+
+        this.fixup( label, addend, false );
+
+    }
+
+    /*
+    Encodes the memory operand [label+addend] (without any register), whose displacement is an absolute address.
+     */
+    private void absolute( int register, int label, int addend ) {
+
+        this.emit( 0x04 | ( register & 0x7 ) << 0x3 );
+        this.emit( 0x25 );
+        this.fixup( label, addend, false );
+
+    }
+
+    private void fixup( int label, int addend, boolean relative ) {
+
+        if ( this.fixupCount == this.fixups.length ) {
+
+            this.fixups = Arrays.copyOf( this.fixups, this.fixupCount * 0x2 );
+            this.targets = Arrays.copyOf( this.targets, this.fixupCount * 0x2 );
+            this.addends = Arrays.copyOf( this.addends, this.fixupCount * 0x2 );
+            this.relative = Arrays.copyOf( this.relative, this.fixupCount * 0x2 );
+
+        }
+
+        this.fixups[ this.fixupCount ] = this.size;
+        this.targets[ this.fixupCount ] = label;
+        this.addends[ this.fixupCount ] = addend;
+        this.relative[ this.fixupCount++ ] = relative;
+
+        this.emit32( 0x0 );
+
+    }
+
+    private void emit( int value ) {
+
+        if ( this.size == this.code.length ) {
+
+            this.code = Arrays.copyOf( this.code, this.size * 0x2 );
+
+        }
+
+        this.code[ this.size++ ] = ( byte ) value;
+
+    }
+
+    private void emit32( int value ) {
+
+        this.emit( value );
+        this.emit( value >>> 0x8 );
+        this.emit( value >>> 0x10 );
+        this.emit( value >>> 0x18 );
+
+    }
+
+    private static void put32( byte[] bytes, int position, int value ) {
+
+        bytes[ position ] = ( byte ) value;
+        bytes[ position + 0x1 ] = ( byte ) ( value >>> 0x8 );
+        bytes[ position + 0x2 ] = ( byte ) ( value >>> 0x10 );
+        bytes[ position + 0x3 ] = ( byte ) ( value >>> 0x18 );
+
+    }
+
+}
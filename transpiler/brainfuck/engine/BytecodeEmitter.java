@@ -0,0 +1,467 @@
+package transpiler.brainfuck.engine;
+
+import transpiler.brainfuck.ir.Operation;
+import transpiler.brainfuck.ir.Program;
+
+import java.util.Arrays;
+
+import static transpiler.brainfuck.engine.BytecodeEncoder.*;
+
+/**
+ * The emitter translates a program in the intermediate representation into
+ * a class of JVM bytecode, which is the counterpart of the NasmEmitter:
+ *
+ *      -> the tape is a byte array and the pointer is an index into it
+ *      -> loops are branches within the code
+ *      -> input and output are buffered by a Terminal
+ *
+ * Each method takes the tape, the terminal and the pointer and returns the pointer,
+ * which are the only state of the program; the entry point is the method 'run'.
+ *
+ * A method may consist of at most 64 kilobytes of code, and the JIT compiler doesn't compile
+ * methods of more than 8000 bytes at all. Hence programs are split into methods which stay
+ * well below that: a loop that would be too large is moved into a method of its own,
+ * and a sequence of instructions that would be too large is split into two halves
+ * (each of which might be split again), which are then called one after another.
+ */
+class BytecodeEmitter {
+
+    static final String NAME = "transpiler/brainfuck/engine/Compiled";
+    static final String ENTRY = "run";
+
+    private static final String TERMINAL = "transpiler/brainfuck/engine/Terminal";
+    private static final String DESCRIPTOR = "([BL" + TERMINAL + ";I)I";
+
+    // The locals of each method (which are just its arguments)
+    private static final int TAPE = 0x0;
+    private static final int IO = 0x1;
+    private static final int POINTER = 0x2;
+
+    /*
+    Each instruction is encoded into at most this amount of bytes (the one that takes
+    the most is a multiplication whose offset and factor are both large constants),
+    which bounds the size of a method by the amount of instructions it contains.
+     */
+    private static final int INSTRUCTION_SIZE = 0x18;
+    private static final int METHOD_SIZE = 0x1800;
+
+    private final Program program;
+    private final ClassFile file;
+
+    // The size of each loop (held at the index of its beginning) if it isn't moved into a method of its own
+    private final int[] sizes;
+    private int methods = 0x0;
+
+    private BytecodeEmitter( Program program ) {
+
+        this.program = program;
+        this.file = new ClassFile( NAME );
+        this.sizes = new int[ program.size() ];
+
+        // The sizes of all loops that are open, the outermost at the bottom
+        int[] open = new int[ 0x10 ];
+        int depth = 0x0;
+
+        for ( int i = 0x0; i < program.size(); i++ ) {
+
+            if ( program.operation( i ) == Operation.OPEN ) {
+
+                if ( depth == open.length ) {
+
+                    open = Arrays.copyOf( open, depth * 0x2 );
+
+                }
+
+                open[ depth++ ] = 0x2 * INSTRUCTION_SIZE;
+
+            } else if ( program.operation( i ) == Operation.CLOSE ) {
+
+                int start = program.partner( i );
+                this.sizes[ start ] = open[ --depth ];
+
+                if ( depth > 0x0 ) {
+
+                    open[ depth - 0x1 ] += this.size( start );
+
+                }
+
+            } else if ( depth > 0x0 ) {
+
+                open[ depth - 0x1 ] += this.size( i );
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Returns the class file of the given program.
+     */
+    static byte[] emit( Program program ) {
+
+        BytecodeEmitter emitter = new BytecodeEmitter( program );
+        emitter.method( 0x0, program.size(), false );
+
+        return emitter.file.toBytes();
+
+    }
+
+    /*
+    Creates a method that either consists of the given sequence of instructions or
+    (if the sequence is a loop which has been moved into a method of its own) of the loop.
+     */
+    private String method( int from, int to, boolean loop ) {
+
+        String name = ( this.methods == 0x0 ? ENTRY : "part_" + this.methods );
+        this.methods++;
+
+        BytecodeEncoder code = new BytecodeEncoder( this.file, 0x3 );
+
+        if ( loop ) {
+
+            int body = code.label();
+            int exit = code.label();
+
+            this.cell( 0x0, code );
+            code.branch( IFEQ, exit );
+            code.bind( body );
+            this.sequence( from + 0x1, to - 0x1, code );
+            this.cell( 0x0, code );
+            code.branch( IFNE, body );
+            code.bind( exit );
+
+        } else {
+
+            this.sequence( from, to, code );
+
+        }
+
+        code.local( ILOAD, POINTER );
+        code.op( IRETURN );
+
+        this.file.define( ClassFile.ACC_STATIC, name, DESCRIPTOR, code );
+        return name;
+
+    }
+
+    /*
+    Emits the given sequence of instructions, which neither closes a loop it hasn't opened
+    nor opens one it doesn't close, or calls the methods it has been split into.
+     */
+    private void sequence( int from, int to, BytecodeEncoder code ) {
+
+        long total = 0x0;
+
+        for ( int i = from; i < to; i = this.next( i ) ) {
+
+            total += this.size( i );
+
+        }
+
+        if ( total <= METHOD_SIZE ) {
+
+            this.inline( from, to, code );
+            return;
+
+        }
+
+        /*
+        Split after the instruction (or loop) that reaches the half of the sequence,
+        unless that is the last one (which then is as large as the others together).
+         */
+        long half = 0x0;
+        int previous = from;
+        int middle = from;
+
+        while ( half * 0x2 < total ) {
+
+            half += this.size( middle );
+            previous = middle;
+            middle = this.next( middle );
+
+        }
+
+        if ( middle == to ) {
+
+            middle = previous;
+
+        }
+
+        this.call( this.method( from, middle, false ), code );
+        this.call( this.method( middle, to, false ), code );
+
+    }
+
+    /*
+    Emits the given sequence of instructions into the current method, except for
+    the loops that are too large, which are moved into methods of their own.
+
+    In contrast to the NasmEmitter, the condition of a loop is checked once before it
+    and then at its bottom, so that each iteration only takes one branch.
+     */
+    private void inline( int from, int to, BytecodeEncoder code ) {
+
+        int[] loops = new int[ 0x20 ];
+        int depth = 0x0;
+        int index = from;
+
+        while ( index < to ) {
+
+            switch ( this.program.operation( index ) ) {
+
+                case OPEN -> {
+
+                    if ( this.sizes[ index ] > METHOD_SIZE ) {
+
+                        this.call( this.method( index, this.program.partner( index ) + 0x1, true ), code );
+                        index = this.program.partner( index ) + 0x1;
+                        continue;
+
+                    }
+
+                    if ( depth == loops.length ) {
+
+                        loops = Arrays.copyOf( loops, depth * 0x2 );
+
+                    }
+
+                    int body = code.label();
+                    int exit = code.label();
+
+                    this.cell( 0x0, code );
+                    code.branch( IFEQ, exit );
+                    code.bind( body );
+
+                    loops[ depth++ ] = body;
+                    loops[ depth++ ] = exit;
+
+                }
+
+                case CLOSE -> {
+
+                    int exit = loops[ --depth ];
+                    int body = loops[ --depth ];
+
+                    this.cell( 0x0, code );
+                    code.branch( IFNE, body );
+                    code.bind( exit );
+
+                }
+
+                case MULTIPLY -> {
+
+                    index = this.multiplications( index, to, code );
+                    continue;
+
+                }
+
+                default -> this.emit( index, code );
+
+            }
+
+            index++;
+
+        }
+
+    }
+
+    /*
+    Emits the multiplications that start at the given index (up to the given end at most),
+    which are skipped as a whole if their origin is zero (see NasmEmitter.multiplications), so that
+    they don't leave the tape when the loop they replace wouldn't have been entered at all;
+    returns the index that follows them.
+     */
+    private int multiplications( int index, int to, BytecodeEncoder code ) {
+
+        int end = Math.min( this.program.endOfMultiplications( index ), to );
+        int skip = code.label();
+
+        this.cell( this.program.origin( index ), code );
+        code.branch( IFEQ, skip );
+
+        for ( int i = index; i < end; i++ ) {
+
+            this.emit( i, code );
+
+        }
+
+        code.bind( skip );
+
+        return end;
+
+    }
+
+    /**
+     * Emits a single instruction that doesn't change the control flow.
+     */
+    private void emit( int index, BytecodeEncoder code ) {
+
+        int value = this.program.value( index );
+        int offset = this.program.offset( index );
+
+        switch ( this.program.operation( index ) ) {
+
+            case ADD -> {
+
+                if ( ( byte ) value != 0x0 ) {
+
+                    this.address( offset, code );
+                    code.op( DUP2 );
+                    code.op( BALOAD );
+                    code.push( ( byte ) value );
+                    code.op( IADD );
+                    code.op( BASTORE );
+
+                }
+
+            }
+
+            case MOVE -> {
+
+                if ( value != 0x0 ) {
+
+                    code.increment( POINTER, value );
+
+                }
+
+            }
+
+            case SET -> {
+
+                this.address( offset, code );
+                code.push( ( byte ) value );
+                code.op( BASTORE );
+
+            }
+
+            case MULTIPLY -> {
+
+                this.address( offset, code );
+                code.op( DUP2 );
+                code.op( BALOAD );
+                this.cell( this.program.origin( index ), code );
+
+                if ( value != 0x1 ) {
+
+                    code.push( value );
+                    code.op( IMUL );
+
+                }
+
+                code.op( IADD );
+                code.op( BASTORE );
+
+            }
+
+            /*
+            The condition is only checked at the bottom, hence the pointer
+            initially is moved one stride less (see NasmEmitter).
+             */
+            case SCAN -> {
+
+                if ( offset - value != 0x0 ) {
+
+                    code.increment( POINTER, offset - value );
+
+                }
+
+                int scan = code.label();
+                code.bind( scan );
+                code.increment( POINTER, value );
+                this.cell( 0x0, code );
+                code.branch( IFNE, scan );
+
+            }
+
+            case OUTPUT -> {
+
+                code.local( ALOAD, IO );
+                this.cell( offset, code );
+                code.invoke( INVOKEVIRTUAL, TERMINAL, "write", "(I)V" );
+
+            }
+
+            case INPUT -> {
+
+                this.address( offset, code );
+                code.local( ALOAD, IO );
+                this.cell( offset, code );
+                code.invoke( INVOKEVIRTUAL, TERMINAL, "read", "(I)I" );
+                code.op( BASTORE );
+
+            }
+
+        }
+
+    }
+
+    /*
+    Pushes the tape and the index of the cell at the given offset relative to the current cell.
+     */
+    private void address( int offset, BytecodeEncoder code ) {
+
+        code.local( ALOAD, TAPE );
+        code.local( ILOAD, POINTER );
+
+        if ( offset != 0x0 ) {
+
+            code.push( offset );
+            code.op( IADD );
+
+        }
+
+    }
+
+    /*
+    Pushes the value of the cell at the given offset relative to the current cell.
+     */
+    private void cell( int offset, BytecodeEncoder code ) {
+
+        this.address( offset, code );
+        code.op( BALOAD );
+
+    }
+
+    private void call( String method, BytecodeEncoder code ) {
+
+        code.local( ALOAD, TAPE );
+        code.local( ALOAD, IO );
+        code.local( ILOAD, POINTER );
+        code.invoke( INVOKESTATIC, NAME, method, DESCRIPTOR );
+        code.local( ISTORE, POINTER );
+
+    }
+
+    /*
+    The size of the instruction (or loop) at the given index.
+     */
+    private int size( int index ) {
+
+        if ( this.program.operation( index ) == Operation.OPEN && this.sizes[ index ] <= METHOD_SIZE ) {
+
+            return this.sizes[ index ];
+
+        }
+
+        // A multiplication might be preceded by the check of its origin (see multiplications)
+        if ( this.program.operation( index ) == Operation.MULTIPLY ) {
+
+            return 0x2 * INSTRUCTION_SIZE;
+
+        }
+
+        return INSTRUCTION_SIZE;
+
+    }
+
+    /*
+    The index of the instruction that follows the instruction (or loop) at the given index.
+     */
+    private int next( int index ) {
+
+        return ( this.program.operation( index ) == Operation.OPEN ? this.program.partner( index ) + 0x1 : index + 0x1 );
+
+    }
+
+}
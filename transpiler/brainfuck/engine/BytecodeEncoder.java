@@ -0,0 +1,379 @@
+package transpiler.brainfuck.engine;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The encoder translates the (small) subset of JVM instructions the compiled programs
+ * consist of into the code of one method.
+ *
+ * Branches refer to labels which don't have to be bound yet (e.g. the end of a loop);
+ * their 16 bit offsets are written as zero first and back-patched once the label is bound.
+ * Each bound label is a branch target, hence it also marks a frame of the stack map.
+ *
+ * Locals are given by their index; the methods never use more locals than their arguments,
+ * and their operand stacks never hold more than a few values.
+ */
+class BytecodeEncoder {
+
+    static final int ICONST_0       = 0x3;
+    static final int BIPUSH         = 0x10;
+    static final int SIPUSH         = 0x11;
+    static final int LDC            = 0x12;
+    static final int LDC_W          = 0x13;
+    static final int ILOAD          = 0x15;
+    static final int ALOAD          = 0x19;
+    static final int BALOAD         = 0x33;
+    static final int ISTORE         = 0x36;
+    static final int BASTORE        = 0x54;
+    static final int DUP2           = 0x5C;
+    static final int IADD           = 0x60;
+    static final int IMUL           = 0x68;
+    static final int IINC           = 0x84;
+    static final int IFEQ           = 0x99;
+    static final int IFNE           = 0x9A;
+    static final int IRETURN        = 0xAC;
+    static final int INVOKEVIRTUAL  = 0xB6;
+    static final int INVOKESTATIC   = 0xB8;
+    static final int WIDE           = 0xC4;
+
+    private static final int MAX_STACK = 0x8;
+    private static final int UNBOUND = -0x1;
+
+    private final ClassFile file;
+    private final int locals;
+
+    private byte[] code = new byte[ 0x200 ];
+    private int size = 0x0;
+
+    // Positions within the code that labels are bound to
+    private int[] labels = new int[ 0x10 ];
+    private int count = 0x0;
+
+    // Fixups: where the branch instruction starts and which label it refers to
+    private int[] fixups = new int[ 0x10 ];
+    private int[] targets = new int[ 0x10 ];
+    private int fixupCount = 0x0;
+
+    BytecodeEncoder( ClassFile file, int locals ) {
+
+        this.file = file;
+        this.locals = locals;
+
+    }
+
+    int size() {
+
+        return this.size;
+
+    }
+
+    int maxStack() {
+
+        return MAX_STACK;
+
+    }
+
+    int maxLocals() {
+
+        return this.locals;
+
+    }
+
+    /**
+     * Creates a new label that isn't bound yet.
+     */
+    int label() {
+
+        if ( this.count == this.labels.length ) {
+
+            this.labels = Arrays.copyOf( this.labels, this.count * 0x2 );
+
+        }
+
+        this.labels[ this.count ] = UNBOUND;
+        return this.count++;
+
+    }
+
+    /**
+     * Binds the given label to the current position within the code
+     * and patches the branches that refer to it so far.
+     */
+    void bind( int label ) {
+
+        this.labels[ label ] = this.size;
+
+        for ( int i = 0x0; i < this.fixupCount; i++ ) {
+
+            if ( this.targets[ i ] == label ) {
+
+                this.patch( this.fixups[ i ], this.size );
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Writes the code (whose labels all have to be bound) to the given stream.
+     */
+    void writeTo( DataOutputStream stream ) throws IOException {
+
+        for ( int i = 0x0; i < this.fixupCount; i++ ) {
+
+            if ( this.labels[ this.targets[ i ] ] == UNBOUND ) {
+
+                throw new IllegalStateException( String.format( "Label '%s' is not bound.", this.targets[ i ] ) );
+
+            }
+
+        }
+
+        stream.write( this.code, 0x0, this.size );
+
+    }
+
+    /**
+     * Encodes the stack map, that is, one frame per position a label is bound to.
+     * Frames are encoded by the distance to the previous one; since they all equal
+     * the initial frame, each of them is a 'same_frame' (which takes one byte only
+     * unless the distance exceeds 63 bytes).
+     */
+    byte[] frames() {
+
+        int[] positions = Arrays.copyOf( this.labels, this.count );
+        Arrays.sort( positions );
+
+        byte[] frames = new byte[ 0x2 + positions.length * 0x3 ];
+        int length = 0x2;
+        int entries = 0x0;
+        int previous = -0x1;
+
+        for ( int position : positions ) {
+
+            if ( position == UNBOUND || position == previous ) {
+
+                continue;
+
+            }
+
+            int delta = position - previous - 0x1;
+
+            if ( delta < 0x40 ) {
+
+                frames[ length++ ] = ( byte ) delta;
+
+            } else {
+
+                frames[ length++ ] = ( byte ) 0xFB;
+                frames[ length++ ] = ( byte ) ( delta >> 0x8 );
+                frames[ length++ ] = ( byte ) delta;
+
+            }
+
+            previous = position;
+            entries++;
+
+        }
+
+        if ( entries == 0x0 ) {
+
+            return new byte[ 0x0 ];
+
+        }
+
+        frames[ 0x0 ] = ( byte ) ( entries >> 0x8 );
+        frames[ 0x1 ] = ( byte ) entries;
+
+        return Arrays.copyOf( frames, length );
+
+    }
+
+    /*
+    ------------------------------------------------------------------------------------
+    Instructions
+    ------------------------------------------------------------------------------------
+     */
+
+    /**
+     * An instruction without operands (e.g. iadd).
+     */
+    void op( int opcode ) {
+
+        this.emit( opcode );
+
+    }
+
+    /**
+     * Pushes the given constant, as short as possible.
+     */
+    void push( int value ) {
+
+        if ( value >= -0x1 && value <= 0x5 ) {
+
+            this.emit( ICONST_0 + value );
+
+        } else if ( value == ( byte ) value ) {
+
+            this.emit( BIPUSH );
+            this.emit( value );
+
+        } else if ( value == ( short ) value ) {
+
+            this.emit( SIPUSH );
+            this.emit16( value );
+
+        } else {
+
+            int index = this.file.integer( value );
+
+            if ( index < 0x100 ) {
+
+                this.emit( LDC );
+                this.emit( index );
+
+            } else {
+
+                this.emit( LDC_W );
+                this.emit16( index );
+
+            }
+
+        }
+
+    }
+
+    /**
+     * iload/aload/istore local (the first four locals have shorter forms)
+     */
+    void local( int opcode, int local ) {
+
+        if ( local < 0x4 ) {
+
+            // iload_0 = 0x1A, aload_0 = 0x2A, istore_0 = 0x3B
+            this.emit( switch ( opcode ) {
+
+                case ILOAD -> 0x1A;
+                case ALOAD -> 0x2A;
+                default -> 0x3B;
+
+            } + local );
+
+        } else {
+
+            this.emit( opcode );
+            this.emit( local );
+
+        }
+
+    }
+
+    /**
+     * Adds the given value to the given (integer) local.
+     */
+    void increment( int local, int value ) {
+
+        if ( value == ( byte ) value ) {
+
+            this.emit( IINC );
+            this.emit( local );
+            this.emit( value );
+
+        } else if ( value == ( short ) value ) {
+
+            this.emit( WIDE );
+            this.emit( IINC );
+            this.emit16( local );
+            this.emit16( value );
+
+        } else {
+
+            this.local( ILOAD, local );
+            this.push( value );
+            this.emit( IADD );
+            this.local( ISTORE, local );
+
+        }
+
+    }
+
+    /**
+     * if<cond> label (comparing the topmost value with zero)
+     */
+    void branch( int opcode, int label ) {
+
+        if ( this.fixupCount == this.fixups.length ) {
+
+            this.fixups = Arrays.copyOf( this.fixups, this.fixupCount * 0x2 );
+            this.targets = Arrays.copyOf( this.targets, this.fixupCount * 0x2 );
+
+        }
+
+        int position = this.size;
+        this.emit( opcode );
+        this.emit16( 0x0 );
+
+        if ( this.labels[ label ] != UNBOUND ) {
+
+            this.patch( position, this.labels[ label ] );
+
+        } else {
+
+            this.fixups[ this.fixupCount ] = position;
+            this.targets[ this.fixupCount++ ] = label;
+
+        }
+
+    }
+
+    /**
+     * invokestatic/invokevirtual method
+     */
+    void invoke( int opcode, String owner, String name, String descriptor ) {
+
+        this.emit( opcode );
+        this.emit16( this.file.method( owner, name, descriptor ) );
+
+    }
+
+    /*
+    Offsets are relative to the start of the branch instruction.
+     */
+    private void patch( int position, int target ) {
+
+        int offset = target - position;
+
+        if ( offset != ( short ) offset ) {
+
+            throw new IllegalStateException( "Branch offset doesn't fit into 16 bits." );
+
+        }
+
+        this.code[ position + 0x1 ] = ( byte ) ( offset >> 0x8 );
+        this.code[ position + 0x2 ] = ( byte ) offset;
+
+    }
+
+    private void emit( int value ) {
+
+        if ( this.size == this.code.length ) {
+
+            this.code = Arrays.copyOf( this.code, this.size * 0x2 );
+
+        }
+
+        this.code[ this.size++ ] = ( byte ) value;
+
+    }
+
+    private void emit16( int value ) {
+
+        this.emit( value >> 0x8 );
+        this.emit( value );
+
+    }
+
+}
@@ -0,0 +1,243 @@
+package transpiler.brainfuck.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A class file is assembled from its constant pool and its methods,
+ * which is just enough of the JVM class file format (see chapter four of the
+ * Java Virtual Machine Specification) to describe a class without any fields
+ * whose static methods have been encoded by a BytecodeEncoder.
+ *
+ * Constants are added on demand and only once, hence they can be referred to
+ * by their index as often as needed.
+ */
+class ClassFile {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION = 0x3D;
+
+    private static final int UTF8 = 0x1;
+    private static final int INTEGER = 0x3;
+    private static final int CLASS = 0x7;
+    private static final int METHOD = 0xA;
+    private static final int NAME_AND_TYPE = 0xC;
+
+    static final int ACC_STATIC = 0x8;
+    private static final int ACC_FINAL = 0x10;
+    private static final int ACC_SUPER = 0x20;
+
+    /*
+    Neither the constant pool nor the list of methods may hold more than this amount of entries.
+     */
+    private static final int LIMIT = 0xFFFF;
+
+    private final String name;
+    private final Map< String, Integer > constants = new HashMap<>();
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+    private int size = 0x1;
+    private int count = 0x0;
+
+    ClassFile( String name ) {
+
+        this.name = name;
+
+    }
+
+    String name() {
+
+        return this.name;
+
+    }
+
+    int utf8( String value ) {
+
+        return this.constant( "U" + value, pool -> {
+
+            pool.writeByte( UTF8 );
+            pool.writeUTF( value );
+
+        } );
+
+    }
+
+    int integer( int value ) {
+
+        return this.constant( "I" + value, pool -> {
+
+            pool.writeByte( INTEGER );
+            pool.writeInt( value );
+
+        } );
+
+    }
+
+    int type( String name ) {
+
+        int utf8 = this.utf8( name );
+
+        return this.constant( "C" + name, pool -> {
+
+            pool.writeByte( CLASS );
+            pool.writeShort( utf8 );
+
+        } );
+
+    }
+
+    int method( String owner, String name, String descriptor ) {
+
+        int type = this.type( owner );
+        int utf8 = this.utf8( name );
+        int signature = this.utf8( descriptor );
+        int nameAndType = this.constant( "N" + name + ' ' + descriptor, pool -> {
+
+            pool.writeByte( NAME_AND_TYPE );
+            pool.writeShort( utf8 );
+            pool.writeShort( signature );
+
+        } );
+
+        return this.constant( "M" + owner + '.' + name + ' ' + descriptor, pool -> {
+
+            pool.writeByte( METHOD );
+            pool.writeShort( type );
+            pool.writeShort( nameAndType );
+
+        } );
+
+    }
+
+    /**
+     * Adds a method whose code has been encoded (and linked) by the given encoder.
+     * Since the arguments are the only locals and the operand stack is empty at each branch target,
+     * each frame of its stack map is the same as the one the method starts with.
+     */
+    void define( int access, String name, String descriptor, BytecodeEncoder code ) {
+
+        if ( ++this.count > LIMIT ) {
+
+            throw new IllegalArgumentException( "The program is too large to be run on the JVM." );
+
+        }
+
+        int utf8 = this.utf8( name );
+        int signature = this.utf8( descriptor );
+        int attribute = this.utf8( "Code" );
+        byte[] frames = code.frames();
+        int table = ( frames.length > 0x0 ? this.utf8( "StackMapTable" ) : 0x0 );
+
+        try {
+
+            DataOutputStream methods = new DataOutputStream( this.methods );
+            methods.writeShort( access );
+            methods.writeShort( utf8 );
+            methods.writeShort( signature );
+            methods.writeShort( 0x1 );
+
+            methods.writeShort( attribute );
+            methods.writeInt( 0xC + code.size() + ( frames.length > 0x0 ? 0x6 + frames.length : 0x0 ) );
+            methods.writeShort( code.maxStack() );
+            methods.writeShort( code.maxLocals() );
+            methods.writeInt( code.size() );
+            code.writeTo( methods );
+            methods.writeShort( 0x0 );
+            methods.writeShort( frames.length > 0x0 ? 0x1 : 0x0 );
+
+            if ( frames.length > 0x0 ) {
+
+                methods.writeShort( table );
+                methods.writeInt( frames.length );
+                methods.write( frames );
+
+            }
+
+        } catch ( IOException exception ) {
+
+            // A ByteArrayOutputStream doesn't throw any
+            throw new UncheckedIOException( exception );
+
+        }
+
+    }
+
+    /**
+     * Assembles the class, which is final and extends nothing but Object.
+     */
+    byte[] toBytes() {
+
+        int self = this.type( this.name );
+        int parent = this.type( "java/lang/Object" );
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( this.pool.size() + this.methods.size() + 0x20 );
+
+        try {
+
+            DataOutputStream file = new DataOutputStream( bytes );
+            file.writeInt( MAGIC );
+            file.writeShort( 0x0 );
+            file.writeShort( VERSION );
+            file.writeShort( this.size );
+            this.pool.writeTo( file );
+            file.writeShort( ACC_FINAL | ACC_SUPER );
+            file.writeShort( self );
+            file.writeShort( parent );
+            file.writeShort( 0x0 );
+            file.writeShort( 0x0 );
+            file.writeShort( this.count );
+            this.methods.writeTo( file );
+            file.writeShort( 0x0 );
+
+        } catch ( IOException exception ) {
+
+            throw new UncheckedIOException( exception );
+
+        }
+
+        return bytes.toByteArray();
+
+    }
+
+    private interface Entry {
+
+        void write( DataOutputStream pool ) throws IOException;
+
+    }
+
+    private int constant( String key, Entry entry ) {
+
+        Integer index = this.constants.get( key );
+
+        if ( index != null ) {
+
+            return index;
+
+        }
+
+        if ( this.size >= LIMIT ) {
+
+            throw new IllegalArgumentException( "The program is too large to be run on the JVM." );
+
+        }
+
+        try {
+
+            entry.write( new DataOutputStream( this.pool ) );
+
+        } catch ( IOException exception ) {
+
+            throw new UncheckedIOException( exception );
+
+        }
+
+        this.constants.put( key, this.size );
+        return this.size++;
+
+    }
+
+}
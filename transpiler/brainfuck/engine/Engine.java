@@ -0,0 +1,120 @@
+package transpiler.brainfuck.engine;
+
+import transpiler.brainfuck.emitter.EndOfInput;
+import transpiler.brainfuck.emitter.NasmEmitter;
+import transpiler.brainfuck.ir.Program;
+import transpiler.brainfuck.ir.Snapshot;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The engine runs programs within the JVM itself, without assembling them at all.
+ *
+ * A program is compiled into a class of JVM bytecode (see BytecodeEmitter) which is loaded
+ * as hidden class: it can't be referred to by name and is unloaded as soon as the engine
+ * isn't reachable anymore. The JIT compiler treats it like any other code, hence hot loops
+ * end up as machine code, too.
+ *
+ * Programs behave like their transpiled counterparts: they have the same tape, the same
+ * end of input behavior and leaving the tape (which is detected by the bounds checks of the tape)
+ * is an error. An engine doesn't change after its creation and each run has a tape of its own,
+ * hence one engine can run a program on any amount of threads at the same time.
+ */
+public class Engine {
+
+    private static final MethodType TYPE = MethodType.methodType( int.class, byte[].class, Terminal.class, int.class );
+
+    private final MethodHandle entry;
+    private final Snapshot snapshot;
+    private final EndOfInput endOfInput;
+    private final int tape;
+
+    private Engine( MethodHandle entry, Snapshot snapshot, EndOfInput endOfInput, int tape ) {
+
+        this.entry = entry;
+        this.snapshot = snapshot;
+        this.endOfInput = endOfInput;
+        this.tape = tape;
+
+    }
+
+    /**
+     * Compiles the given program (which has to be valid) and loads it.
+     * The tape is rounded up just like the one of transpiled programs, but arrays
+     * are limited to about two billion cells.
+     */
+    public static Engine compile( Program program, EndOfInput endOfInput, long tape ) {
+
+        long cells = NasmEmitter.tape( tape );
+
+        if ( cells > Integer.MAX_VALUE - 0x8 ) {
+
+            throw new IllegalArgumentException( String.format( "Tape of %s cells is too large to be run on the JVM.", tape ) );
+
+        }
+
+        try {
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass( BytecodeEmitter.emit( program ), true );
+            MethodHandle entry = lookup.findStatic( lookup.lookupClass(), BytecodeEmitter.ENTRY, TYPE );
+
+            return new Engine( entry, program.snapshot(), endOfInput, ( int ) cells );
+
+        } catch ( IllegalAccessException | NoSuchMethodException exception ) {
+
+            // The class is defined within this package and has an entry point
+            throw new IllegalStateException( exception );
+
+        }
+
+    }
+
+    /**
+     * Runs the program, reading its input from the given channel and writing its output
+     * to the given one (both of which are left open).
+     */
+    public void run( ReadableByteChannel input, WritableByteChannel output ) throws IOException, TapeException {
+
+        byte[] cells = new byte[ this.tape ];
+        Terminal terminal = new Terminal( input, output, this.endOfInput );
+        int pointer = 0x0;
+
+        try {
+
+            // Restore the state that has been reached at compile time
+            if ( this.snapshot != null ) {
+
+                terminal.write( this.snapshot.output() );
+                System.arraycopy( this.snapshot.cells(), 0x0, cells, this.snapshot.origin(), this.snapshot.cells().length );
+                pointer = this.snapshot.pointer();
+
+            }
+
+            pointer = ( int ) this.entry.invokeExact( cells, terminal, pointer );
+
+        } catch ( ArrayIndexOutOfBoundsException exception ) {
+
+            terminal.flush();
+            throw new TapeException();
+
+        } catch ( IOException | RuntimeException | Error exception ) {
+
+            throw exception;
+
+        } catch ( Throwable throwable ) {
+
+            // The compiled program doesn't throw anything else
+            throw new IllegalStateException( throwable );
+
+        }
+
+        terminal.flush();
+
+    }
+
+}
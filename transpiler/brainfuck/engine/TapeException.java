@@ -0,0 +1,16 @@
+package transpiler.brainfuck.engine;
+
+/**
+ * A compiled program has accessed a cell outside of its tape.
+ */
+public class TapeException extends Exception {
+
+    private static final long serialVersionUID = 0x1L;
+
+    public TapeException() {
+
+        super( "the pointer has left the tape" );
+
+    }
+
+}
@@ -0,0 +1,116 @@
+package transpiler.brainfuck.engine;
+
+import transpiler.brainfuck.emitter.EndOfInput;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The terminal buffers the input and output of a compiled program,
+ * just like the runtime of the transpiled programs does
+ * (see '/transpiler/brainfuck/template/template.asm'):
+ *
+ * Printed characters are appended to the output buffer, which is only written when it is full,
+ * before input is read and when the program ends. Input is read as much as is available at once
+ * into the input buffer, which is only refilled once it is exhausted.
+ */
+class Terminal {
+
+    private static final int BUFFER_SIZE = 0x10000;
+
+    private final ReadableByteChannel input;
+    private final WritableByteChannel output;
+    private final EndOfInput endOfInput;
+    private final ByteBuffer inputBuffer = ByteBuffer.allocate( BUFFER_SIZE ).limit( 0x0 );
+    private final ByteBuffer outputBuffer = ByteBuffer.allocate( BUFFER_SIZE );
+
+    Terminal( ReadableByteChannel input, WritableByteChannel output, EndOfInput endOfInput ) {
+
+        this.input = input;
+        this.output = output;
+        this.endOfInput = endOfInput;
+
+    }
+
+    /**
+     * Prints the given cell.
+     */
+    void write( int cell ) throws IOException {
+
+        if ( !this.outputBuffer.hasRemaining() ) {
+
+            this.flush();
+
+        }
+
+        this.outputBuffer.put( ( byte ) cell );
+
+    }
+
+    /**
+     * Prints the given characters at once.
+     */
+    void write( byte[] characters ) throws IOException {
+
+        this.flush();
+        ByteBuffer buffer = ByteBuffer.wrap( characters );
+
+        while ( buffer.hasRemaining() ) {
+
+            this.output.write( buffer );
+
+        }
+
+    }
+
+    /**
+     * Reads one character and returns the new value of the given cell,
+     * which depends on the end of input behavior if no input is left.
+     */
+    int read( int cell ) throws IOException {
+
+        if ( !this.inputBuffer.hasRemaining() ) {
+
+            this.flush();
+            this.inputBuffer.clear();
+            int length = this.input.read( this.inputBuffer );
+            this.inputBuffer.flip();
+
+            if ( length <= 0x0 ) {
+
+                return switch ( this.endOfInput ) {
+
+                    case UNCHANGED -> cell;
+                    case ZERO -> 0x0;
+                    case MINUS_ONE -> 0xFF;
+
+                };
+
+            }
+
+        }
+
+        return this.inputBuffer.get();
+
+    }
+
+    /**
+     * Writes the output buffer (until it is empty).
+     */
+    void flush() throws IOException {
+
+        this.outputBuffer.flip();
+
+        while ( this.outputBuffer.hasRemaining() ) {
+
+            this.output.write( this.outputBuffer );
+
+        }
+
+        this.outputBuffer.clear();
+
+    }
+
+}
@@ -0,0 +1,43 @@
+package transpiler.brainfuck.ir;
+
+/**
+ * These are the operations of the intermediate representation (IR)
+ * that lies between parsing and the emission of 'NASM assembly'.
+ *
+ * Initially, they correspond to the 'Brainfuck' operators themselves:
+ *
+ *      -> ADD      changes the cell at its offset by its value ('+' and '-')
+ *      -> MOVE     changes the pointer by its value ('>' and '<')
+ *      -> OUTPUT   prints the cell at its offset ('.')
+ *      -> INPUT    reads a character into the cell at its offset (',')
+ *      -> OPEN     starts a loop ('[')
+ *      -> CLOSE    ends a loop (']')
+ *
+ * Optimization passes may, however, introduce operations that have no direct
+ * counterpart in 'Brainfuck' but describe the effect of a whole sequence of operators:
+ *
+ *      -> SET      sets the cell at its offset to its value (e.g. '[-]')
+ *      -> MULTIPLY adds the cell at its origin, multiplied by its value, to the cell
+ *                  at its offset (e.g. '[->++<]')
+ *      -> SCAN     moves the pointer to the cell at its offset and then by its value
+ *                  until a cell is zero (e.g. '[>]')
+ *
+ * Offsets and origins are relative to the current cell; they are all zero unless
+ * a pass has deferred pointer redirections.
+ *
+ * The value of OPEN is 1 if the loop is known to be entered, that is, if its cell
+ * is known not to be zero whenever the loop is reached (see ValuePropagation), and 0 otherwise.
+ */
+public enum Operation {
+
+    ADD,
+    MOVE,
+    OUTPUT,
+    INPUT,
+    OPEN,
+    CLOSE,
+    SET,
+    MULTIPLY,
+    SCAN
+
+}
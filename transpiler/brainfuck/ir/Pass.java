@@ -0,0 +1,41 @@
+package transpiler.brainfuck.ir;
+
+import transpiler.brainfuck.metrics.Metrics;
+
+/**
+ * An optimization pass takes in a program in the intermediate representation
+ * and returns an equivalent, but (hopefully) more efficient one.
+ *
+ * Passes are chained by the PassManager, each one working on the result of its
+ * predecessor. They are identified by their name, so that they can be
+ * turned on or off one at a time.
+ */
+public interface Pass {
+
+    String name();
+
+    Program apply( Program program );
+
+    /**
+     * Applies the pass just like above, counting how often each of its patterns matches (see Metrics).
+     * Passes without any patterns worth counting simply apply themselves.
+     */
+    default Program apply( Program program, Metrics metrics ) {
+
+        return this.apply( program );
+
+    }
+
+    /**
+     * Tells whether the pass is local, that is, whether it neither assumes anything about the state
+     * at the beginning of the program nor looks beyond the loops and the straight-line code around them.
+     * A program that is split between its top-level loops can then be optimized piece by piece
+     * (see Chunks), each piece on its own, which yields a program that is equivalent to the whole.
+     */
+    default boolean isLocal() {
+
+        return false;
+
+    }
+
+}
@@ -0,0 +1,222 @@
+package transpiler.brainfuck.ir;
+
+import transpiler.brainfuck.ir.pass.AdditionFolding;
+import transpiler.brainfuck.ir.pass.EmptyLoopElimination;
+import transpiler.brainfuck.ir.pass.IdiomRecognition;
+import transpiler.brainfuck.ir.pass.PartialEvaluation;
+import transpiler.brainfuck.ir.pass.RedirectionDeferral;
+import transpiler.brainfuck.ir.pass.RedirectionFolding;
+import transpiler.brainfuck.ir.pass.ValuePropagation;
+import transpiler.brainfuck.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The pass manager holds a chain of optimization passes that
+ * are applied one after another to a program.
+ *
+ * Each pass can be turned on or off by its name; turned off passes
+ * are simply skipped, the remaining ones still run in their original order.
+ *
+ * Running the passes doesn't change the pass manager (nor the passes),
+ * hence once it is configured, it can be shared by several threads.
+ */
+public class PassManager {
+
+    private final List< Pass > passes = new ArrayList<>();
+    private final Set< String > disabled = new HashSet<>();
+
+    /**
+     * This method creates a pass manager holding the default chain of passes.
+     *
+     * The order matters:
+     * Folding might remove instructions (e.g. if '+' and '-' annihilate each other)
+     * which in turn might allow for further folding or leave loops empty.
+     * Idioms can only be recognized in loops that have been folded already.
+     * Deferring redirections comes after those, since they rely on
+     * instructions referring to the current cell.
+     * Propagating values works best on deferred redirections, since it
+     * tracks cells by their offsets within straight-line code.
+     * Partial evaluation comes last, so that it executes the optimized program.
+     */
+    public static PassManager standard() {
+
+        PassManager manager = new PassManager();
+        manager.add( new AdditionFolding() );
+        manager.add( new RedirectionFolding() );
+        manager.add( new EmptyLoopElimination() );
+        manager.add( new IdiomRecognition() );
+        manager.add( new RedirectionDeferral() );
+        manager.add( new ValuePropagation() );
+        manager.add( new PartialEvaluation() );
+
+        return manager;
+
+    }
+
+    public PassManager add( Pass pass ) {
+
+        this.passes.add( pass );
+        return this;
+
+    }
+
+    public void enable( String name ) {
+
+        this.disabled.remove( this.find( name ).name() );
+
+    }
+
+    public void disable( String name ) {
+
+        this.disabled.add( this.find( name ).name() );
+
+    }
+
+    public boolean isEnabled( String name ) {
+
+        return !this.disabled.contains( this.find( name ).name() );
+
+    }
+
+    /**
+     * Returns a copy of this pass manager, holding the same passes which are turned on or off alike;
+     * changing either of them (e.g. replacing a pass) doesn't affect the other one.
+     */
+    public PassManager copy() {
+
+        PassManager copy = new PassManager();
+        copy.passes.addAll( this.passes );
+        copy.disabled.addAll( this.disabled );
+
+        return copy;
+
+    }
+
+    /**
+     * Replaces the pass that has the same name as the given one (e.g. by a copy that is configured differently).
+     */
+    public PassManager replace( Pass pass ) {
+
+        this.passes.set( this.passes.indexOf( this.find( pass.name() ) ), pass );
+        return this;
+
+    }
+
+    /**
+     * Returns the pass with the given name, e.g. in order to configure it.
+     */
+    public Pass get( String name ) {
+
+        return this.find( name );
+
+    }
+
+    public List< Pass > passes() {
+
+        return List.copyOf( this.passes );
+
+    }
+
+    public Program run( Program program ) {
+
+        return this.run( program, Metrics.DISABLED );
+
+    }
+
+    /**
+     * Runs the passes, just like above, recording the time each pass takes and how often
+     * its patterns match in the given metrics.
+     */
+    public Program run( Program program, Metrics metrics ) {
+
+        return this.run( program, 0x0, this.passes.size(), metrics );
+
+    }
+
+    /**
+     * Runs the local passes (see Pass.isLocal) that precede the first enabled pass which isn't local,
+     * e.g. on each piece of a program that has been split (see Chunks).
+     */
+    public Program runLocal( Program program, Metrics metrics ) {
+
+        return this.run( program, 0x0, this.boundary(), metrics );
+
+    }
+
+    /**
+     * Runs the passes that follow the local ones (see runLocal), e.g. on the program
+     * that has been joined from its pieces.
+     */
+    public Program runGlobal( Program program, Metrics metrics ) {
+
+        return this.run( program, this.boundary(), this.passes.size(), metrics );
+
+    }
+
+    private Program run( Program program, int from, int to, Metrics metrics ) {
+
+        for ( Pass pass : this.passes.subList( from, to ) ) {
+
+            if ( !this.disabled.contains( pass.name() ) ) {
+
+                /*
+                Passes build their programs from scratch, hence a snapshot
+                (if there is one) is carried over to the result.
+                 */
+                Program current = program;
+                Program applied = metrics.time( pass.name(), () -> pass.apply( current, metrics ) );
+
+                if ( applied.snapshot() == null ) {
+
+                    applied.setSnapshot( program.snapshot() );
+
+                }
+
+                program = applied;
+
+            }
+
+        }
+
+        return program;
+
+    }
+
+    /*
+    Returns the index of the first enabled pass that isn't local (or the amount of passes).
+     */
+    private int boundary() {
+
+        int boundary = 0x0;
+
+        while ( boundary < this.passes.size() && ( this.passes.get( boundary ).isLocal() || this.disabled.contains( this.passes.get( boundary ).name() ) ) ) {
+
+            boundary++;
+
+        }
+
+        return boundary;
+
+    }
+
+    private Pass find( String name ) {
+
+        for ( Pass pass : this.passes ) {
+
+            if ( pass.name().equals( name ) ) {
+
+                return pass;
+
+            }
+
+        }
+
+        throw new IllegalArgumentException( String.format( "Pass '%s' is not known.", name ) );
+
+    }
+
+}
@@ -0,0 +1,318 @@
+package transpiler.brainfuck.ir;
+
+import java.util.Arrays;
+
+/**
+ * A program in the intermediate representation is a flat sequence of instructions.
+ *
+ * Each instruction is described by its operation, its value (e.g. the amount
+ * a cell is changed by), its offset (the cell an instruction refers to,
+ * relative to the current one), its origin (a second cell an instruction refers to,
+ * only meaningful if it reads from one cell and writes to another) and the index of
+ * its partner (only meaningful for loops, where the opening and closing instruction
+ * refer to each other).
+ *
+ * These are held by arrays instead of one object per instruction, keeping the memory
+ * footprint low even if there are millions of instructions.
+ * Loops are not nested objects either: the partner indices allow jumping from one end
+ * of a loop to the other, so that programs can be walked without recursion.
+ *
+ * Programs are only ever built by appending instructions, which is how the parser
+ * creates them and how optimization passes create their (optimized) copies.
+ * Partners are linked automatically as soon as a loop is closed.
+ *
+ * Each instruction also remembers its position within the source (the index of its first
+ * operator), which survives copying an instruction from one program into another;
+ * instructions that have been created by a pass instead don't have any (-1).
+ *
+ * If a prefix of the program has already been executed at compile time,
+ * the program additionally holds a snapshot of the state it has reached.
+ */
+public class Program {
+
+    private Operation[] operations;
+    private int[] values;
+    private int[] offsets;
+    private int[] origins;
+    private int[] partners;
+    private int[] positions;
+    private int size;
+
+    private int[] loops;
+    private int depth;
+
+    private Snapshot snapshot;
+
+    public Program() {
+
+        this( 0x10 );
+
+    }
+
+    public Program( int capacity ) {
+
+        this.operations = new Operation[ Math.max( 0x10, capacity ) ];
+        this.values = new int[ this.operations.length ];
+        this.offsets = new int[ this.operations.length ];
+        this.origins = new int[ this.operations.length ];
+        this.partners = new int[ this.operations.length ];
+        this.positions = new int[ this.operations.length ];
+        this.size = 0x0;
+
+        this.loops = new int[ 0x10 ];
+        this.depth = 0x0;
+
+    }
+
+    public void append( Operation operation ) {
+
+        this.append( operation, 0x0 );
+
+    }
+
+    public void append( Operation operation, int value ) {
+
+        this.append( operation, value, 0x0 );
+
+    }
+
+    /**
+     * Appends a copy of an instruction of another program.
+     */
+    public void append( Program program, int index ) {
+
+        this.append( program.operation( index ), program.value( index ), program.offset( index ), program.origin( index ) );
+        this.positions[ this.size - 0x1 ] = program.position( index );
+
+    }
+
+    /**
+     * Appends copies of all instructions of another program, whose loops have to be closed,
+     * moving their positions by the given distance (e.g. if the other program has been parsed
+     * from a piece of the source that begins at that distance).
+     */
+    public void appendAll( Program program, int distance ) {
+
+        for ( int i = 0x0; i < program.size(); i++ ) {
+
+            this.append( program, i );
+
+            if ( program.position( i ) >= 0x0 ) {
+
+                this.positions[ this.size - 0x1 ] += distance;
+
+            }
+
+        }
+
+    }
+
+    public void append( Operation operation, int value, int offset ) {
+
+        this.append( operation, value, offset, 0x0 );
+
+    }
+
+    public void append( Operation operation, int value, int offset, int origin ) {
+
+        this.grow();
+
+        this.operations[ this.size ] = operation;
+        this.values[ this.size ] = value;
+        this.offsets[ this.size ] = offset;
+        this.origins[ this.size ] = origin;
+        this.partners[ this.size ] = this.size;
+        this.positions[ this.size ] = -0x1;
+
+        if ( operation == Operation.OPEN ) {
+
+            if ( this.depth == this.loops.length ) {
+
+                this.loops = Arrays.copyOf( this.loops, this.depth * 0x2 );
+
+            }
+
+            this.loops[ this.depth++ ] = this.size;
+
+        } else if ( operation == Operation.CLOSE ) {
+
+            int partner = this.loops[ --this.depth ];
+            this.partners[ partner ] = this.size;
+            this.partners[ this.size ] = partner;
+
+        }
+
+        this.size++;
+
+    }
+
+    /**
+     * Appends the end of the loop that has been begun by the instruction at the given index,
+     * which has to be the innermost loop that is open. This is what the parser does, since
+     * the validator has matched the brackets beforehand (see Validation).
+     */
+    public void close( int open ) {
+
+        this.grow();
+
+        this.operations[ this.size ] = Operation.CLOSE;
+        this.values[ this.size ] = 0x0;
+        this.offsets[ this.size ] = 0x0;
+        this.origins[ this.size ] = 0x0;
+        this.partners[ this.size ] = open;
+        this.partners[ open ] = this.size;
+        this.positions[ this.size ] = -0x1;
+
+        this.depth--;
+        this.size++;
+
+    }
+
+    private void grow() {
+
+        if ( this.size == this.operations.length ) {
+
+            int capacity = this.size + ( this.size >> 0x1 );
+            this.operations = Arrays.copyOf( this.operations, capacity );
+            this.values = Arrays.copyOf( this.values, capacity );
+            this.offsets = Arrays.copyOf( this.offsets, capacity );
+            this.origins = Arrays.copyOf( this.origins, capacity );
+            this.partners = Arrays.copyOf( this.partners, capacity );
+            this.positions = Arrays.copyOf( this.positions, capacity );
+
+        }
+
+    }
+
+    /**
+     * Removes the instruction that has been appended last.
+     * If it closes a loop, that loop is open again afterwards;
+     * if it opens a loop, that loop is discarded.
+     */
+    public void removeLast() {
+
+        this.size--;
+
+        if ( this.operations[ this.size ] == Operation.OPEN ) {
+
+            this.depth--;
+
+        } else if ( this.operations[ this.size ] == Operation.CLOSE ) {
+
+            this.loops[ this.depth++ ] = this.partners[ this.size ];
+
+        }
+
+    }
+
+    public int size() {
+
+        return this.size;
+
+    }
+
+    public boolean isEmpty() {
+
+        return this.size == 0x0;
+
+    }
+
+    public Operation operation( int index ) {
+
+        return this.operations[ index ];
+
+    }
+
+    public int value( int index ) {
+
+        return this.values[ index ];
+
+    }
+
+    public void setValue( int index, int value ) {
+
+        this.values[ index ] = value;
+
+    }
+
+    public int offset( int index ) {
+
+        return this.offsets[ index ];
+
+    }
+
+    public int origin( int index ) {
+
+        return this.origins[ index ];
+
+    }
+
+    public int partner( int index ) {
+
+        return this.partners[ index ];
+
+    }
+
+    /**
+     * Returns the index that follows the sequence of multiplications which starts at the given index,
+     * all of which multiply the very same origin (e.g. the multiplications of one multiply loop).
+     *
+     * Such a sequence is only to be run if its origin isn't zero, just like the loop it replaces:
+     * Otherwise, it would touch cells the program never reaches (which might lie beyond the tape).
+     */
+    public int endOfMultiplications( int index ) {
+
+        int end = index;
+
+        while ( end < this.size && this.operations[ end ] == Operation.MULTIPLY && this.origins[ end ] == this.origins[ index ] ) {
+
+            end++;
+
+        }
+
+        return end;
+
+    }
+
+    /**
+     * Returns the position of the instruction within the source or -1 if it doesn't have any.
+     */
+    public int position( int index ) {
+
+        return this.positions[ index ];
+
+    }
+
+    public void setPosition( int index, int position ) {
+
+        this.positions[ index ] = position;
+
+    }
+
+    /**
+     * Returns the snapshot of the state that has been reached at compile time
+     * or 'null' if nothing has been executed at compile time.
+     */
+    public Snapshot snapshot() {
+
+        return this.snapshot;
+
+    }
+
+    public void setSnapshot( Snapshot snapshot ) {
+
+        this.snapshot = snapshot;
+
+    }
+
+    /**
+     * Returns the operation of the instruction that has been appended last
+     * or 'null' if there is none.
+     */
+    public Operation last() {
+
+        return ( this.size > 0x0 ? this.operations[ this.size - 0x1 ] : null );
+
+    }
+
+}
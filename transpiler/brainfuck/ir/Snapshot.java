@@ -0,0 +1,55 @@
+package transpiler.brainfuck.ir;
+
+/**
+ * A snapshot describes the state a program has reached after a prefix of it
+ * has already been executed at compile time (see PartialEvaluation):
+ *
+ *      -> the output that has been printed so far
+ *      -> the cells that have been changed so far; the first of them is located at
+ *         the origin (relative to the cell the pointer initially refers to)
+ *      -> the pointer (again relative to the cell it initially refers to)
+ *
+ * The emitted program restores this state first and then continues with
+ * the remaining instructions.
+ */
+public class Snapshot {
+
+    private final byte[] output;
+    private final byte[] cells;
+    private final int origin;
+    private final int pointer;
+
+    public Snapshot( byte[] output, byte[] cells, int origin, int pointer ) {
+
+        this.output = output;
+        this.cells = cells;
+        this.origin = origin;
+        this.pointer = pointer;
+
+    }
+
+    public byte[] output() {
+
+        return this.output;
+
+    }
+
+    public byte[] cells() {
+
+        return this.cells;
+
+    }
+
+    public int origin() {
+
+        return this.origin;
+
+    }
+
+    public int pointer() {
+
+        return this.pointer;
+
+    }
+
+}
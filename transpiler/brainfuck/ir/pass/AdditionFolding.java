@@ -0,0 +1,78 @@
+package transpiler.brainfuck.ir.pass;
+
+import transpiler.brainfuck.ir.Operation;
+import transpiler.brainfuck.ir.Pass;
+import transpiler.brainfuck.ir.Program;
+import transpiler.brainfuck.metrics.Metrics;
+
+/**
+ * Addition and subtraction operations annihilate their respective
+ * effects to the cells state.
+ *
+ * If these operations follow each other in a coherent sequence (and refer
+ * to the same cell), the total outcome (pure addition, pure subtraction, nothing)
+ * can be precomputed.
+ *
+ * There is simply no need to split the sequence up into smaller
+ * additions or subtractions and hence performing more operations
+ * if there is a way to achieve the same outcome with less calculations.
+ */
+public class AdditionFolding implements Pass {
+
+    @Override
+    public String name() {
+
+        return "fold-additions";
+
+    }
+
+    @Override
+    public boolean isLocal() {
+
+        return true;
+
+    }
+
+    @Override
+    public Program apply( Program program ) {
+
+        return this.apply( program, Metrics.DISABLED );
+
+    }
+
+    @Override
+    public Program apply( Program program, Metrics metrics ) {
+
+        Program folded = new Program( program.size() );
+        int folds = 0x0;
+
+        for ( int i = 0x0; i < program.size(); i++ ) {
+
+            Operation operation = program.operation( i );
+
+            if ( operation == Operation.ADD && folded.last() == Operation.ADD && folded.offset( folded.size() - 0x1 ) == program.offset( i ) ) {
+
+                int index = folded.size() - 0x1;
+                folded.setValue( index, folded.value( index ) + program.value( i ) );
+                folds++;
+
+            } else {
+
+                folded.append( program, i );
+
+            }
+
+            if ( folded.last() == Operation.ADD && folded.value( folded.size() - 0x1 ) == 0x0 ) {
+
+                folded.removeLast();
+
+            }
+
+        }
+
+        metrics.count( this.name() + ".fold", folds );
+        return folded;
+
+    }
+
+}
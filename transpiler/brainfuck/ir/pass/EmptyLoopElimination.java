@@ -0,0 +1,64 @@
+package transpiler.brainfuck.ir.pass;
+
+import transpiler.brainfuck.ir.Operation;
+import transpiler.brainfuck.ir.Pass;
+import transpiler.brainfuck.ir.Program;
+import transpiler.brainfuck.metrics.Metrics;
+
+/**
+ * Loops that don't contain any code (because there either is no code inside
+ * the brackets or operations inside them annihilate each other) are simply discarded.
+ *
+ * Since the innermost loops are closed first, a loop that only contains
+ * such loops is discarded as well.
+ */
+public class EmptyLoopElimination implements Pass {
+
+    @Override
+    public String name() {
+
+        return "eliminate-empty-loops";
+
+    }
+
+    @Override
+    public boolean isLocal() {
+
+        return true;
+
+    }
+
+    @Override
+    public Program apply( Program program ) {
+
+        return this.apply( program, Metrics.DISABLED );
+
+    }
+
+    @Override
+    public Program apply( Program program, Metrics metrics ) {
+
+        Program eliminated = new Program( program.size() );
+        int loops = 0x0;
+
+        for ( int i = 0x0; i < program.size(); i++ ) {
+
+            if ( program.operation( i ) == Operation.CLOSE && eliminated.last() == Operation.OPEN ) {
+
+                eliminated.removeLast();
+                loops++;
+
+            } else {
+
+                eliminated.append( program, i );
+
+            }
+
+        }
+
+        metrics.count( this.name() + ".loop", loops );
+        return eliminated;
+
+    }
+
+}
@@ -0,0 +1,168 @@
+package transpiler.brainfuck.ir.pass;
+
+import transpiler.brainfuck.ir.Operation;
+import transpiler.brainfuck.ir.Pass;
+import transpiler.brainfuck.ir.Program;
+import transpiler.brainfuck.metrics.Metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Certain loops are idioms that are used over and over again in 'Brainfuck' programs.
+ * Executing them iteration by iteration is very costly, but their outcome
+ * can be computed directly instead:
+ *
+ *      -> clear loops ('[-]' or '[+]') set the current cell to zero
+ *      -> scan loops ('[>]' or '[<<]') move the pointer until a cell is zero
+ *      -> copy and multiply loops ('[->+>++<<]') add the current cell, multiplied by
+ *         a factor, to other cells and then set the current cell to zero
+ *
+ * Only innermost loops whose body consists of nothing but cell changes and
+ * pointer redirections can be such idioms.
+ * Hence, this pass relies on the folding passes having run beforehand.
+ */
+public class IdiomRecognition implements Pass {
+
+    @Override
+    public String name() {
+
+        return "recognize-idioms";
+
+    }
+
+    @Override
+    public boolean isLocal() {
+
+        return true;
+
+    }
+
+    @Override
+    public Program apply( Program program ) {
+
+        return this.apply( program, Metrics.DISABLED );
+
+    }
+
+    /**
+     * Recognizes the idioms, just like above, counting each kind of idiom (clear, scan and multiply loops).
+     */
+    @Override
+    public Program apply( Program program, Metrics metrics ) {
+
+        Program recognized = new Program( program.size() );
+        int index = 0x0;
+        int clears = 0x0;
+        int scans = 0x0;
+        int multiplies = 0x0;
+
+        while ( index < program.size() ) {
+
+            int size = recognized.size();
+
+            if ( program.operation( index ) == Operation.OPEN && IdiomRecognition.recognize( program, index, recognized ) ) {
+
+                // A clear loop only sets its cell, whereas a multiply loop changes other cells beforehand
+                if ( recognized.last() == Operation.SCAN ) {
+
+                    scans++;
+
+                } else if ( recognized.size() - size > 0x1 ) {
+
+                    multiplies++;
+
+                } else {
+
+                    clears++;
+
+                }
+
+                index = program.partner( index ) + 0x1;
+
+            } else {
+
+                recognized.append( program, index );
+                index++;
+
+            }
+
+        }
+
+        metrics.count( this.name() + ".clear", clears );
+        metrics.count( this.name() + ".scan", scans );
+        metrics.count( this.name() + ".multiply", multiplies );
+
+        return recognized;
+
+    }
+
+    /**
+     * Tries to translate the loop that starts at the given index into an idiom.
+     * Returns whether it has been successful; if it hasn't, nothing is appended.
+     */
+    private static boolean recognize( Program program, int index, Program recognized ) {
+
+        int end = program.partner( index );
+
+        /*
+        The changes of the body are collected per cell, relative to the cell the loop
+        starts at, while following the pointer redirections.
+         */
+        Map< Integer, Integer > changes = new TreeMap<>();
+        int offset = 0x0;
+
+        for ( int i = index + 0x1; i < end; i++ ) {
+
+            switch ( program.operation( i ) ) {
+
+                case ADD -> changes.merge( offset + program.offset( i ), program.value( i ), Integer::sum );
+                case MOVE -> offset += program.value( i );
+                default -> {
+
+                    return false;
+
+                }
+
+            }
+
+        }
+
+        if ( end - index == 0x2 && program.operation( index + 0x1 ) == Operation.MOVE ) {
+
+            recognized.append( Operation.SCAN, offset );
+            return true;
+
+        }
+
+        /*
+        The loop has to return to the cell it started at, otherwise it isn't
+        (necessarily) a clear, copy or multiply loop.
+        If that cell is only changed by '-' or '+' per iteration, the amount of
+        iterations is the value of the cell itself (or its negation respectively).
+        Changing it by any other odd value is fine if nothing else is changed (clear loop).
+         */
+        int step = changes.getOrDefault( 0x0, 0x0 );
+
+        if ( offset != 0x0 || step % 0x2 == 0x0 || ( changes.size() > 0x1 && Math.abs( step ) != 0x1 ) ) {
+
+            return false;
+
+        }
+
+        for ( Map.Entry< Integer, Integer > change : changes.entrySet() ) {
+
+            if ( change.getKey() != 0x0 && change.getValue() != 0x0 ) {
+
+                recognized.append( Operation.MULTIPLY, ( step == -0x1 ? change.getValue() : -change.getValue() ), change.getKey() );
+
+            }
+
+        }
+
+        recognized.append( Operation.SET, 0x0 );
+        return true;
+
+    }
+
+}
@@ -0,0 +1,300 @@
+package transpiler.brainfuck.ir.pass;
+
+import transpiler.brainfuck.ir.Operation;
+import transpiler.brainfuck.ir.Pass;
+import transpiler.brainfuck.ir.Program;
+import transpiler.brainfuck.ir.Snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Everything a program does before it reads its first input is independent
+ * of the input, hence it can just as well be done at compile time.
+ *
+ * This pass interprets the program until it either reaches the first read operation
+ * or has executed a certain amount of steps (the budget), which prevents programs
+ * that run forever (or just very long) from stalling the transpilation.
+ *
+ * What has been printed and which cells have been changed until then is recorded
+ * in a snapshot that the emitted program restores at once; the program then continues
+ * where the interpretation has stopped.
+ * Programs that never read any input are thereby reduced to printing their output
+ * (if the budget suffices).
+ */
+public class PartialEvaluation implements Pass {
+
+    public static final long DEFAULT_BUDGET = 10_000_000L;
+
+    private long budget = DEFAULT_BUDGET;
+    private long tape = Integer.MAX_VALUE;
+
+    @Override
+    public String name() {
+
+        return "evaluate-prefix";
+
+    }
+
+    public long budget() {
+
+        return this.budget;
+
+    }
+
+    public void setBudget( long budget ) {
+
+        this.budget = budget;
+
+    }
+
+    /**
+     * Returns a copy of this pass (with the same budget) for programs whose tape will have
+     * the given amount of cells; the interpretation stops before the pointer would leave it.
+     */
+    public PartialEvaluation forTape( long tape ) {
+
+        PartialEvaluation evaluation = new PartialEvaluation();
+        evaluation.budget = this.budget;
+        evaluation.tape = Math.min( tape, Integer.MAX_VALUE );
+
+        return evaluation;
+
+    }
+
+    @Override
+    public Program apply( Program program ) {
+
+        if ( program.snapshot() != null ) {
+
+            return program;
+
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        /*
+        The cells are held by an array that grows (up to the size of the tape) as soon as
+        cells further to the right are accessed.
+        The pointer initially refers to the leftmost cell of the tape.
+         */
+        byte[] cells = new byte[ 0x100 ];
+        int pointer = 0x0;
+
+        int index = 0x0;
+        long steps = 0x0;
+
+        while ( index < program.size() && program.operation( index ) != Operation.INPUT && steps < this.budget ) {
+
+            Operation operation = program.operation( index );
+            int offset = ( operation == Operation.MOVE ? 0x0 : program.offset( index ) );
+
+            /*
+            Leaving the tape is an error of the emitted program,
+            hence such an access is left to it.
+             */
+            if ( !this.isOnTape( pointer + offset ) || !this.isOnTape( pointer + program.origin( index ) ) ) {
+
+                break;
+
+            }
+
+            cells = PartialEvaluation.grow( cells, Math.max( pointer + offset, pointer + program.origin( index ) ) );
+
+            switch ( operation ) {
+
+                case ADD -> cells[ pointer + offset ] += ( byte ) program.value( index );
+                case MOVE -> pointer += program.value( index );
+                case OUTPUT -> output.write( cells[ pointer + offset ] );
+                case SET -> cells[ pointer + offset ] = ( byte ) program.value( index );
+                case MULTIPLY -> cells[ pointer + offset ] += ( byte ) ( cells[ pointer + program.origin( index ) ] * program.value( index ) );
+
+                case OPEN -> {
+
+                    if ( cells[ pointer ] == 0x0 ) {
+
+                        index = program.partner( index );
+
+                    }
+
+                }
+
+                case CLOSE -> {
+
+                    if ( cells[ pointer ] != 0x0 ) {
+
+                        index = program.partner( index );
+
+                    }
+
+                }
+
+                /*
+                Scans are the only instructions whose amount of work isn't constant,
+                hence each cell they visit counts as one step.
+                If the budget runs out amidst a scan (or the scan is about to leave the tape),
+                the remaining scan is left to the emitted program.
+                 */
+                case SCAN -> {
+
+                    int stride = program.value( index );
+                    pointer += offset;
+
+                    while ( cells[ pointer ] != 0x0 ) {
+
+                        if ( steps++ >= this.budget || !this.isOnTape( pointer + stride ) ) {
+
+                            return PartialEvaluation.residual( program, index, cells, pointer, output.toByteArray(), true );
+
+                        }
+
+                        pointer += stride;
+                        cells = PartialEvaluation.grow( cells, pointer );
+
+                    }
+
+                }
+
+            }
+
+            index++;
+            steps++;
+
+        }
+
+        if ( index == 0x0 ) {
+
+            return program;
+
+        }
+
+        return PartialEvaluation.residual( program, index, cells, pointer, output.toByteArray(), false );
+
+    }
+
+    private boolean isOnTape( long cell ) {
+
+        return cell >= 0x0 && cell < this.tape;
+
+    }
+
+    /**
+     * This method builds the program that remains after the interpretation has stopped
+     * at the given index, together with the snapshot of the state that has been reached.
+     *
+     * If the index lies within loops, the remaining program consists of the rest
+     * of the innermost loop's body, followed by that very loop again (since, after its body,
+     * a loop starts over if its cell isn't zero), followed by the rest of the enclosing
+     * loop's body and so on.
+     */
+    private static Program residual( Program program, int index, byte[] cells, int pointer, byte[] output, boolean scanning ) {
+
+        // Determine the loops that enclose the index
+        int[] loops = new int[ 0x10 ];
+        int depth = 0x0;
+
+        for ( int i = 0x0; i < index; i++ ) {
+
+            if ( program.operation( i ) == Operation.OPEN ) {
+
+                if ( depth == loops.length ) {
+
+                    loops = Arrays.copyOf( loops, depth * 0x2 );
+
+                }
+
+                loops[ depth++ ] = i;
+
+            } else if ( program.operation( i ) == Operation.CLOSE ) {
+
+                depth--;
+
+            }
+
+        }
+
+        Program residual = new Program( program.size() - index );
+        int start = index;
+
+        // A scan that has been interrupted continues at the cell it has reached
+        if ( scanning ) {
+
+            residual.append( Operation.SCAN, program.value( index ) );
+            start++;
+
+        }
+
+        while ( depth > 0x0 ) {
+
+            int open = loops[ --depth ];
+            int close = program.partner( open );
+
+            for ( int i = start; i < close; i++ ) {
+
+                residual.append( program, i );
+
+            }
+
+            /*
+            The loop is reached again from the end of its body, hence it isn't known to be entered anymore.
+             */
+            residual.append( Operation.OPEN );
+            residual.setPosition( residual.size() - 0x1, program.position( open ) );
+
+            for ( int i = open + 0x1; i <= close; i++ ) {
+
+                residual.append( program, i );
+
+            }
+
+            start = close + 0x1;
+
+        }
+
+        for ( int i = start; i < program.size(); i++ ) {
+
+            residual.append( program, i );
+
+        }
+
+        /*
+        Only the cells that aren't zero have to be restored
+        since all cells are zero initially.
+        If no instructions remain, no cells have to be restored at all.
+         */
+        int first = 0x0;
+        int last = ( residual.isEmpty() ? -0x1 : cells.length - 0x1 );
+
+        while ( first <= last && cells[ first ] == 0x0 ) {
+
+            first++;
+
+        }
+
+        while ( last >= first && cells[ last ] == 0x0 ) {
+
+            last--;
+
+        }
+
+        residual.setSnapshot( new Snapshot( output, Arrays.copyOfRange( cells, first, last + 0x1 ), first, pointer ) );
+        return residual;
+
+    }
+
+    /*
+    Grows the cells (if necessary), so that they contain the cell at the given index.
+     */
+    private static byte[] grow( byte[] cells, int index ) {
+
+        if ( index < cells.length ) {
+
+            return cells;
+
+        }
+
+        return Arrays.copyOf( cells, Math.max( index + 0x1, cells.length * 0x2 ) );
+
+    }
+
+}
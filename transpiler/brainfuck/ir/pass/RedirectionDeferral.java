@@ -0,0 +1,122 @@
+package transpiler.brainfuck.ir.pass;
+
+import transpiler.brainfuck.ir.Operation;
+import transpiler.brainfuck.ir.Pass;
+import transpiler.brainfuck.ir.Program;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Within straight-line code (that is, between loop boundaries),
+ * the pointer doesn't actually have to be moved whenever a redirection takes place.
+ *
+ * Instead, this pass keeps track of a virtual pointer, that is, the offset of the
+ * cell the pointer would refer to, relative to the cell it really refers to.
+ * Each instruction is then addressed with that offset (e.g. '[rbx+0x2]') and the
+ * pointer is only redirected once at the end of the straight-line code.
+ *
+ * Additionally, all additions to the same cell are folded, even if they don't
+ * follow each other directly (e.g. '+>+<+'), as long as no other instruction
+ * in between might read that cell.
+ */
+public class RedirectionDeferral implements Pass {
+
+    @Override
+    public String name() {
+
+        return "defer-redirections";
+
+    }
+
+    @Override
+    public boolean isLocal() {
+
+        return true;
+
+    }
+
+    @Override
+    public Program apply( Program program ) {
+
+        Program deferred = new Program( program.size() );
+        Map< Integer, Integer > additions = new TreeMap<>();
+        int offset = 0x0;
+
+        for ( int i = 0x0; i < program.size(); i++ ) {
+
+            switch ( program.operation( i ) ) {
+
+                case ADD -> additions.merge( offset + program.offset( i ), program.value( i ), Integer::sum );
+                case MOVE -> offset += program.value( i );
+
+                case OUTPUT, INPUT, SET, MULTIPLY -> {
+
+                    RedirectionDeferral.add( additions, deferred );
+                    deferred.append( program.operation( i ), program.value( i ), offset + program.offset( i ), offset + program.origin( i ) );
+
+                }
+
+                /*
+                A scan starts at the cell the virtual pointer refers to,
+                and leaves the pointer at a cell whose offset isn't known beforehand.
+                 */
+                case SCAN -> {
+
+                    RedirectionDeferral.add( additions, deferred );
+                    deferred.append( Operation.SCAN, program.value( i ), offset + program.offset( i ) );
+                    offset = 0x0;
+
+                }
+
+                default -> {
+
+                    RedirectionDeferral.add( additions, deferred );
+                    RedirectionDeferral.redirect( offset, deferred );
+                    deferred.append( program, i );
+                    offset = 0x0;
+
+                }
+
+            }
+
+        }
+
+        RedirectionDeferral.add( additions, deferred );
+        RedirectionDeferral.redirect( offset, deferred );
+
+        return deferred;
+
+    }
+
+    /*
+    The pending additions are appended in the order of their cells,
+    which (apart from being deterministic) keeps neighboring cells together.
+     */
+    private static void add( Map< Integer, Integer > additions, Program deferred ) {
+
+        for ( Map.Entry< Integer, Integer > addition : additions.entrySet() ) {
+
+            if ( addition.getValue() != 0x0 ) {
+
+                deferred.append( Operation.ADD, addition.getValue(), addition.getKey() );
+
+            }
+
+        }
+
+        additions.clear();
+
+    }
+
+    private static void redirect( int offset, Program deferred ) {
+
+        if ( offset != 0x0 ) {
+
+            deferred.append( Operation.MOVE, offset );
+
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+package transpiler.brainfuck.ir.pass;
+
+import transpiler.brainfuck.ir.Operation;
+import transpiler.brainfuck.ir.Pass;
+import transpiler.brainfuck.ir.Program;
+import transpiler.brainfuck.metrics.Metrics;
+
+/**
+ * Pointer redirection operations (left and right) annihilate their respective
+ * effects to the program pointer.
+ *
+ * If these operations follow each other in a coherent sequence, the total
+ * outcome (right shift, left shift, no shift) can be precomputed.
+ *
+ * There is simply no need to split the sequence up into smaller
+ * left shifts or right shifts of the pointer and hence performing more operations
+ * if there is a way to achieve the same outcome with less calculations.
+ */
+public class RedirectionFolding implements Pass {
+
+    @Override
+    public String name() {
+
+        return "fold-redirections";
+
+    }
+
+    @Override
+    public boolean isLocal() {
+
+        return true;
+
+    }
+
+    @Override
+    public Program apply( Program program ) {
+
+        return this.apply( program, Metrics.DISABLED );
+
+    }
+
+    @Override
+    public Program apply( Program program, Metrics metrics ) {
+
+        Program folded = new Program( program.size() );
+        int folds = 0x0;
+
+        for ( int i = 0x0; i < program.size(); i++ ) {
+
+            Operation operation = program.operation( i );
+
+            if ( operation == Operation.MOVE && folded.last() == Operation.MOVE ) {
+
+                int index = folded.size() - 0x1;
+                folded.setValue( index, folded.value( index ) + program.value( i ) );
+                folds++;
+
+            } else {
+
+                folded.append( program, i );
+
+            }
+
+            if ( folded.last() == Operation.MOVE && folded.value( folded.size() - 0x1 ) == 0x0 ) {
+
+                folded.removeLast();
+
+            }
+
+        }
+
+        metrics.count( this.name() + ".fold", folds );
+        return folded;
+
+    }
+
+}
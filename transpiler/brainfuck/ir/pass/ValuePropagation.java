@@ -0,0 +1,544 @@
+package transpiler.brainfuck.ir.pass;
+
+import transpiler.brainfuck.ir.Operation;
+import transpiler.brainfuck.ir.Pass;
+import transpiler.brainfuck.ir.Program;
+import transpiler.brainfuck.metrics.Metrics;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Many cells have a value that is known at compile time: Every cell is zero initially,
+ * the cell of a loop is zero once the loop exits and a cell that has been set keeps its value
+ * until it is changed again. This pass keeps track of these values (as an abstract interpretation
+ * of the program) and makes use of them:
+ *
+ *      -> loops whose cell is known to be zero are discarded (e.g. loops at the beginning of the program
+ *         or loops that directly follow another one)
+ *      -> additions to (and multiplications into) cells whose value is known become assignments,
+ *         multiplications by a known factor become additions and those by zero are discarded
+ *      -> assignments of the value a cell already has are discarded
+ *      -> scans that start at a cell which is known to be zero become redirections
+ *      -> loops whose cell is known not to be zero are marked as entered (see Operation),
+ *         so that the emitters skip checking their condition the first time
+ *
+ * Loops don't have to be iterated until their values settle: Within a loop whose body doesn't
+ * move the pointer (in total), only the cells its body changes are unknown, as long as their values
+ * aren't known not to change; any other loop (e.g. one that scans) makes all cells unknown.
+ *
+ * Afterwards, changes that are overwritten before they are read are discarded, too.
+ * That only happens within straight-line code without input or output in between,
+ * so that a program that leaves the tape still does so before printing anything else.
+ */
+public class ValuePropagation implements Pass {
+
+    private static final int ROUNDS = 0x4;
+
+    // The patterns that are counted while propagating (see Metrics), by their index into the hits
+    private static final String[] PATTERNS = { "loop", "assignment", "redundant", "scan" };
+    private static final int LOOP = 0x0;
+    private static final int ASSIGNMENT = 0x1;
+    private static final int REDUNDANT = 0x2;
+    private static final int SCAN = 0x3;
+
+    @Override
+    public String name() {
+
+        return "propagate-values";
+
+    }
+
+    @Override
+    public Program apply( Program program ) {
+
+        return this.apply( program, Metrics.DISABLED );
+
+    }
+
+    /**
+     * Propagates the values, just like above, counting the loops, assignments and scans it has discarded
+     * or replaced as well as the discarded stores (summed up over all rounds).
+     */
+    @Override
+    public Program apply( Program program, Metrics metrics ) {
+
+        long[] hits = new long[ PATTERNS.length ];
+        long stores = 0x0;
+
+        /*
+        Discarding changes might reveal further known values (e.g. the assignment
+        that follows a discarded one might assign the value its cell had before), and vice versa.
+         */
+        for ( int round = 0x0; round < ROUNDS; round++ ) {
+
+            Program propagated = ValuePropagation.propagate( program, hits );
+            Program eliminated = ValuePropagation.eliminate( propagated );
+            stores += propagated.size() - eliminated.size();
+
+            if ( eliminated.size() == program.size() ) {
+
+                program = eliminated;
+                break;
+
+            }
+
+            program = eliminated;
+
+        }
+
+        for ( int i = 0x0; i < PATTERNS.length; i++ ) {
+
+            metrics.count( this.name() + "." + PATTERNS[ i ], hits[ i ] );
+
+        }
+
+        metrics.count( this.name() + ".store", stores );
+
+        return program;
+
+    }
+
+    /*
+    Propagates the known values once, counting the patterns that have matched into the given hits.
+     */
+    private static Program propagate( Program program, long[] hits ) {
+
+        Program propagated = new Program( program.size() );
+        Ranges ranges = new Ranges( program );
+        Cells cells = new Cells();
+        Deque< Cells > heads = new ArrayDeque<>();
+        int index = 0x0;
+
+        while ( index < program.size() ) {
+
+            int value = program.value( index );
+            int offset = program.offset( index );
+            int origin = program.origin( index );
+
+            switch ( program.operation( index ) ) {
+
+                case ADD -> {
+
+                    int known = cells.get( offset );
+
+                    if ( known >= 0x0 ) {
+
+                        ValuePropagation.append( propagated, Operation.SET, ( known + value ) & 0xFF, offset, program, index );
+                        cells.set( offset, ( known + value ) & 0xFF );
+                        hits[ ASSIGNMENT ]++;
+
+                    } else {
+
+                        propagated.append( program, index );
+
+                    }
+
+                }
+
+                case SET -> {
+
+                    if ( cells.get( offset ) != ( value & 0xFF ) ) {
+
+                        propagated.append( program, index );
+                        cells.set( offset, value & 0xFF );
+
+                    } else {
+
+                        hits[ REDUNDANT ]++;
+
+                    }
+
+                }
+
+                case MULTIPLY -> {
+
+                    int factor = cells.get( origin );
+                    int known = cells.get( offset );
+
+                    if ( factor > 0x0 && known >= 0x0 ) {
+
+                        ValuePropagation.append( propagated, Operation.SET, ( known + factor * value ) & 0xFF, offset, program, index );
+                        cells.set( offset, ( known + factor * value ) & 0xFF );
+                        hits[ ASSIGNMENT ]++;
+
+                    } else if ( factor > 0x0 && ( ( factor * value ) & 0xFF ) != 0x0 ) {
+
+                        ValuePropagation.append( propagated, Operation.ADD, ( factor * value ) & 0xFF, offset, program, index );
+
+                    } else if ( factor < 0x0 ) {
+
+                        propagated.append( program, index );
+                        cells.forget( offset );
+
+                    }
+
+                }
+
+                case INPUT -> {
+
+                    propagated.append( program, index );
+                    cells.forget( offset );
+
+                }
+
+                case MOVE -> {
+
+                    propagated.append( program, index );
+                    cells.move( value );
+
+                }
+
+                case SCAN -> {
+
+                    if ( cells.get( offset ) == 0x0 ) {
+
+                        if ( offset != 0x0 ) {
+
+                            ValuePropagation.append( propagated, Operation.MOVE, offset, 0x0, program, index );
+
+                        }
+
+                        cells.move( offset );
+                        hits[ SCAN ]++;
+
+                    } else {
+
+                        propagated.append( program, index );
+                        cells.forget();
+                        cells.set( 0x0, 0x0 );
+
+                    }
+
+                }
+
+                case OPEN -> {
+
+                    int known = cells.get( 0x0 );
+
+                    if ( known == 0x0 ) {
+
+                        hits[ LOOP ]++;
+                        index = program.partner( index ) + 0x1;
+                        continue;
+
+                    }
+
+                    if ( ranges.isBalanced( index ) ) {
+
+                        cells.forget( ranges.low( index ), ranges.high( index ) );
+
+                    } else {
+
+                        cells.forget();
+
+                    }
+
+                    ValuePropagation.append( propagated, Operation.OPEN, ( known > 0x0 ? 0x1 : 0x0 ), 0x0, program, index );
+                    heads.push( cells.copy() );
+
+                }
+
+                case CLOSE -> {
+
+                    propagated.append( program, index );
+                    cells = heads.pop();
+                    cells.set( 0x0, 0x0 );
+
+                }
+
+                default -> propagated.append( program, index );
+
+            }
+
+            index++;
+
+        }
+
+        return propagated;
+
+    }
+
+    /*
+    Discards the changes that are overwritten (by an assignment) before they are read, going backwards
+    through straight-line code while remembering which cells are assigned before being read.
+     */
+    private static Program eliminate( Program program ) {
+
+        boolean[] dead = new boolean[ program.size() ];
+        Set< Integer > overwritten = new HashSet<>();
+
+        for ( int i = program.size() - 0x1; i >= 0x0; i-- ) {
+
+            int offset = program.offset( i );
+
+            switch ( program.operation( i ) ) {
+
+                case SET -> dead[ i ] = !overwritten.add( offset );
+                case ADD -> dead[ i ] = overwritten.contains( offset );
+
+                case MULTIPLY -> {
+
+                    dead[ i ] = overwritten.contains( offset );
+
+                    if ( !dead[ i ] ) {
+
+                        overwritten.remove( program.origin( i ) );
+
+                    }
+
+                }
+
+                default -> overwritten.clear();
+
+            }
+
+        }
+
+        Program eliminated = new Program( program.size() );
+
+        for ( int i = 0x0; i < program.size(); i++ ) {
+
+            if ( !dead[ i ] ) {
+
+                eliminated.append( program, i );
+
+            }
+
+        }
+
+        return eliminated;
+
+    }
+
+    /*
+    Appends an instruction that replaces the one at the given index (and keeps its position).
+     */
+    private static void append( Program propagated, Operation operation, int value, int offset, Program program, int index ) {
+
+        propagated.append( operation, value, offset );
+        propagated.setPosition( propagated.size() - 0x1, program.position( index ) );
+
+    }
+
+    /**
+     * The cells whose value is known, relative to the cell the pointer referred to initially
+     * (or since the pointer has been moved by an unknown distance).
+     * Cells that aren't held are zero as long as nothing but known distances have been moved,
+     * otherwise they are unknown.
+     */
+    private static final class Cells {
+
+        /*
+        Beyond this amount of cells, all of them become unknown
+        (which keeps copying them at the beginning of each loop cheap).
+         */
+        private static final int LIMIT = 0x400;
+
+        // The values of the cells, or -1 if a cell is unknown
+        private final Map< Integer, Integer > values;
+        private boolean zeros;
+        private int pointer;
+
+        Cells() {
+
+            this( new HashMap<>(), true, 0x0 );
+
+        }
+
+        private Cells( Map< Integer, Integer > values, boolean zeros, int pointer ) {
+
+            this.values = values;
+            this.zeros = zeros;
+            this.pointer = pointer;
+
+        }
+
+        /**
+         * Returns the value of the cell at the given offset, or -1 if it is unknown.
+         */
+        int get( int offset ) {
+
+            return this.values.getOrDefault( this.pointer + offset, ( this.zeros ? 0x0 : -0x1 ) );
+
+        }
+
+        void set( int offset, int value ) {
+
+            this.values.put( this.pointer + offset, value );
+
+            if ( this.values.size() > LIMIT ) {
+
+                this.forget();
+
+            }
+
+        }
+
+        void forget( int offset ) {
+
+            if ( this.zeros ) {
+
+                this.set( offset, -0x1 );
+
+            } else {
+
+                this.values.remove( this.pointer + offset );
+
+            }
+
+        }
+
+        /*
+        Forgets the cells from the given low to the given high offset (if there are few of them)
+        or all cells.
+         */
+        void forget( int low, int high ) {
+
+            if ( low > high ) {
+
+                return;
+
+            }
+
+            if ( this.zeros && high - low >= 0x40 ) {
+
+                this.forget();
+
+            } else {
+
+                for ( int offset = low; offset <= high; offset++ ) {
+
+                    this.forget( offset );
+
+                }
+
+            }
+
+        }
+
+        void forget() {
+
+            this.values.clear();
+            this.zeros = false;
+
+        }
+
+        void move( int distance ) {
+
+            this.pointer += distance;
+
+        }
+
+        Cells copy() {
+
+            return new Cells( new HashMap<>( this.values ), this.zeros, this.pointer );
+
+        }
+
+    }
+
+    /**
+     * The range of cells each loop might change (relative to the cell of the loop) and whether
+     * its body moves the pointer in total (or by an unknown distance), which is determined for all loops
+     * at once, since the range of a loop encloses the ranges of the loops within.
+     */
+    private static final class Ranges {
+
+        private final int[] lows;
+        private final int[] highs;
+        private final boolean[] balanced;
+
+        Ranges( Program program ) {
+
+            this.lows = new int[ program.size() ];
+            this.highs = new int[ program.size() ];
+            this.balanced = new boolean[ program.size() ];
+
+            // The loops that currently are open and the distance the pointer has been moved within each
+            Deque< Integer > loops = new ArrayDeque<>();
+            Deque< Integer > distances = new ArrayDeque<>();
+
+            for ( int i = 0x0; i < program.size(); i++ ) {
+
+                if ( loops.isEmpty() && program.operation( i ) != Operation.OPEN ) {
+
+                    continue;
+
+                }
+
+                switch ( program.operation( i ) ) {
+
+                    case ADD, SET, MULTIPLY, INPUT -> this.widen( loops.peek(), distances.peek() + program.offset( i ) );
+                    case MOVE -> distances.push( distances.pop() + program.value( i ) );
+                    case SCAN -> this.balanced[ loops.peek() ] = false;
+
+                    case OPEN -> {
+
+                        this.lows[ i ] = Integer.MAX_VALUE;
+                        this.highs[ i ] = Integer.MIN_VALUE;
+                        this.balanced[ i ] = true;
+                        loops.push( i );
+                        distances.push( 0x0 );
+
+                    }
+
+                    case CLOSE -> {
+
+                        int open = loops.pop();
+                        this.balanced[ open ] &= ( distances.pop() == 0x0 );
+
+                        if ( !loops.isEmpty() ) {
+
+                            int enclosing = loops.peek();
+                            this.balanced[ enclosing ] &= this.balanced[ open ];
+
+                            if ( this.lows[ open ] <= this.highs[ open ] ) {
+
+                                this.widen( enclosing, distances.peek() + this.lows[ open ] );
+                                this.widen( enclosing, distances.peek() + this.highs[ open ] );
+
+                            }
+
+                        }
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        private void widen( int open, int offset ) {
+
+            this.lows[ open ] = Math.min( this.lows[ open ], offset );
+            this.highs[ open ] = Math.max( this.highs[ open ], offset );
+
+        }
+
+        boolean isBalanced( int open ) {
+
+            return this.balanced[ open ];
+
+        }
+
+        int low( int open ) {
+
+            return this.lows[ open ];
+
+        }
+
+        int high( int open ) {
+
+            return this.highs[ open ];
+
+        }
+
+    }
+
+}
@@ -0,0 +1,446 @@
+package transpiler.brainfuck.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The metrics of a transpilation tell where its time goes and how effective the optimizations are:
+ *
+ *      -> the time each stage has taken (validation, parsing, each pass and emission), in nanoseconds;
+ *         stages that run concurrently (see Chunks) add up their times
+ *      -> how often each pattern of the passes has matched (e.g. 'recognize-idioms.clear'),
+ *         named by the pass and the pattern
+ *      -> the amount of operators within the source and of the instructions, syscalls and bytes
+ *         that have been emitted (instructions of the runtime included)
+ *      -> the amount of memory that has been allocated by the transpiling thread and by the threads
+ *         it has delegated work to (see delegate)
+ *
+ * Each stage is recorded by the flight recorder as well (see StageEvent), as is the whole transpilation
+ * once it is finished (see TranspilationEvent), and tells the listeners (see MetricsListener).
+ * Metrics are written as JSON (see json), e.g. by '--stats'.
+ *
+ * The stages and patterns might be recorded by several threads at the same time.
+ */
+public class Metrics {
+
+    /**
+     * Metrics that don't record anything, for programs whose metrics nobody is interested in;
+     * they are shared by all of them, hence they never change.
+     */
+    public static final Metrics DISABLED = new Metrics( null, List.of(), false );
+
+    private final String source;
+    private final List< MetricsListener > listeners;
+    private final boolean enabled;
+
+    private final Map< String, Long > stages = new LinkedHashMap<>();
+    private final Map< String, Long > patterns = new LinkedHashMap<>();
+    private long operators;
+    private long instructions;
+    private long syscalls;
+    private long bytes;
+    private long allocated;
+    private long delegated;
+
+    private final long thread;
+    private final long allocatedBefore;
+    private final TranspilationEvent event;
+
+    /**
+     * Creates the metrics of the transpilation of the given source (which may be null, e.g. if
+     * the source is held in memory), which tell the given listeners.
+     */
+    public Metrics( String source, List< MetricsListener > listeners ) {
+
+        this( source, listeners, true );
+
+    }
+
+    private Metrics( String source, List< MetricsListener > listeners, boolean enabled ) {
+
+        this.source = source;
+        this.listeners = List.copyOf( listeners );
+        this.enabled = enabled;
+        this.thread = Thread.currentThread().getId();
+        this.allocatedBefore = ( enabled ? Metrics.allocated( this.thread ) : 0x0 );
+        this.event = new TranspilationEvent();
+        this.event.begin();
+
+    }
+
+    /**
+     * Times the given stage, which is recorded once it has been run (even if it fails), and returns its result.
+     */
+    public < T, E extends Exception > T time( String stage, Stage< T, E > body ) throws E {
+
+        StageEvent event = new StageEvent();
+        event.begin();
+        long start = System.nanoTime();
+
+        try {
+
+            return body.run();
+
+        } finally {
+
+            long nanos = System.nanoTime() - start;
+            event.end();
+
+            if ( this.enabled && event.shouldCommit() ) {
+
+                event.source = this.source;
+                event.stage = stage;
+                event.commit();
+
+            }
+
+            this.record( stage, nanos );
+
+        }
+
+    }
+
+    /**
+     * Times the given stage, just like above, which doesn't have a result.
+     */
+    public < E extends Exception > void time( String stage, Step< E > body ) throws E {
+
+        this.time( stage, () -> {
+
+            body.run();
+            return null;
+
+        } );
+
+    }
+
+    /**
+     * Runs the given work on behalf of the transpilation (e.g. a chunk on another thread, see Chunks),
+     * whose allocations count as well, and returns its result.
+     */
+    public < T, E extends Exception > T delegate( Stage< T, E > work ) throws E {
+
+        long thread = Thread.currentThread().getId();
+
+        // Work that is run by the transpiling thread itself (e.g. a chunk that is joined before it is stolen) is counted anyway
+        if ( !this.enabled || thread == this.thread ) {
+
+            return work.run();
+
+        }
+
+        long before = Metrics.allocated( thread );
+
+        try {
+
+            return work.run();
+
+        } finally {
+
+            long after = Metrics.allocated( thread );
+
+            synchronized ( this ) {
+
+                this.delegated += ( before < 0x0 ? 0x0 : after - before );
+
+            }
+
+        }
+
+    }
+
+    public void count( String pattern ) {
+
+        this.count( pattern, 0x1 );
+
+    }
+
+    public synchronized void count( String pattern, long amount ) {
+
+        if ( this.enabled ) {
+
+            this.patterns.merge( pattern, amount, Long::sum );
+
+        }
+
+    }
+
+    private void record( String stage, long nanos ) {
+
+        if ( !this.enabled ) {
+
+            return;
+
+        }
+
+        synchronized ( this ) {
+
+            this.stages.merge( stage, nanos, Long::sum );
+
+        }
+
+        for ( MetricsListener listener : this.listeners ) {
+
+            listener.stage( stage, nanos );
+
+        }
+
+    }
+
+    public synchronized void setOperators( long operators ) {
+
+        if ( this.enabled ) {
+
+            this.operators = operators;
+
+        }
+
+    }
+
+    public synchronized void setInstructions( long instructions ) {
+
+        if ( this.enabled ) {
+
+            this.instructions = instructions;
+
+        }
+
+    }
+
+    public synchronized void setSyscalls( long syscalls ) {
+
+        if ( this.enabled ) {
+
+            this.syscalls = syscalls;
+
+        }
+
+    }
+
+    public synchronized void setBytes( long bytes ) {
+
+        if ( this.enabled ) {
+
+            this.bytes = bytes;
+
+        }
+
+    }
+
+    /**
+     * Finishes the transpilation, which measures the memory, records the whole transpilation
+     * and tells the listeners. It has to be called by the thread that has created the metrics.
+     */
+    public void finish() {
+
+        if ( !this.enabled ) {
+
+            return;
+
+        }
+
+        synchronized ( this ) {
+
+            long allocated = Metrics.allocated( this.thread );
+            this.allocated = ( allocated < 0x0 ? -0x1 : allocated - this.allocatedBefore + this.delegated );
+
+        }
+
+        this.event.end();
+
+        if ( this.event.shouldCommit() ) {
+
+            this.event.source = this.source;
+            this.event.operators = this.operators;
+            this.event.instructions = this.instructions;
+            this.event.syscalls = this.syscalls;
+            this.event.bytes = this.bytes;
+            this.event.allocated = this.allocated;
+            this.event.commit();
+
+        }
+
+        for ( MetricsListener listener : this.listeners ) {
+
+            listener.transpiled( this );
+
+        }
+
+    }
+
+    public String source() {
+
+        return this.source;
+
+    }
+
+    /**
+     * Returns the time each stage has taken (in nanoseconds), in the order the stages have been finished first.
+     */
+    public synchronized Map< String, Long > stages() {
+
+        return new LinkedHashMap<>( this.stages );
+
+    }
+
+    /**
+     * Returns how often each pattern has matched, in the order the patterns have matched first.
+     */
+    public synchronized Map< String, Long > patterns() {
+
+        return new LinkedHashMap<>( this.patterns );
+
+    }
+
+    public synchronized long operators() {
+
+        return this.operators;
+
+    }
+
+    public synchronized long instructions() {
+
+        return this.instructions;
+
+    }
+
+    public synchronized long syscalls() {
+
+        return this.syscalls;
+
+    }
+
+    public synchronized long bytes() {
+
+        return this.bytes;
+
+    }
+
+    /**
+     * Returns the amount of bytes the transpiling thread (and the threads it has delegated work to) have allocated
+     * (or -1 if the JVM doesn't tell), which is known once the transpilation is finished.
+     */
+    public synchronized long allocated() {
+
+        return this.allocated;
+
+    }
+
+    /**
+     * Describes the metrics as (single line) JSON object, e.g.
+     * {"source":"a.bf","stages":{"validation":1200,...},"patterns":{"recognize-idioms.clear":3,...},"operators":42,...}
+     */
+    public synchronized String json() {
+
+        StringBuilder json = new StringBuilder( "{" );
+
+        if ( this.source != null ) {
+
+            Metrics.string( "source", json ).append( ':' );
+            Metrics.string( this.source, json ).append( ',' );
+
+        }
+
+        Metrics.string( "stages", json ).append( ':' );
+        Metrics.object( this.stages, json ).append( ',' );
+        Metrics.string( "patterns", json ).append( ':' );
+        Metrics.object( this.patterns, json ).append( ',' );
+        json.append( "\"operators\":" ).append( this.operators ).append( ',' );
+        json.append( "\"instructions\":" ).append( this.instructions ).append( ',' );
+        json.append( "\"syscalls\":" ).append( this.syscalls ).append( ',' );
+        json.append( "\"bytes\":" ).append( this.bytes ).append( ',' );
+        json.append( "\"allocated\":" ).append( this.allocated );
+
+        return json.append( '}' ).toString();
+
+    }
+
+    private static StringBuilder object( Map< String, Long > values, StringBuilder json ) {
+
+        json.append( '{' );
+
+        for ( Map.Entry< String, Long > value : values.entrySet() ) {
+
+            if ( json.charAt( json.length() - 0x1 ) != '{' ) {
+
+                json.append( ',' );
+
+            }
+
+            Metrics.string( value.getKey(), json ).append( ':' ).append( value.getValue() );
+
+        }
+
+        return json.append( '}' );
+
+    }
+
+    private static StringBuilder string( String value, StringBuilder json ) {
+
+        json.append( '"' );
+
+        for ( int i = 0x0; i < value.length(); i++ ) {
+
+            char character = value.charAt( i );
+
+            if ( character == '"' || character == '\\' ) {
+
+                json.append( '\\' ).append( character );
+
+            } else if ( character < 0x20 ) {
+
+                json.append( String.format( "\\u%04x", ( int ) character ) );
+
+            } else {
+
+                json.append( character );
+
+            }
+
+        }
+
+        return json.append( '"' );
+
+    }
+
+    /*
+    Not each JVM tells how much memory a thread has allocated (it's an extension of HotSpot).
+     */
+    private static long allocated( long thread ) {
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        if ( threads instanceof com.sun.management.ThreadMXBean allocations && allocations.isThreadAllocatedMemorySupported() ) {
+
+            return allocations.getThreadAllocatedBytes( thread );
+
+        }
+
+        return -0x1;
+
+    }
+
+    /**
+     * A stage (or any other work) of a transpilation that yields a result.
+     */
+    @FunctionalInterface
+    public interface Stage< T, E extends Exception > {
+
+        T run() throws E;
+
+    }
+
+    /**
+     * A stage of a transpilation that doesn't yield any result.
+     */
+    @FunctionalInterface
+    public interface Step< E extends Exception > {
+
+        void run() throws E;
+
+    }
+
+}
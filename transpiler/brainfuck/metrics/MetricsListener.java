@@ -0,0 +1,26 @@
+package transpiler.brainfuck.metrics;
+
+/**
+ * A listener is told about the metrics of each program a transpiler transpiles (see Transpiler.listen),
+ * e.g. in order to collect them across a corpus.
+ *
+ * Listeners might be called by several threads at the same time (e.g. by a Batch, or by the chunks
+ * of a huge program, see Chunks), hence they have to be thread-safe.
+ */
+@FunctionalInterface
+public interface MetricsListener {
+
+    /**
+     * Tells that a stage (validation, parsing, a pass or emission) has taken the given time
+     * (in nanoseconds), as soon as it has finished.
+     */
+    default void stage( String stage, long nanos ) {
+
+    }
+
+    /**
+     * Tells the metrics of a program once it has been transpiled.
+     */
+    void transpiled( Metrics metrics );
+
+}
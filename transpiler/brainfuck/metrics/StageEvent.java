@@ -0,0 +1,26 @@
+package transpiler.brainfuck.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The flight recorder event of a stage of a transpilation, whose duration is the time the stage has taken.
+ */
+@Name( "transpiler.brainfuck.Stage" )
+@Label( "Transpiler Stage" )
+@Category( { "Brainfuck", "Transpiler" } )
+@Description( "A stage of a transpilation: validation, parsing, an optimization pass or emission" )
+@StackTrace( false )
+class StageEvent extends Event {
+
+    @Label( "Source" )
+    String source;
+
+    @Label( "Stage" )
+    String stage;
+
+}
@@ -0,0 +1,44 @@
+package transpiler.brainfuck.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The flight recorder event of a whole transpilation, which spans its stages (see StageEvent).
+ */
+@Name( "transpiler.brainfuck.Transpilation" )
+@Label( "Transpilation" )
+@Category( { "Brainfuck", "Transpiler" } )
+@Description( "The transpilation of a program, from validating its source to emitting it" )
+@StackTrace( false )
+class TranspilationEvent extends Event {
+
+    @Label( "Source" )
+    String source;
+
+    @Label( "Operators" )
+    @Description( "The amount of operators within the source" )
+    long operators;
+
+    @Label( "Instructions" )
+    @Description( "The amount of instructions of the optimized program" )
+    long instructions;
+
+    @Label( "Syscall Sites" )
+    @Description( "The amount of calls into the runtime that might issue a syscall" )
+    long syscalls;
+
+    @Label( "Emitted" )
+    @DataAmount
+    long bytes;
+
+    @Label( "Allocated" )
+    @DataAmount
+    long allocated;
+
+}
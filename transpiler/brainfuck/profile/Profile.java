@@ -0,0 +1,162 @@
+package transpiler.brainfuck.profile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A profile tells how often each loop of an instrumented program (see --instrument) has been
+ * entered and how many iterations it has run in total, which is written by the program itself
+ * once it exits gracefully.
+ *
+ * Its file consists of quad words (little endian), so that the program can write it
+ * straight from its data and its counters:
+ *
+ *      -> the magic number ('BFPROF01')
+ *      -> the amount of loops
+ *      -> the position of each loop within the source (-1 if it is unknown)
+ *      -> the entries and the iterations of each loop
+ *
+ * Loops are listed in the order they begin within the transpiled program; since an optimization
+ * might duplicate a loop (see PartialEvaluation), several loops might share the same position.
+ * Loops that have been executed at compile time or that have been replaced entirely
+ * (e.g. by a multiplication) don't appear at all.
+ *
+ * A profile guides the emission of the very same program (see --profile and Layout):
+ * The loops that run a considerable share of all iterations are hot.
+ */
+public class Profile {
+
+    public static final long MAGIC = 0x3130464F_52504642L;
+
+    /**
+     * A loop is hot if it runs at least this fraction of all iterations
+     * and at least the given amount of iterations (which leaves short-running programs alone).
+     */
+    private static final int HOT_SHARE = 0x40;
+    private static final long HOT_MINIMUM = 0x100;
+
+    private final long[] positions;
+    private final long[] entries;
+    private final long[] iterations;
+
+    public Profile( long[] positions, long[] entries, long[] iterations ) {
+
+        this.positions = positions;
+        this.entries = entries;
+        this.iterations = iterations;
+
+    }
+
+    public static Profile read( Path file ) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.wrap( Files.readAllBytes( file ) ).order( ByteOrder.LITTLE_ENDIAN );
+
+        if ( buffer.remaining() < 0x10 || buffer.getLong() != MAGIC ) {
+
+            throw new IOException( String.format( "File '%s' is not a profile.", file ) );
+
+        }
+
+        long loops = buffer.getLong();
+
+        if ( loops < 0x0 || loops * 0x18 != buffer.remaining() ) {
+
+            throw new IOException( String.format( "Profile '%s' is truncated.", file ) );
+
+        }
+
+        long[] positions = new long[ ( int ) loops ];
+        long[] entries = new long[ positions.length ];
+        long[] iterations = new long[ positions.length ];
+
+        for ( int i = 0x0; i < positions.length; i++ ) {
+
+            positions[ i ] = buffer.getLong();
+
+        }
+
+        for ( int i = 0x0; i < positions.length; i++ ) {
+
+            entries[ i ] = buffer.getLong();
+            iterations[ i ] = buffer.getLong();
+
+        }
+
+        return new Profile( positions, entries, iterations );
+
+    }
+
+    public int loops() {
+
+        return this.positions.length;
+
+    }
+
+    public long position( int loop ) {
+
+        return this.positions[ loop ];
+
+    }
+
+    public long entries( int loop ) {
+
+        return this.entries[ loop ];
+
+    }
+
+    public long iterations( int loop ) {
+
+        return this.iterations[ loop ];
+
+    }
+
+    /**
+     * Returns the (ascending) positions of the hot loops, counting the loops that share a position as one.
+     */
+    public long[] hot() {
+
+        Map< Long, Long > iterations = new HashMap<>();
+
+        for ( int i = 0x0; i < this.positions.length; i++ ) {
+
+            if ( this.positions[ i ] >= 0x0 ) {
+
+                iterations.merge( this.positions[ i ], this.iterations[ i ], Long::sum );
+
+            }
+
+        }
+
+        long threshold = Math.max( this.iterations() / HOT_SHARE, HOT_MINIMUM );
+
+        return iterations.entrySet().stream()
+                .filter( entry -> entry.getValue() >= threshold )
+                .mapToLong( Map.Entry::getKey )
+                .sorted()
+                .toArray();
+
+    }
+
+    /**
+     * Returns the sum of all iterations, which is what each loop's share is measured against.
+     */
+    public long iterations() {
+
+        long total = 0x0;
+
+        for ( long count : this.iterations ) {
+
+            total += count;
+
+        }
+
+        return total;
+
+    }
+
+}
@@ -0,0 +1,180 @@
+package transpiler.brainfuck.profile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The report maps a profile (see Profile) back to the source of the program it has been
+ * written by and lists its loops, the hottest (the one with the most iterations) first:
+ *
+ *      java transpiler.brainfuck.profile.Report <source> <profile> [<limit>]
+ *
+ * Each loop is described by its line and column, how often it has been entered,
+ * how many iterations it has run (in total and per entry), its share of all iterations
+ * and its text (without comments, abbreviated if it is long).
+ * Loops that share the same position (see Profile) are merged.
+ */
+public class Report {
+
+    private static final int DEFAULT_LIMIT = 0x14;
+    private static final int TEXT_LIMIT = 0x30;
+
+    public static void main( String ... arguments ) throws IOException {
+
+        if ( arguments.length < 0x2 || arguments.length > 0x3 ) {
+
+            throw new IllegalArgumentException( "Illegal argument count.\nArguments: <source> <profile> [<limit>]" );
+
+        }
+
+        byte[] source = Files.readAllBytes( Paths.get( arguments[ 0x0 ] ) );
+        Profile profile = Profile.read( Paths.get( arguments[ 0x1 ] ) );
+        int limit = ( arguments.length == 0x3 ? Integer.parseInt( arguments[ 0x2 ] ) : DEFAULT_LIMIT );
+
+        Report.write( source, profile, limit, System.out );
+
+    }
+
+    public static void write( byte[] source, Profile profile, int limit, PrintStream output ) {
+
+        // Entries and iterations of each position, in the order the loops begin
+        Map< Long, long[] > loops = new LinkedHashMap<>();
+
+        for ( int i = 0x0; i < profile.loops(); i++ ) {
+
+            long[] counts = loops.computeIfAbsent( profile.position( i ), position -> new long[ 0x2 ] );
+            counts[ 0x0 ] += profile.entries( i );
+            counts[ 0x1 ] += profile.iterations( i );
+
+        }
+
+        Long[] positions = loops.keySet().toArray( new Long[ 0x0 ] );
+        Arrays.sort( positions, Comparator.comparingLong( ( Long position ) -> loops.get( position )[ 0x1 ] ).reversed() );
+
+        long total = Math.max( profile.iterations(), 0x1 );
+
+        output.printf( "%-12s %16s %18s %12s %7s  %s%n", "location", "entries", "iterations", "per entry", "share", "loop" );
+
+        for ( int i = 0x0; i < Math.min( limit, positions.length ); i++ ) {
+
+            long position = positions[ i ];
+            long[] counts = loops.get( position );
+
+            output.printf( "%-12s %16d %18d %12.1f %6.2f%%  %s%n",
+                    Report.location( source, position ),
+                    counts[ 0x0 ],
+                    counts[ 0x1 ],
+                    ( counts[ 0x0 ] == 0x0 ? 0.0 : ( double ) counts[ 0x1 ] / counts[ 0x0 ] ),
+                    100.0 * counts[ 0x1 ] / total,
+                    Report.text( source, position ) );
+
+        }
+
+        if ( positions.length > limit ) {
+
+            output.printf( "(%d more loops)%n", positions.length - limit );
+
+        }
+
+    }
+
+    /*
+    The line and column (both starting at one) of the given position.
+     */
+    private static String location( byte[] source, long position ) {
+
+        if ( position < 0x0 || position >= source.length ) {
+
+            return "?";
+
+        }
+
+        int line = 0x1;
+        int column = 0x1;
+
+        for ( int i = 0x0; i < position; i++ ) {
+
+            if ( source[ i ] == '\n' ) {
+
+                line++;
+                column = 0x1;
+
+            } else {
+
+                column++;
+
+            }
+
+        }
+
+        return line + ":" + column;
+
+    }
+
+    /*
+    The operators of the loop that begins at the given position, up to its end.
+     */
+    private static String text( byte[] source, long position ) {
+
+        if ( position < 0x0 || position >= source.length || source[ ( int ) position ] != '[' ) {
+
+            return "?";
+
+        }
+
+        StringBuilder text = new StringBuilder();
+        int depth = 0x0;
+
+        for ( int i = ( int ) position; i < source.length; i++ ) {
+
+            switch ( source[ i ] ) {
+
+                case '+', '-', '>', '<', '.', ',' -> text.append( ( char ) source[ i ] );
+                case '[' -> {
+
+                    text.append( '[' );
+                    depth++;
+
+                }
+
+                case ']' -> {
+
+                    text.append( ']' );
+                    depth--;
+
+                }
+
+                default -> {
+
+                    continue;
+
+                }
+
+            }
+
+            if ( depth == 0x0 ) {
+
+                break;
+
+            }
+
+            if ( text.length() > TEXT_LIMIT ) {
+
+                return text.substring( 0x0, TEXT_LIMIT ) + "...";
+
+            }
+
+        }
+
+        return text.toString();
+
+    }
+
+}
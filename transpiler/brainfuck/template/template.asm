@@ -2,28 +2,138 @@ global _start
 
 section .text
 _start:
+%CPU_FEATURES%
+    ;allocate the tape surrounded by guard pages
+    ;(pages provided by the kernel are zeroed, hence there is no need to clear the cells)
+    mov     rsi, %TAPE_SIZE%+0x2*%GUARD_SIZE%
+    mov     rdi, 0x0
+    mov     rdx, 0x0
+    mov     r10, 0x4022
+    mov     r8, -0x1
+    mov     r9, 0x0
+    mov     rax, 0x9
+    syscall
+    cmp     rax, -0x1000
+    ja      allocation_error
 
-    ;initialize base pointer (rbp)
-    mov     rbp, rsp
+    ;prepare array index pointer and make the tape (but not the guard pages) accessible
+    lea     %POINTER_REGISTER%, [rax+%GUARD_SIZE%]
+    mov     rdi, %POINTER_REGISTER%
+    mov     rsi, %TAPE_SIZE%
+    mov     rdx, 0x3
+    mov     rax, 0xA
+    syscall
+    test    rax, rax
+    jnz     allocation_error
+
+    ;accessing a guard page (that is, leaving the tape) raises SIGSEGV which is reported
+    sub     rsp, 0x20
+    mov     rax, tape_error
+    mov     [rsp], rax
+    mov     qword [rsp+0x8], 0x4000000
+    mov     [rsp+0x10], rax
+    mov     qword [rsp+0x18], 0x0
+    mov     rdi, 0xB
+    mov     rsi, rsp
+    mov     rdx, 0x0
+    mov     r10, 0x8
+    mov     rax, 0xD
+    syscall
+    add     rsp, 0x20
 
-    ;set stack frame size and clear
-    mov     %STACK_SIZE_REGISTER%, %STACK_SIZE%
-.loop_clear:
-    cmp     %STACK_SIZE_REGISTER%, 0x0
-    je      .exit_clear
-    dec     rsp
-    dec     %STACK_SIZE_REGISTER%
-    mov     byte [rsp], 0x0
-    jmp     .loop_clear
-.exit_clear:
+    ;prepare output buffer length
+    xor     %OUTPUT_REGISTER%, %OUTPUT_REGISTER%
 
-    ;prepare array index pointer
-    mov     %POINTER_REGISTER%, rsp
+    ;prepare input buffer index and limit
+    xor     %INPUT_INDEX_REGISTER%, %INPUT_INDEX_REGISTER%
+    xor     %INPUT_LIMIT_REGISTER%, %INPUT_LIMIT_REGISTER%
 
     ;transpiled brainfuck source
 %SOURCE%
-    ;exit gracefully
+    ;flush remaining output, write the profile (if the program is instrumented) and exit gracefully
+    call    flush_output
+%PROFILE%
     mov     rax, 0x3C
     mov     rdi, 0x0
     syscall
-    ret
\ No newline at end of file
+    ret
+
+    ;write the output buffer to stdout (until it is empty or an error occurs)
+flush_output:
+    mov     rsi, output_buffer
+.loop_flush:
+    test    %OUTPUT_REGISTER%, %OUTPUT_REGISTER%
+    jz      .exit_flush
+    mov     rdx, %OUTPUT_REGISTER%
+    mov     rdi, 0x1
+    mov     rax, 0x1
+    syscall
+    test    rax, rax
+    jle     .exit_flush
+    add     rsi, rax
+    sub     %OUTPUT_REGISTER%, rax
+    jmp     .loop_flush
+.exit_flush:
+    xor     %OUTPUT_REGISTER%, %OUTPUT_REGISTER%
+    ret
+
+    ;read one character from the input buffer into the cell at rdi
+    ;(the buffer is refilled once it is exhausted, output is written beforehand)
+read_input:
+    cmp     %INPUT_INDEX_REGISTER%, %INPUT_LIMIT_REGISTER%
+    jb      .exit_refill
+    push    rdi
+    call    flush_output
+    mov     rsi, input_buffer
+    mov     rdx, %INPUT_BUFFER_SIZE%
+    mov     rdi, 0x0
+    mov     rax, 0x0
+    syscall
+    pop     rdi
+    test    rax, rax
+    jle     .exit_input
+    xor     %INPUT_INDEX_REGISTER%, %INPUT_INDEX_REGISTER%
+    mov     %INPUT_LIMIT_REGISTER%, rax
+.exit_refill:
+    mov     al, [input_buffer+%INPUT_INDEX_REGISTER%]
+    inc     %INPUT_INDEX_REGISTER%
+    mov     [rdi], al
+    ret
+.exit_input:
+    ;no input left
+    %END_OF_INPUT%
+    ret
+
+%SCANS%
+    ;report that the pointer has left the tape (after writing the output so far) and fail
+tape_error:
+    call    flush_output
+    mov     rsi, tape_error_message
+    mov     rdx, tape_error_length
+    jmp     fail
+
+    ;report that the tape couldn't be allocated and fail
+allocation_error:
+    mov     rsi, allocation_error_message
+    mov     rdx, allocation_error_length
+
+fail:
+    mov     rdi, 0x2
+    mov     rax, 0x1
+    syscall
+    mov     rax, 0x3C
+    mov     rdi, 0x1
+    syscall
+
+section .bss
+output_buffer:  resb    %OUTPUT_BUFFER_SIZE%
+input_buffer:   resb    %INPUT_BUFFER_SIZE%
+avx2_supported: resb    0x1
+%PROFILE_COUNTERS%
+
+section .data
+tape_error_message:         db  "error: the pointer has left the tape", 0xA
+tape_error_length:          equ $-tape_error_message
+allocation_error_message:   db  "error: the tape could not be allocated", 0xA
+allocation_error_length:    equ $-allocation_error_message
+%DATA%
\ No newline at end of file
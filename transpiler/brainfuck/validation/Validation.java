@@ -0,0 +1,91 @@
+package transpiler.brainfuck.validation;
+
+import transpiler.brainfuck.validation.exception.ValidationException;
+
+import java.util.List;
+
+/**
+ * The result of validating a 'Brainfuck' program (see Validator):
+ *
+ *      -> the errors that have been found, in the order of their position
+ *      -> the bracket table, which holds for each bracket (in the order of their appearance)
+ *         the number of the bracket it is matched with or -1 if there is none
+ *      -> the amount of operators (including brackets)
+ *
+ * The bracket table lets the parser link loops without matching brackets again.
+ */
+public class Validation {
+
+    private final List< ValidationException > errors;
+    private final int[] brackets;
+    private final int count;
+    private final int operators;
+
+    public Validation( List< ValidationException > errors, int[] brackets, int count, int operators ) {
+
+        this.errors = errors;
+        this.brackets = brackets;
+        this.count = count;
+        this.operators = operators;
+
+        for ( int i = 0x1; i < errors.size(); i++ ) {
+
+            errors.get( 0x0 ).addSuppressed( errors.get( i ) );
+
+        }
+
+    }
+
+    public boolean isValid() {
+
+        return this.errors.isEmpty();
+
+    }
+
+    public List< ValidationException > errors() {
+
+        return this.errors;
+
+    }
+
+    /**
+     * Returns the bracket table, which might be longer than the amount of brackets.
+     */
+    public int[] brackets() {
+
+        return this.brackets;
+
+    }
+
+    /**
+     * Returns the amount of brackets.
+     */
+    public int count() {
+
+        return this.count;
+
+    }
+
+    /**
+     * Returns the amount of operators, that is, of characters that aren't comments.
+     */
+    public int operators() {
+
+        return this.operators;
+
+    }
+
+    /**
+     * Throws the first error (if there is any), which carries all further errors as suppressed ones.
+     */
+    public void check() throws ValidationException {
+
+        if ( !this.errors.isEmpty() ) {
+
+            throw this.errors.get( 0x0 );
+
+        }
+
+    }
+
+}
@@ -1,10 +1,19 @@
 package transpiler.brainfuck.validation;
 
-import transpiler.brainfuck.validation.exception.UnknownOperatorException;
 import transpiler.brainfuck.validation.exception.UnclosedBracketException;
+import transpiler.brainfuck.validation.exception.UnknownOperatorException;
 import transpiler.brainfuck.validation.exception.UnopenedBracketException;
-
-import java.util.Stack;
+import transpiler.brainfuck.validation.exception.ValidationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * Not each and every 'Brainfuck' program might be valid because either
@@ -12,72 +21,196 @@ import java.util.Stack;
  *
  * Therefore, there is need for a transpiler.brainfuck.validation tool.
  * This static implementation does exactly that:
- * It iterates over each operator and checks whether it is a valid character and whether
- * brackets are balanced.
+ * It iterates over each character exactly once and checks whether brackets are balanced
+ * and (in strict mode) whether it is a valid operator. Otherwise, following the usual convention,
+ * any character that isn't an operator is a comment and ignored.
  *
- * It throws a fitting exception if an error is found.
+ * The validator doesn't stop at the first error but reports all of them (see Validation).
+ * Apart from the bracket table and the errors themselves it doesn't allocate anything,
+ * hence it can validate huge programs, e.g. directly within a memory-mapped file.
  */
 public class Validator {
 
-    public static boolean isValid( String source ) throws UnknownOperatorException, UnclosedBracketException, UnopenedBracketException {
+    /*
+    Marks a bracket that is opened, but never closed, within the bracket table.
+     */
+    private static final int UNCLOSED = -0x2;
 
-        /*
-        This stack contains the indices of the opening brackets that are
-        found within the operator sequence.
-        If an opening bracket ('[') is found, its index is put onto the stack;
-        if, however, a closing bracket (']') is found, the topmost element is popped.
+    /**
+     * Validates the remainder of the given buffer; its position is left unchanged
+     * and indices are relative to it.
+     */
+    public static Validation validate( ByteBuffer source, boolean strict ) {
 
-        By using this technique, it is simple to determine bracket pairs and
-        whether there a brackets left over and at which position in the sequence.
+        List< ValidationException > errors = new ArrayList<>( 0x0 );
+
+        /*
+        The bracket table doubles as the stack of the opening brackets that are still open:
+        The entry of an open bracket refers to the bracket that has been open before it
+        (or is -1), so that closing the topmost bracket reveals the next one.
+        Once a bracket is closed, the entries of both brackets refer to each other.
          */
-        Stack< Integer > brackets = new Stack<>();
-        String[] operators = source.split( "" );
+        int[] brackets = new int[ 0x40 ];
+        int count = 0x0;
+        int top = -0x1;
+        int operators = 0x0;
+
+        int start = source.position();
+        int end = source.limit();
+        int line = 0x1;
+        int lineStart = start;
+
+        for ( int i = start; i < end; i++ ) {
+
+            byte character = source.get( i );
+
+            switch ( character ) {
+
+                case '+', '-', '>', '<', '.', ',' -> {
+
+                    // These are valid operators that don't need any further checks
+                    operators++;
+
+                }
+
+                case '[' -> {
+
+                    if ( count == brackets.length ) {
 
-        for ( int i = 0; i < source.length(); i++ ) {
+                        brackets = Arrays.copyOf( brackets, count * 0x2 );
 
-            String operator = operators[ i ];
+                    }
+
+                    brackets[ count ] = top;
+                    top = count++;
+
+                }
 
-            /*
-            The first aspect of this validator is character transpiler.brainfuck.validation.
-            If the currently inspected character matches this expression,
-            it is a valid operator.
-             */
-            if ( operator.matches( "[><\\+\\-,\\.\\[\\]]" ) ) {
+                case ']' -> {
 
-                if ( operator.equals( "[" ) ) {
+                    if ( count == brackets.length ) {
 
-                    brackets.add( i );
+                        brackets = Arrays.copyOf( brackets, count * 0x2 );
 
-                } else if ( operator.equals( "]" ) ) {
+                    }
 
-                    if ( !brackets.isEmpty() ) {
+                    if ( top == -0x1 ) {
 
-                        brackets.pop();
+                        brackets[ count++ ] = -0x1;
+                        errors.add( new UnopenedBracketException( i - start, line, i - lineStart + 0x1 ) );
 
                     } else {
 
-                        throw new UnopenedBracketException( i );
+                        int open = top;
+                        top = brackets[ open ];
+                        brackets[ open ] = count;
+                        brackets[ count++ ] = open;
+
+                    }
+
+                }
+
+                case '\n' -> {
+
+                    line++;
+                    lineStart = i + 0x1;
+
+                }
+
+                default -> {
+
+                    if ( strict ) {
+
+                        errors.add( new UnknownOperatorException( String.valueOf( ( char ) ( character & 0xFF ) ), i - start, line, i - lineStart + 0x1 ) );
 
                     }
 
                 }
 
-            } else {
+            }
+
+        }
+
+        if ( top != -0x1 ) {
 
-                throw new UnknownOperatorException( operator, i );
+            while ( top != -0x1 ) {
+
+                int next = brackets[ top ];
+                brackets[ top ] = UNCLOSED;
+                top = next;
 
             }
 
+            Validator.unclosed( source, brackets, errors );
+
         }
 
-        if ( !brackets.isEmpty() ) {
+        errors.sort( Comparator.comparingInt( ValidationException::index ) );
+
+        return new Validation( errors, brackets, count, operators + count );
+
+    }
+
+    /**
+     * Validates the given file, which is mapped into memory instead of being read.
+     */
+    public static Validation validate( Path path, boolean strict ) throws IOException {
 
-            throw new UnclosedBracketException( brackets.pop() );
+        try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) ) {
+
+            return Validator.validate( channel.map( FileChannel.MapMode.READ_ONLY, 0x0, channel.size() ), strict );
 
         }
 
+    }
+
+    /**
+     * Validates the given program strictly (that is, without comments)
+     * and throws the first error that is found.
+     */
+    public static boolean isValid( byte[] source ) throws ValidationException {
+
+        Validator.validate( ByteBuffer.wrap( source ), true ).check();
         return true;
 
     }
 
+    /*
+    The positions of brackets that are never closed are only known once the whole source
+    has been validated, hence they are searched for by a second pass (which only happens
+    if there are such brackets at all).
+     */
+    private static void unclosed( ByteBuffer source, int[] brackets, List< ValidationException > errors ) {
+
+        int start = source.position();
+        int line = 0x1;
+        int lineStart = start;
+        int bracket = 0x0;
+
+        for ( int i = start; i < source.limit(); i++ ) {
+
+            byte character = source.get( i );
+
+            if ( character == '\n' ) {
+
+                line++;
+                lineStart = i + 0x1;
+
+            } else if ( character == '[' || character == ']' ) {
+
+                if ( brackets[ bracket ] == UNCLOSED ) {
+
+                    brackets[ bracket ] = -0x1;
+                    errors.add( new UnclosedBracketException( i - start, line, i - lineStart + 0x1 ) );
+
+                }
+
+                bracket++;
+
+            }
+
+        }
+
+    }
+
 }
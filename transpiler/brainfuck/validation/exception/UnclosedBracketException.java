@@ -1,10 +1,12 @@
 package transpiler.brainfuck.validation.exception;
 
-public class UnclosedBracketException extends Exception {
+public class UnclosedBracketException extends ValidationException {
 
-    public UnclosedBracketException( int index ) {
+    private static final long serialVersionUID = 0x1L;
 
-        super( String.format( "Bracket at index '%s' is not closed.", index ) );
+    public UnclosedBracketException( int index, int line, int column ) {
+
+        super( String.format( "Bracket at line '%s', column '%s' is not closed.", line, column ), index, line, column );
 
     }
 
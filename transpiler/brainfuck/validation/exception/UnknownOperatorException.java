@@ -1,10 +1,12 @@
 package transpiler.brainfuck.validation.exception;
 
-public class UnknownOperatorException extends Exception {
+public class UnknownOperatorException extends ValidationException {
 
-    public UnknownOperatorException( String operator, int index ) {
+    private static final long serialVersionUID = 0x1L;
 
-        super( String.format( "Operator '%s' at index '%s' is not known.", operator, index ) );
+    public UnknownOperatorException( String operator, int index, int line, int column ) {
+
+        super( String.format( "Operator '%s' at line '%s', column '%s' is not known.", operator, line, column ), index, line, column );
 
     }
 
@@ -1,10 +1,12 @@
 package transpiler.brainfuck.validation.exception;
 
-public class UnopenedBracketException extends Exception {
+public class UnopenedBracketException extends ValidationException {
 
-    public UnopenedBracketException( int index ) {
+    private static final long serialVersionUID = 0x1L;
 
-        super( String.format( "Bracket at index '%s' is not opened.", index ) );
+    public UnopenedBracketException( int index, int line, int column ) {
+
+        super( String.format( "Bracket at line '%s', column '%s' is not opened.", line, column ), index, line, column );
 
     }
 
@@ -0,0 +1,43 @@
+package transpiler.brainfuck.validation.exception;
+
+/**
+ * The common type of all errors the validator might find within a 'Brainfuck' program,
+ * each of which refers to the character it has been found at: by its index
+ * as well as by its line and column (both of which start at one).
+ */
+public class ValidationException extends Exception {
+
+    private static final long serialVersionUID = 0x1L;
+
+    private final int index;
+    private final int line;
+    private final int column;
+
+    public ValidationException( String message, int index, int line, int column ) {
+
+        super( message );
+        this.index = index;
+        this.line = line;
+        this.column = column;
+
+    }
+
+    public int index() {
+
+        return this.index;
+
+    }
+
+    public int line() {
+
+        return this.line;
+
+    }
+
+    public int column() {
+
+        return this.column;
+
+    }
+
+}